@@ -0,0 +1,106 @@
+package alors;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import alors.benchmark.SyntheticData;
+import alors.latent_features.FeaturePredictorException;
+import alors.matrix_completion.FactorizedMatrix;
+import alors.matrix_completion.MatrixCompleterException;
+import alors.matrix_completion.ModelBasedMatrixCompleter;
+import alors.matrix_completion.SparseMatrix;
+
+/**
+ * Benchmarks the cold-start predictions of {@link Alors}, single and batched.
+ * The matrix completion is replaced by fixed random factors, so the benchmark
+ * covers the feature predictor and the product with the item factors.
+ *
+ * @author helegraf
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AlorsBenchmark {
+
+	private static final int NUM_INSTANCES = 500;
+
+	@Param({ "20", "1000" })
+	int numItems;
+
+	@Param({ "10", "100" })
+	int numFeatures;
+
+	@Param({ "10", "50" })
+	int dimW;
+
+	private Alors alors;
+	private double[][] features;
+
+	@Setup(Level.Trial)
+	public void setUp() throws MatrixCompleterException, FeaturePredictorException {
+		FactorizedMatrix factors = SyntheticData.factorization(NUM_INSTANCES, numItems, dimW, 0);
+		features = SyntheticData.features(factors.getU(), numFeatures, 1);
+		alors = new Alors(new FixedFactorization(factors));
+		alors.prepareColdStart(SyntheticData.sparseMatrix(NUM_INSTANCES, numItems, 0.1, 2), features);
+	}
+
+	@Benchmark
+	public double[] predictSingle() throws FeaturePredictorException, AlorsException {
+		return alors.predictForFeatures(features[0]);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public double[][] predictBatch() throws FeaturePredictorException, AlorsException {
+		return alors.predictForFeatures(features);
+	}
+
+	/**
+	 * A stand-in for a matrix completer which returns the given factors for any
+	 * matrix.
+	 */
+	private static class FixedFactorization implements ModelBasedMatrixCompleter {
+
+		private final FactorizedMatrix factors;
+
+		private FixedFactorization(FactorizedMatrix factors) {
+			this.factors = factors;
+		}
+
+		@Override
+		public double[][] complete(double[][] matrix) {
+			return factors.toDense();
+		}
+
+		@Override
+		public FactorizedMatrix factorize(SparseMatrix matrix) {
+			return factors;
+		}
+
+		@Override
+		public double[][] getU() {
+			return factors.getU();
+		}
+
+		@Override
+		public double[][] getV() {
+			return factors.getV();
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package alors.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import alors.matrix_completion.FactorizedMatrix;
+import alors.matrix_completion.SparseMatrix;
+
+/**
+ * Generates the random inputs of the benchmarks, seeded so that every run of a
+ * benchmark sees the same data.
+ *
+ * @author helegraf
+ *
+ */
+public final class SyntheticData {
+
+	private SyntheticData() {
+	}
+
+	/**
+	 * Creates a matrix of values in [0, 1) of which each entry is observed with
+	 * the given probability; each row has at least one observed entry.
+	 *
+	 * @param numRows    the number of rows
+	 * @param numColumns the number of columns
+	 * @param density    the probability of an entry being observed
+	 * @param seed       the seed
+	 * @return the matrix
+	 */
+	public static SparseMatrix sparseMatrix(int numRows, int numColumns, double density, long seed) {
+		Random random = new Random(seed);
+		int[] rowPointers = new int[numRows + 1];
+		int[] columnIndices = new int[(int) (numRows * (numColumns * density + 1)) + 16];
+		double[] values = new double[columnIndices.length];
+		int entries = 0;
+		for (int i = 0; i < numRows; i++) {
+			int forcedColumn = random.nextInt(numColumns);
+			for (int j = 0; j < numColumns; j++) {
+				if (j == forcedColumn || random.nextDouble() < density) {
+					if (entries == columnIndices.length) {
+						columnIndices = Arrays.copyOf(columnIndices, entries * 2);
+						values = Arrays.copyOf(values, entries * 2);
+					}
+					columnIndices[entries] = j;
+					values[entries] = random.nextDouble();
+					entries++;
+				}
+			}
+			rowPointers[i + 1] = entries;
+		}
+		return new SparseMatrix(numRows, numColumns, rowPointers, Arrays.copyOf(columnIndices, entries),
+				Arrays.copyOf(values, entries));
+	}
+
+	/**
+	 * Creates a dense matrix of normally distributed values.
+	 *
+	 * @param numRows    the number of rows
+	 * @param numColumns the number of columns
+	 * @param seed       the seed
+	 * @return the matrix
+	 */
+	public static double[][] denseMatrix(int numRows, int numColumns, long seed) {
+		Random random = new Random(seed);
+		double[][] matrix = new double[numRows][numColumns];
+		for (double[] row : matrix) {
+			for (int j = 0; j < numColumns; j++) {
+				row[j] = random.nextGaussian();
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * Creates random factors of the given dimensions.
+	 *
+	 * @param numRows    the number of rows of the factorized matrix
+	 * @param numColumns the number of columns of the factorized matrix
+	 * @param dimW       the number of latent features
+	 * @param seed       the seed
+	 * @return the factorization
+	 */
+	public static FactorizedMatrix factorization(int numRows, int numColumns, int dimW, long seed) {
+		return new FactorizedMatrix(denseMatrix(numRows, dimW, seed), denseMatrix(numColumns, dimW, seed + 1));
+	}
+
+	/**
+	 * Creates features which determine the given latent features up to noise, so
+	 * that the feature predictors learn a meaningful mapping: each latent
+	 * feature is a linear combination of the features.
+	 *
+	 * @param latentFeatures the latent features of the instances
+	 * @param numFeatures    the number of features
+	 * @param seed           the seed
+	 * @return the features of the instances
+	 */
+	public static double[][] features(double[][] latentFeatures, int numFeatures, long seed) {
+		Random random = new Random(seed);
+		int dimW = latentFeatures[0].length;
+		double[][] mixing = denseMatrix(dimW, numFeatures, seed + 1);
+		double[][] features = new double[latentFeatures.length][numFeatures];
+		for (int i = 0; i < latentFeatures.length; i++) {
+			for (int f = 0; f < numFeatures; f++) {
+				double value = 0.1 * random.nextGaussian();
+				for (int k = 0; k < dimW; k++) {
+					value += latentFeatures[i][k] * mixing[k][f];
+				}
+				features[i][f] = value;
+			}
+		}
+		return features;
+	}
+}
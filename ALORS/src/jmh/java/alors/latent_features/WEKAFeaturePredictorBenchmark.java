@@ -0,0 +1,73 @@
+package alors.latent_features;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import alors.benchmark.SyntheticData;
+
+/**
+ * Benchmarks training {@link WEKAFeaturePredictor} with its default random
+ * forest and predicting latent features with it, single and batched.
+ *
+ * @author helegraf
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WEKAFeaturePredictorBenchmark {
+
+	@Param({ "100", "1000" })
+	int numInstances;
+
+	@Param({ "10", "100" })
+	int numFeatures;
+
+	@Param({ "10", "50" })
+	int dimW;
+
+	private double[][] latentFeatures;
+	private double[][] features;
+	private WEKAFeaturePredictor trainedPredictor;
+
+	@Setup(Level.Trial)
+	public void setUp() throws FeaturePredictorException {
+		latentFeatures = SyntheticData.denseMatrix(numInstances, dimW, 0);
+		features = SyntheticData.features(latentFeatures, numFeatures, 1);
+		trainedPredictor = new WEKAFeaturePredictor();
+		trainedPredictor.train(features, latentFeatures);
+	}
+
+	@Benchmark
+	public WEKAFeaturePredictor train() throws FeaturePredictorException {
+		WEKAFeaturePredictor predictor = new WEKAFeaturePredictor();
+		predictor.train(features, latentFeatures);
+		return predictor;
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public double[] predictSingle() throws FeaturePredictorException {
+		return trainedPredictor.predict(features[0]);
+	}
+
+	@Benchmark
+	public double[][] predictBatch() throws FeaturePredictorException {
+		return trainedPredictor.predict(features);
+	}
+}
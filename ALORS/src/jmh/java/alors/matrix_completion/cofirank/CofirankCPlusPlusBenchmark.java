@@ -0,0 +1,107 @@
+package alors.matrix_completion.cofirank;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import alors.benchmark.SyntheticData;
+import alors.matrix_completion.FactorizedMatrix;
+import alors.matrix_completion.MatrixCompleterException;
+import alors.matrix_completion.SparseMatrix;
+
+/**
+ * Benchmarks the overhead of {@link CofirankCPlusPlus} around the cofirank
+ * executable: creating the workspace, writing the matrices and the
+ * configuration, starting the process and reading the factors. The executable
+ * is replaced by a shell script which copies precomputed factors into the
+ * output folder, so the timings do not include the factorization itself.
+ *
+ * @author helegraf
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CofirankCPlusPlusBenchmark {
+
+	@Param({ "1000", "10000" })
+	int numRows;
+
+	@Param({ "100" })
+	int numColumns;
+
+	@Param({ "0.05", "0.5" })
+	double density;
+
+	@Param({ "10", "50" })
+	int dimW;
+
+	private Path directory;
+	private SparseMatrix matrix;
+	private CofirankCPlusPlus cofirank;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("cofirank-benchmark");
+		matrix = SyntheticData.sparseMatrix(numRows, numColumns, density, 0);
+
+		// the factors the stand-in for cofirank copies into its output folder
+		FactorizedMatrix factors = SyntheticData.factorization(numRows, numColumns, dimW, 0);
+		LSVMWriter.write(directory.resolve("U.lsvm"), SparseMatrix.fromDense(factors.getU()),
+				CofiConfig.LOSSLESS_PRECISION);
+		LSVMWriter.write(directory.resolve("M.lsvm"), SparseMatrix.fromDense(factors.getV()),
+				CofiConfig.LOSSLESS_PRECISION);
+		Path executable = createStandIn(directory);
+
+		CofiConfig config = new CofiConfig(executable.toString(), null, null, null, null);
+		config.setDimW(dimW);
+		cofirank = new CofirankCPlusPlus(config);
+		cofirank.setWorkspaceDirectory(directory.toString());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(directory.toFile());
+	}
+
+	@Benchmark
+	public FactorizedMatrix factorize() throws MatrixCompleterException {
+		return cofirank.factorize(matrix);
+	}
+
+	/**
+	 * Writes a shell script which reads the output folder from the configuration
+	 * like cofirank and copies the factors from the given directory into it.
+	 */
+	private static Path createStandIn(Path directory) throws IOException {
+		String script = String.join("\n", "#!/bin/sh",
+				"out=$(awk '$2==\"cofi.outfolder\"{print $3}' \"$1\")",
+				"echo \"All output including logs will go to $out\" >&2",
+				"cp \"" + directory.resolve("U.lsvm") + "\" \"${out}U.lsvm\"",
+				"cp \"" + directory.resolve("M.lsvm") + "\" \"${out}M.lsvm\"", "");
+		Path executable = directory.resolve("cofirank.sh");
+		Files.write(executable, script.getBytes(StandardCharsets.UTF_8));
+		executable.toFile().setExecutable(true);
+		return executable;
+	}
+}
@@ -0,0 +1,142 @@
+package alors.matrix_completion.cofirank;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import alors.benchmark.SyntheticData;
+import alors.matrix_completion.SparseMatrix;
+
+/**
+ * Benchmarks the exchange of matrices with cofirank: writing the training
+ * matrix (see {@link LSVMWriter}), compared to writing every entry by
+ * {@link String#format(String, Object...)} as {@link CofirankCPlusPlus} did
+ * before, and reading the dense factors (see {@link LSVMReader}).
+ *
+ * @author helegraf
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LSVMBenchmark {
+
+	/**
+	 * A training matrix and the file it is written to.
+	 */
+	@State(Scope.Benchmark)
+	public static class MatrixState {
+
+		@Param({ "1000", "10000" })
+		int numRows;
+
+		@Param({ "100" })
+		int numColumns;
+
+		@Param({ "0.05", "0.5" })
+		double density;
+
+		SparseMatrix matrix;
+		Path directory;
+		Path file;
+
+		@Setup(Level.Trial)
+		public void setUp() throws IOException {
+			matrix = SyntheticData.sparseMatrix(numRows, numColumns, density, 0);
+			directory = Files.createTempDirectory("lsvm-benchmark");
+			file = directory.resolve("train.lsvm");
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws IOException {
+			FileUtils.deleteDirectory(directory.toFile());
+		}
+	}
+
+	/**
+	 * A training matrix written with the given precision.
+	 */
+	public static class WriteState extends MatrixState {
+
+		@Param({ "6", "-1" })
+		int precision;
+	}
+
+	/**
+	 * A file of dense factors as written by cofirank.
+	 */
+	@State(Scope.Benchmark)
+	public static class ReadState {
+
+		@Param({ "1000", "10000" })
+		int numRows;
+
+		@Param({ "10", "50" })
+		int dimW;
+
+		Path directory;
+		Path file;
+		double[][] factors;
+
+		@Setup(Level.Trial)
+		public void setUp() throws IOException {
+			directory = Files.createTempDirectory("lsvm-benchmark");
+			file = directory.resolve("U.lsvm");
+			LSVMWriter.write(file, SparseMatrix.fromDense(SyntheticData.denseMatrix(numRows, dimW, 0)),
+					CofiConfig.LOSSLESS_PRECISION);
+			factors = new double[numRows][dimW];
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws IOException {
+			FileUtils.deleteDirectory(directory.toFile());
+		}
+	}
+
+	@Benchmark
+	public Path write(WriteState state) throws IOException {
+		LSVMWriter.write(state.file, state.matrix, state.precision);
+		return state.file;
+	}
+
+	@Benchmark
+	public Path writeWithStringFormat(MatrixState state) throws IOException {
+		SparseMatrix matrix = state.matrix;
+		int[] rowPointers = matrix.getRowPointers();
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(state.file.toFile()))) {
+			for (int i = 0; i < matrix.getNumRows(); i++) {
+				for (int n = rowPointers[i]; n < rowPointers[i + 1]; n++) {
+					writer.write(String.format("%d:%f ", matrix.getColumnIndices()[n] + 1, matrix.getValues()[n]));
+				}
+				writer.write(System.lineSeparator());
+			}
+		}
+		return state.file;
+	}
+
+	@Benchmark
+	public double[][] read(ReadState state) throws IOException {
+		new LSVMReader().read(state.file, state.factors);
+		return state.factors;
+	}
+}
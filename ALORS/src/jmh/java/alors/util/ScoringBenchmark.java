@@ -0,0 +1,88 @@
+package alors.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import alors.benchmark.SyntheticData;
+
+/**
+ * Benchmarks scoring all items for a query (a cold-start prediction after the
+ * latent features are predicted) with the jagged item factors and a dot
+ * product per item, and with {@link BlockedFactors} and the scalar or vector
+ * kernel. The vector kernel needs JDK 16 or later and
+ * <code>--add-modules jdk.incubator.vector</code>, which the jmh task passes
+ * when available.
+ *
+ * @author helegraf
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScoringBenchmark {
+
+	@Param({ "1000", "100000" })
+	int numItems;
+
+	@Param({ "10", "50" })
+	int dimW;
+
+	@Param({ "jagged", "scalar", "vector" })
+	String layout;
+
+	private double[][] v;
+	private BlockedFactors blockedV;
+	private double[] u;
+	private double[][] queries;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		v = SyntheticData.denseMatrix(numItems, dimW, 0);
+		u = SyntheticData.denseMatrix(1, dimW, 1)[0];
+		queries = SyntheticData.denseMatrix(64, dimW, 2);
+		if (layout.equals("scalar")) {
+			blockedV = new BlockedFactors(v, new ScalarScoringKernel());
+		} else if (layout.equals("vector")) {
+			ScoringKernel kernel = BlockedFactors.loadVectorKernel();
+			if (kernel == null) {
+				throw new IllegalStateException("Vector API not available");
+			}
+			blockedV = new BlockedFactors(v, kernel);
+		}
+	}
+
+	@Benchmark
+	public double[] scoreSingle() {
+		if (blockedV == null) {
+			double[] result = new double[v.length];
+			for (int j = 0; j < v.length; j++) {
+				result[j] = LinearAlgebra.dot(u, v[j]);
+			}
+			return result;
+		}
+		return blockedV.multiply(u);
+	}
+
+	@Benchmark
+	public double[][] scoreBatch() {
+		if (blockedV == null) {
+			return LinearAlgebra.multiplyTransposed(queries, v);
+		}
+		return blockedV.multiplyTransposed(queries);
+	}
+}
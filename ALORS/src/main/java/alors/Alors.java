@@ -1,13 +1,24 @@
 package alors;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import alors.latent_features.FeaturePredictor;
 import alors.latent_features.FeaturePredictorException;
 import alors.latent_features.WEKAFeaturePredictor;
+import alors.matrix_completion.FactorizedMatrix;
 import alors.matrix_completion.MatrixCompleterException;
 import alors.matrix_completion.ModelBasedMatrixCompleter;
+import alors.matrix_completion.SparseMatrix;
+import alors.metrics.Metrics;
 
 /**
  * A simple java implementation for ALORS [0], algorithm recommender system.
@@ -15,6 +26,11 @@ import alors.matrix_completion.ModelBasedMatrixCompleter;
  * <p>[0] Mısır, Mustafa, and Michèle Sebag. "Alors: An algorithm recommender
  * system." Artificial Intelligence 244 (2017): 291-314.
  * 
+ * <p>Every training produces a new immutable {@link AlorsModel}, which is
+ * published atomically once training has finished. Predictions may run
+ * concurrently with each other and with a retraining; they use the model that
+ * was current when they started and never wait for the training.
+ * 
  * @author helegraf
  *
  */
@@ -25,12 +41,16 @@ public class Alors {
 	
 	// parameters
 	private ModelBasedMatrixCompleter matrixCompleter;
-	private FeaturePredictor featurePredictor = new WEKAFeaturePredictor();
+	private Supplier<FeaturePredictor> featurePredictorFactory = WEKAFeaturePredictor::new;
+	private volatile boolean pruneByNorm = true;
+	private volatile double foldInLambda = 0.1;
+	private volatile boolean warmStart = false;
 	
 	// results
-	private double[][] v;
-	private boolean isPrepared = false;
-	
+	private final AtomicReference<AlorsModel> model = new AtomicReference<>();
+
+	// trainings share the matrix completer, so they run one at a time
+	private final Object trainingLock = new Object();
 
 	/**
 	 * Initialize Alors using the given matrix completer, which has to be model
@@ -58,17 +78,137 @@ public class Alors {
 	 */
 	public double[][] completeMatrixAndPrepareColdStart(double[][] matrixM, double[][] matrixX)
 			throws MatrixCompleterException, FeaturePredictorException {
-		// do matrix completion for M
-		logger.debug("Completing matrix with matrix completer {}", matrixCompleter.getClass());
-		double[][] mHead = matrixCompleter.complete(matrixM);
-		v = matrixCompleter.getV();
+		synchronized (trainingLock) {
+			// do matrix completion for M
+			logger.debug("Completing matrix with matrix completer {}", matrixCompleter.getClass());
+			double[][] mHead = Metrics.time(Metrics.ALORS_FACTORIZATION, () -> matrixCompleter.complete(matrixM));
+			Metrics.increment(Metrics.ALORS_OBSERVED_ENTRIES, () -> countObserved(matrixM));
+
+			model.set(trainModel(matrixX));
+			return mHead;
+		}
+	}
+
+	/**
+	 * Completes the given sparse matrix as well as learning a mapping from instance
+	 * to latent features.
+	 * 
+	 * @param matrixM the observed entries of M (rows = instances (e.g. users/
+	 *                datasets/ ...), columns = items (e.g. movies/ algorithms/
+	 *                ...)
+	 * @param matrixX matrix of instance features (rows = instances, columns =
+	 *                features)
+	 * @return an estimated of a completed matrix m
+	 * @throws MatrixCompleterException  if the matrix could not be completed
+	 *                                   correctly or the latent features not learnt
+	 * @throws FeaturePredictorException if the feature predictor for the latent
+	 *                                   features could not be built
+	 */
+	public double[][] completeMatrixAndPrepareColdStart(SparseMatrix matrixM, double[][] matrixX)
+			throws MatrixCompleterException, FeaturePredictorException {
+		synchronized (trainingLock) {
+			// do matrix completion for M
+			logger.debug("Completing sparse matrix with matrix completer {}", matrixCompleter.getClass());
+			double[][] mHead = Metrics.time(Metrics.ALORS_FACTORIZATION, () -> matrixCompleter.complete(matrixM));
+			Metrics.increment(Metrics.ALORS_OBSERVED_ENTRIES, matrixM.getNumEntries());
+
+			model.set(trainModel(matrixX));
+			return mHead;
+		}
+	}
+
+	/**
+	 * Factorizes the given matrix and learns a mapping from instance to latent
+	 * features, without computing the completed matrix.
+	 * 
+	 * @param matrixM (rows = instances (e.g. users/ datasets/ ...), columns = items
+	 *                (e.g. movies/ algorithms/ ...)
+	 * @param matrixX matrix of instance features (rows = instances, columns =
+	 *                features)
+	 * @return the completion of m as a view of its factors
+	 * @throws MatrixCompleterException  if the matrix could not be factorized
+	 * @throws FeaturePredictorException if the feature predictor for the latent
+	 *                                   features could not be built
+	 */
+	public FactorizedMatrix prepareColdStart(double[][] matrixM, double[][] matrixX)
+			throws MatrixCompleterException, FeaturePredictorException {
+		return prepareColdStart(SparseMatrix.fromDense(matrixM), matrixX);
+	}
+
+	/**
+	 * Factorizes the given sparse matrix and learns a mapping from instance to
+	 * latent features, without computing the completed matrix.
+	 * 
+	 * @param matrixM the observed entries of M (rows = instances (e.g. users/
+	 *                datasets/ ...), columns = items (e.g. movies/ algorithms/
+	 *                ...)
+	 * @param matrixX matrix of instance features (rows = instances, columns =
+	 *                features)
+	 * @return the completion of m as a view of its factors
+	 * @throws MatrixCompleterException  if the matrix could not be factorized
+	 * @throws FeaturePredictorException if the feature predictor for the latent
+	 *                                   features could not be built
+	 */
+	public FactorizedMatrix prepareColdStart(SparseMatrix matrixM, double[][] matrixX)
+			throws MatrixCompleterException, FeaturePredictorException {
+		AlorsModel newModel = train(matrixM, matrixX);
+		return new FactorizedMatrix(newModel.getU(), newModel.getV());
+	}
+
+	/**
+	 * Trains a new model in the background, see
+	 * {@link #prepareColdStart(SparseMatrix, double[][])}. Until the training has
+	 * finished, predictions keep using the previous model; if it fails, the
+	 * previous model is kept.
+	 * 
+	 * @param matrixM  the observed entries of M (rows = instances, columns =
+	 *                 items)
+	 * @param matrixX  matrix of instance features (rows = instances, columns =
+	 *                 features)
+	 * @param executor the executor to train on
+	 * @return the new model once it is in use; completes exceptionally with a
+	 *         {@link MatrixCompleterException} or {@link FeaturePredictorException}
+	 *         if the training fails
+	 */
+	public CompletableFuture<AlorsModel> retrainAsync(SparseMatrix matrixM, double[][] matrixX, Executor executor) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return train(matrixM, matrixX);
+			} catch (MatrixCompleterException | FeaturePredictorException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	private AlorsModel train(SparseMatrix matrixM, double[][] matrixX)
+			throws MatrixCompleterException, FeaturePredictorException {
+		synchronized (trainingLock) {
+			logger.debug("Factorizing matrix with matrix completer {}", matrixCompleter.getClass());
+			AlorsModel previousModel = model.get();
+			Metrics.time(Metrics.ALORS_FACTORIZATION, () -> {
+				if (warmStart && previousModel != null) {
+					matrixCompleter.factorize(matrixM,
+							new FactorizedMatrix(previousModel.getU(), previousModel.getV()));
+				} else {
+					matrixCompleter.factorize(matrixM);
+				}
+			});
+			Metrics.increment(Metrics.ALORS_OBSERVED_ENTRIES, matrixM.getNumEntries());
 
-		// train model for feature vector
+			AlorsModel newModel = trainModel(matrixX);
+			model.set(newModel);
+			return newModel;
+		}
+	}
+
+	private AlorsModel trainModel(double[][] matrixX) throws MatrixCompleterException, FeaturePredictorException {
+		// train model for feature vector; a new predictor leaves the current model untouched
+		FeaturePredictor featurePredictor = featurePredictorFactory.get();
 		logger.debug("Training feature predictor {}", featurePredictor.getClass());
-		featurePredictor.train(matrixX, matrixCompleter.getU());
+		double[][] u = matrixCompleter.getU();
+		Metrics.time(Metrics.ALORS_FEATURE_PREDICTOR_TRAINING, () -> featurePredictor.train(matrixX, u));
 
-		isPrepared = true;
-		return mHead;
+		return new AlorsModel(matrixCompleter.getU(), matrixCompleter.getV(), featurePredictor);
 	}
 
 	/**
@@ -82,24 +222,149 @@ public class Alors {
 	 * @throws AlorsException if Alors has not been prepared for prediction
 	 */
 	public double[] predictForFeatures(double[] featureVectorX) throws FeaturePredictorException, AlorsException {
-		if (!isPrepared) {
-			throw new AlorsException("Alors has not been prepared for predictions.");
-		}
-		
 		// feed into prediction model for rf; then multiply latent feature vector with
 		// algorithm feature vector matrix
-		double[] latentFeatures = featurePredictor.predict(featureVectorX);
-		
-		double[] result = new double[v.length];
-		for (int i = 0; i < v.length; i++) {
-			double entry = 0;
-			for (int j = 0; j < v[i].length; j++) {
-				entry += latentFeatures[j] * v[i][j];
+		AlorsModel preparedModel = getPreparedModel();
+		double[] prediction = Metrics.time(Metrics.ALORS_PREDICTION,
+				() -> preparedModel.predictForFeatures(featureVectorX));
+		Metrics.increment(Metrics.ALORS_PREDICTED_INSTANCES, 1);
+		return prediction;
+	}
+
+	/**
+	 * Returns a prediction for each of the given instances. The latent features
+	 * of all instances are predicted in one batch and multiplied with the item
+	 * features in a single blocked, parallel matrix product.
+	 * 
+	 * @param featureMatrixX the instance features (rows = instances, columns =
+	 *                       features)
+	 * @return a prediction of item values for each instance (rows = instances,
+	 *         columns = items)
+	 * @throws FeaturePredictorException if the latent features for the instances
+	 *                                   could not be predicted
+	 * @throws AlorsException            if Alors has not been prepared for
+	 *                                   prediction
+	 */
+	public double[][] predictForFeatures(double[][] featureMatrixX) throws FeaturePredictorException, AlorsException {
+		AlorsModel preparedModel = getPreparedModel();
+		double[][] predictions = Metrics.time(Metrics.ALORS_BATCH_PREDICTION,
+				() -> preparedModel.predictForFeatures(featureMatrixX));
+		Metrics.increment(Metrics.ALORS_PREDICTED_INSTANCES, featureMatrixX.length);
+		return predictions;
+	}
+
+	/**
+	 * Returns the k items with the highest predicted values for the given
+	 * instance, without computing and sorting the values of all items. Items are
+	 * scored in order of decreasing norm of their latent features; unless
+	 * disabled by {@link #setPruneByNorm(boolean)}, the search stops once no
+	 * remaining item can beat the k-th best one.
+	 * 
+	 * @param featureVectorX the instance features
+	 * @param k              the number of items to recommend
+	 * @return the k best items (or all items if there are fewer), best first
+	 * @throws FeaturePredictorException if the latent features for the instance
+	 *                                   could not be predicted
+	 * @throws AlorsException            if Alors has not been prepared for
+	 *                                   prediction
+	 */
+	public Recommendation recommendTopK(double[] featureVectorX, int k)
+			throws FeaturePredictorException, AlorsException {
+		return getPreparedModel().recommendTopK(featureVectorX, k, pruneByNorm);
+	}
+
+	/**
+	 * Returns a prediction for a new instance of which some item values have
+	 * already been observed, without retraining: its latent features are fitted
+	 * to the observed values with V fixed, see
+	 * {@link AlorsModel#foldIn(double[], double)}.
+	 * 
+	 * @param observedRow the values of all items for the instance, NaN if not
+	 *                    observed
+	 * @return a prediction of item values
+	 * @throws AlorsException if Alors has not been prepared for prediction
+	 */
+	public double[] predictForObservations(double[] observedRow) throws AlorsException {
+		AlorsModel currentModel = getPreparedModel();
+		return currentModel.predictForLatentFeatures(currentModel.foldIn(observedRow, foldInLambda));
+	}
+
+	/**
+	 * Returns a prediction for a new instance of which some item values have
+	 * already been observed, combining them with the latent features predicted
+	 * from the instance features, see
+	 * {@link AlorsModel#foldIn(double[], double[], double)}.
+	 * 
+	 * @param featureVectorX the instance features
+	 * @param observedRow    the values of all items for the instance, NaN if not
+	 *                       observed
+	 * @return a prediction of item values
+	 * @throws FeaturePredictorException if the latent features for the instance
+	 *                                   could not be predicted
+	 * @throws AlorsException            if Alors has not been prepared for
+	 *                                   prediction
+	 */
+	public double[] predictForFeaturesAndObservations(double[] featureVectorX, double[] observedRow)
+			throws FeaturePredictorException, AlorsException {
+		AlorsModel currentModel = getPreparedModel();
+		return currentModel
+				.predictForLatentFeatures(currentModel.foldIn(featureVectorX, observedRow, foldInLambda));
+	}
+
+	private AlorsModel getPreparedModel() throws AlorsException {
+		AlorsModel currentModel = model.get();
+		if (currentModel == null) {
+			throw new AlorsException("Alors has not been prepared for predictions.");
+		}
+		return currentModel;
+	}
+
+	private static long countObserved(double[][] matrix) {
+		long observed = 0;
+		for (double[] row : matrix) {
+			for (double value : row) {
+				if (!Double.isNaN(value)) {
+					observed++;
+				}
 			}
-			result [i] = entry;
 		}
+		return observed;
+	}
+
+	/**
+	 * Returns the model currently used for predictions. Several predictions made
+	 * on the returned model are consistent with each other, even if Alors is
+	 * retrained in between.
+	 * 
+	 * @return the current model, or null if Alors has not been prepared yet
+	 */
+	public AlorsModel getModel() {
+		return model.get();
+	}
+
+	/**
+	 * Saves the current model, see {@link AlorsModel#save(Path)}.
+	 * 
+	 * @param path the file, replaced if it exists
+	 * @throws IOException    if the model cannot be written
+	 * @throws AlorsException if Alors has not been prepared yet
+	 */
+	public void saveModel(Path path) throws IOException, AlorsException {
+		getPreparedModel().save(path);
+	}
 
-		return result;
+	/**
+	 * Loads a model saved by {@link #saveModel(Path)} and uses it for all
+	 * following predictions, without training.
+	 * 
+	 * @param path the file
+	 * @return the loaded model
+	 * @throws IOException if the model cannot be read
+	 */
+	public AlorsModel loadModel(Path path) throws IOException {
+		AlorsModel loadedModel = AlorsModel.load(path);
+		model.set(loadedModel);
+		return loadedModel;
 	}
 
 	public ModelBasedMatrixCompleter getMatrixCompleter() {
@@ -110,15 +375,91 @@ public class Alors {
 		this.matrixCompleter = matrixCompleter;
 	}
 
+	public Supplier<FeaturePredictor> getFeaturePredictorFactory() {
+		return featurePredictorFactory;
+	}
+
+	/**
+	 * Sets the factory of the feature predictors; every training creates a new
+	 * feature predictor, so that models in use are never modified.
+	 * 
+	 * @param featurePredictorFactory creates a new, configured feature predictor
+	 */
+	public void setFeaturePredictorFactory(Supplier<FeaturePredictor> featurePredictorFactory) {
+		this.featurePredictorFactory = featurePredictorFactory;
+	}
+
+	/**
+	 * Returns the feature predictor of the current model.
+	 * 
+	 * @return the trained feature predictor, or null if Alors has not been
+	 *         prepared yet
+	 * @deprecated use {@link #getModel()} and
+	 *             {@link AlorsModel#getFeaturePredictor()}
+	 */
+	@Deprecated
 	public FeaturePredictor getFeaturePredictor() {
-		return featurePredictor;
+		AlorsModel currentModel = model.get();
+		return currentModel != null ? currentModel.getFeaturePredictor() : null;
 	}
 
+	/**
+	 * Sets the feature predictor trained by all following trainings. The same
+	 * instance is reused and retrained by each of them, so a retraining modifies
+	 * the predictor of the model in use.
+	 * 
+	 * @param featurePredictor the feature predictor
+	 * @deprecated use {@link #setFeaturePredictorFactory(Supplier)}, which gives
+	 *             each training its own feature predictor
+	 */
+	@Deprecated
 	public void setFeaturePredictor(FeaturePredictor featurePredictor) {
-		this.featurePredictor = featurePredictor;
+		this.featurePredictorFactory = () -> featurePredictor;
+	}
+
+	public boolean isPruneByNorm() {
+		return pruneByNorm;
+	}
+
+	public void setPruneByNorm(boolean pruneByNorm) {
+		this.pruneByNorm = pruneByNorm;
+	}
+
+	public double getFoldInLambda() {
+		return foldInLambda;
+	}
+
+	/**
+	 * Sets the regularization of the latent features of new instances fitted to
+	 * observed item values, see {@link #predictForObservations(double[])}; when
+	 * combined with instance features, this is the weight of the latent features
+	 * predicted from them.
+	 * 
+	 * @param foldInLambda the regularization, positive
+	 */
+	public void setFoldInLambda(double foldInLambda) {
+		this.foldInLambda = foldInLambda;
+	}
+
+	public boolean isWarmStart() {
+		return warmStart;
+	}
+
+	/**
+	 * Sets whether {@link #prepareColdStart(SparseMatrix, double[][])} and
+	 * {@link #retrainAsync(SparseMatrix, double[][], Executor)} start the
+	 * factorization from the factors of the current model, if any, instead of
+	 * random ones. This assumes that the instances and items of the previous
+	 * training keep their rows and columns, with new ones appended. Completers
+	 * that cannot be warm-started ignore this.
+	 * 
+	 * @param warmStart whether to warm-start the factorization
+	 */
+	public void setWarmStart(boolean warmStart) {
+		this.warmStart = warmStart;
 	}
 
 	public boolean isPrepared() {
-		return isPrepared;
+		return model.get() != null;
 	}
 }
@@ -14,4 +14,8 @@ public class AlorsException extends Exception {
 		super(message);
 	}
 
+	public AlorsException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
 }
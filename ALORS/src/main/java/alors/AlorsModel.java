@@ -0,0 +1,277 @@
+package alors;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+
+import alors.latent_features.FeaturePredictor;
+import alors.latent_features.FeaturePredictorException;
+import alors.util.BlockedFactors;
+import alors.util.LinearAlgebra;
+
+/**
+ * A trained ALORS model: the latent features of the training instances (U) and
+ * items (V) and the feature predictor mapping instance features to latent
+ * features. A model is never modified after its creation, so it can be used
+ * by any number of threads at once without locking. {@link Alors} creates a new
+ * model on every training and replaces the previous one as a whole. Models can
+ * be saved to and loaded from a binary file, see {@link #save(Path)}.
+ *
+ * <p>
+ * V is only kept in the layout for scoring (see {@link BlockedFactors}), in the
+ * order of the items. The items sorted by norm for top-k queries are only
+ * copied on the first query, see {@link #recommendTopK(double[], int, boolean)}.
+ *
+ * @author helegraf
+ *
+ */
+public final class AlorsModel {
+
+	// u is created on first use if the model was loaded
+	private final Supplier<double[][]> uLoader;
+	private volatile double[][] u;
+	private final BlockedFactors v;
+	private final FeaturePredictor featurePredictor;
+
+	// created on the first top-k query
+	private volatile NormSortedItems sortedItems;
+
+	/**
+	 * Creates a model; U is not copied and, like the predictor, must not be
+	 * modified afterwards, V is copied into the layout for scoring.
+	 *
+	 * @param u                the latent features of the training instances (one
+	 *                         row per instance)
+	 * @param v                the latent features of the items (one row per item)
+	 * @param featurePredictor the trained feature predictor, which must not be
+	 *                         trained again
+	 */
+	public AlorsModel(double[][] u, double[][] v, FeaturePredictor featurePredictor) {
+		if (u.length > 0 && v.length > 0 && u[0].length != v[0].length) {
+			throw new IllegalArgumentException("U and V must have the same number of latent features.");
+		}
+		this.u = u;
+		this.uLoader = null;
+		this.v = new BlockedFactors(v);
+		this.featurePredictor = featurePredictor;
+	}
+
+	/**
+	 * Creates a model whose instance factors are only loaded when first needed.
+	 */
+	AlorsModel(Supplier<double[][]> uLoader, BlockedFactors v, FeaturePredictor featurePredictor) {
+		this.uLoader = uLoader;
+		this.v = v;
+		this.featurePredictor = featurePredictor;
+	}
+
+	/**
+	 * Saves this model to the given file (see {@link ModelFile} for the format).
+	 * The feature predictor is saved by java serialization.
+	 *
+	 * @param path the file, replaced if it exists
+	 * @throws IOException if the file cannot be written or the feature predictor
+	 *                     is not serializable
+	 */
+	public void save(Path path) throws IOException {
+		ModelFile.write(path, this);
+	}
+
+	/**
+	 * Loads a model saved by {@link #save(Path)}. The factors are memory-mapped;
+	 * the latent features of the training instances are only read on the first
+	 * call of {@link #getU()}, so the time to load is dominated by the feature
+	 * predictor.
+	 *
+	 * @param path the file
+	 * @return the model
+	 * @throws IOException if the file cannot be read or is not a model file
+	 */
+	public static AlorsModel load(Path path) throws IOException {
+		return ModelFile.read(path);
+	}
+
+	/**
+	 * Returns a prediction for the given instance.
+	 *
+	 * @param featureVectorX the instance features
+	 * @return a prediction of item values
+	 * @throws FeaturePredictorException if the latent features for the instance
+	 *                                   could not be predicted
+	 */
+	public double[] predictForFeatures(double[] featureVectorX) throws FeaturePredictorException {
+		return predictForLatentFeatures(featurePredictor.predict(featureVectorX));
+	}
+
+	/**
+	 * Returns the item values for an instance with the given latent features,
+	 * e.g. obtained by {@link #foldIn(double[], double)}.
+	 *
+	 * @param latentFeatures the latent features of the instance
+	 * @return a prediction of item values
+	 */
+	public double[] predictForLatentFeatures(double[] latentFeatures) {
+		return v.multiply(latentFeatures);
+	}
+
+	/**
+	 * Computes the latent features of a new instance from the item values
+	 * observed for it, keeping V fixed: solves the ridge regression problem
+	 * <code>min_u sum_j (v_j * u - m_j)^2 + lambda * ||u||^2</code> over the
+	 * observed items j, as one half step of alternating least squares. The cost
+	 * depends on the number of observed items and latent features only.
+	 *
+	 * @param observedRow the values of all items for the instance, NaN if not
+	 *                    observed
+	 * @param lambda      the regularization, has to be positive if fewer items
+	 *                    than latent features are observed
+	 * @return the latent features of the instance
+	 */
+	public double[] foldIn(double[] observedRow, double lambda) {
+		return fitLatentFeatures(observedRow, null, lambda);
+	}
+
+	/**
+	 * Computes the latent features of a new instance from its features and the
+	 * item values observed for it: like {@link #foldIn(double[], double)}, but
+	 * regularizes towards the latent features predicted from the instance
+	 * features, <code>lambda * ||u - prior||^2</code>. Without observed items,
+	 * this is the prediction from the features alone.
+	 *
+	 * @param featureVectorX the instance features
+	 * @param observedRow    the values of all items for the instance, NaN if not
+	 *                       observed
+	 * @param lambda         the weight of the predicted latent features, has to be
+	 *                       positive
+	 * @return the latent features of the instance
+	 * @throws FeaturePredictorException if the latent features for the instance
+	 *                                   could not be predicted
+	 */
+	public double[] foldIn(double[] featureVectorX, double[] observedRow, double lambda)
+			throws FeaturePredictorException {
+		return fitLatentFeatures(observedRow, featurePredictor.predict(featureVectorX), lambda);
+	}
+
+	private double[] fitLatentFeatures(double[] observedRow, double[] prior, double lambda) {
+		if (observedRow.length != v.getNumRows()) {
+			throw new IllegalArgumentException(
+					String.format("Expected values for %d items, got %d.", v.getNumRows(), observedRow.length));
+		}
+		int dimW = v.getNumColumns();
+
+		// normal equations (V_o^T V_o + lambda I) u = V_o^T m_o + lambda prior
+		double[][] gram = new double[dimW][dimW];
+		double[] rhs = new double[dimW];
+		double[] factor = new double[dimW];
+		for (int j = 0; j < observedRow.length; j++) {
+			double value = observedRow[j];
+			if (Double.isNaN(value)) {
+				continue;
+			}
+			v.getRow(j, factor);
+			for (int a = 0; a < dimW; a++) {
+				double fa = factor[a];
+				rhs[a] += fa * value;
+				double[] gramRow = gram[a];
+				for (int b = 0; b <= a; b++) {
+					gramRow[b] += fa * factor[b];
+				}
+			}
+		}
+		for (int a = 0; a < dimW; a++) {
+			gram[a][a] += lambda;
+			if (prior != null) {
+				rhs[a] += lambda * prior[a];
+			}
+		}
+
+		return LinearAlgebra.solveSymmetricPositiveDefinite(gram, rhs);
+	}
+
+	/**
+	 * Returns a prediction for each of the given instances, see
+	 * {@link Alors#predictForFeatures(double[][])}.
+	 *
+	 * @param featureMatrixX the instance features (rows = instances, columns =
+	 *                       features)
+	 * @return a prediction of item values for each instance (rows = instances,
+	 *         columns = items)
+	 * @throws FeaturePredictorException if the latent features for the instances
+	 *                                   could not be predicted
+	 */
+	public double[][] predictForFeatures(double[][] featureMatrixX) throws FeaturePredictorException {
+		double[][] latentFeatures = featurePredictor.predict(featureMatrixX);
+		return v.multiplyTransposed(latentFeatures);
+	}
+
+	/**
+	 * Returns the k items with the highest predicted values for the given
+	 * instance, see {@link Alors#recommendTopK(double[], int)}. The first query
+	 * sorts a copy of V by the norms of the items.
+	 *
+	 * @param featureVectorX the instance features
+	 * @param k              the number of items to recommend
+	 * @param pruneByNorm    whether to stop once no remaining item can beat the
+	 *                       k-th best one
+	 * @return the k best items (or all items if there are fewer), best first
+	 * @throws FeaturePredictorException if the latent features for the instance
+	 *                                   could not be predicted
+	 */
+	public Recommendation recommendTopK(double[] featureVectorX, int k, boolean pruneByNorm)
+			throws FeaturePredictorException {
+		double[] latentFeatures = featurePredictor.predict(featureVectorX);
+		return getSortedItems().topK(latentFeatures, k, pruneByNorm);
+	}
+
+	private NormSortedItems getSortedItems() {
+		NormSortedItems result = sortedItems;
+		if (result == null) {
+			synchronized (this) {
+				if (sortedItems == null) {
+					sortedItems = new NormSortedItems(v);
+				}
+				result = sortedItems;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the latent features of the training instances, must not be
+	 *         modified
+	 */
+	public double[][] getU() {
+		double[][] result = u;
+		if (result == null) {
+			synchronized (this) {
+				if (u == null) {
+					u = uLoader.get();
+				}
+				result = u;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return a new copy of the latent features of the items (one row per item)
+	 */
+	public double[][] getV() {
+		return v.toArray();
+	}
+
+	/**
+	 * @return the latent features of the items in the layout for scoring
+	 */
+	BlockedFactors getBlockedV() {
+		return v;
+	}
+
+	public FeaturePredictor getFeaturePredictor() {
+		return featurePredictor;
+	}
+
+	public int getNumItems() {
+		return v.getNumRows();
+	}
+}
@@ -0,0 +1,219 @@
+package alors;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import alors.latent_features.FeaturePredictor;
+import alors.util.BlockedFactors;
+
+/**
+ * Reads and writes {@link AlorsModel}s in a versioned binary format:
+ *
+ * <pre>
+ * int    magic number 0x414C4F52 ("ALOR")
+ * int    format version
+ * int    number of instances (rows of U)
+ * int    number of items (rows of V)
+ * int    number of latent features
+ * int    reserved, 0
+ * double U, row-major
+ * double V, in the layout of {@link BlockedFactors}: blocks of 8 items, each
+ *        dimension by dimension, the last block padded with rows of 0
+ * long   length of the feature predictor in bytes
+ * byte   the feature predictor, java-serialized
+ * </pre>
+ *
+ * All numbers are little-endian. When reading, the factor sections are
+ * memory-mapped instead of read: V is copied out of the mapping as a whole,
+ * without rearranging it, U is only copied on its first use, as predictions
+ * do not need it. Thus a model file is
+ * never rewritten in place; a new file replaces it atomically, and models
+ * read from the old one keep their mapping of it.
+ *
+ * @author helegraf
+ *
+ */
+class ModelFile {
+
+	static final int MAGIC = 0x414C4F52;
+	static final int VERSION = 2;
+
+	private static final int HEADER_SIZE = 24;
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	// the number of bytes of a factor section mapped at once
+	private static final long WINDOW_SIZE = 64L << 20;
+
+	private ModelFile() {
+	}
+
+	/**
+	 * Writes the given model to a temporary file in the directory of the given
+	 * file, which then atomically replaces the given file.
+	 *
+	 * @param path  the file
+	 * @param model the model, its feature predictor has to be serializable
+	 * @throws IOException if the file or the feature predictor cannot be written
+	 */
+	static void write(Path path, AlorsModel model) throws IOException {
+		double[][] u = model.getU();
+		BlockedFactors v = model.getBlockedV();
+		int dimW = v.getNumRows() > 0 ? v.getNumColumns() : u.length > 0 ? u[0].length : 0;
+
+		ByteArrayOutputStream predictorBytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(predictorBytes)) {
+			out.writeObject(model.getFeaturePredictor());
+		}
+
+		Path target = path.toAbsolutePath();
+		Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+				ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+				buffer.putInt(MAGIC).putInt(VERSION).putInt(u.length).putInt(v.getNumRows()).putInt(dimW).putInt(0);
+				for (double[] row : u) {
+					writeValues(channel, buffer, row);
+				}
+				double[] block = new double[BlockedFactors.BLOCK_SIZE * v.getNumColumns()];
+				for (int b = 0; b < v.getNumBlocks(); b++) {
+					v.getBlock(b, block);
+					writeValues(channel, buffer, block);
+				}
+				if (buffer.remaining() < Long.BYTES) {
+					flush(channel, buffer);
+				}
+				buffer.putLong(predictorBytes.size());
+				flush(channel, buffer);
+
+				ByteBuffer predictor = ByteBuffer.wrap(predictorBytes.toByteArray());
+				while (predictor.hasRemaining()) {
+					channel.write(predictor);
+				}
+			}
+			Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	private static void writeValues(FileChannel channel, ByteBuffer buffer, double[] values) throws IOException {
+		for (double value : values) {
+			if (buffer.remaining() < Double.BYTES) {
+				flush(channel, buffer);
+			}
+			buffer.putDouble(value);
+		}
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Reads a model from the given file.
+	 *
+	 * @param path the file
+	 * @return the model
+	 * @throws IOException if the file cannot be read, is not a model file of a
+	 *                     supported version or is truncated
+	 */
+	static AlorsModel read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_SIZE) {
+				throw new IOException("Not an ALORS model file: " + path);
+			}
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getInt() != MAGIC) {
+				throw new IOException("Not an ALORS model file: " + path);
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported ALORS model version " + version);
+			}
+			int numInstances = header.getInt();
+			int numItems = header.getInt();
+			int dimW = header.getInt();
+			if (numInstances < 0 || numItems < 0 || dimW < 0) {
+				throw new IOException("Corrupt ALORS model header in " + path);
+			}
+
+			long uOffset = HEADER_SIZE;
+			int numBlocks = (numItems + BlockedFactors.BLOCK_SIZE - 1) / BlockedFactors.BLOCK_SIZE;
+			long vOffset = uOffset + (long) numInstances * dimW * Double.BYTES;
+			long predictorOffset = vOffset + (long) numBlocks * BlockedFactors.BLOCK_SIZE * dimW * Double.BYTES;
+			if (size < predictorOffset + Long.BYTES) {
+				throw new IOException("Truncated ALORS model file: " + path);
+			}
+
+			List<DoubleBuffer> u = map(channel, uOffset, numInstances, dimW);
+			BlockedFactors v = BlockedFactors.fromBlocks(
+					map(channel, vOffset, numBlocks, BlockedFactors.BLOCK_SIZE * dimW), numItems, dimW);
+
+			long predictorLength = channel.map(FileChannel.MapMode.READ_ONLY, predictorOffset, Long.BYTES)
+					.order(ByteOrder.LITTLE_ENDIAN).getLong();
+			if (size != predictorOffset + Long.BYTES + predictorLength) {
+				throw new IOException("Truncated ALORS model file: " + path);
+			}
+			channel.position(predictorOffset + Long.BYTES);
+			FeaturePredictor featurePredictor;
+			try (ObjectInputStream in = new ObjectInputStream(
+					new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE))) {
+				featurePredictor = (FeaturePredictor) in.readObject();
+			} catch (ClassNotFoundException | ClassCastException e) {
+				throw new IOException("Cannot read the feature predictor of " + path, e);
+			}
+
+			// the mappings stay valid after the channel is closed
+			return new AlorsModel(() -> toArray(u, numInstances, dimW), v, featurePredictor);
+		}
+	}
+
+	/**
+	 * Maps a factor section in windows of whole rows (or blocks).
+	 */
+	private static List<DoubleBuffer> map(FileChannel channel, long offset, int numRows, int numColumns)
+			throws IOException {
+		long rowSize = (long) numColumns * Double.BYTES;
+		long rowsPerWindow = Math.max(1, WINDOW_SIZE / Math.max(1, rowSize));
+		List<DoubleBuffer> windows = new ArrayList<>();
+		for (long row = 0; row < numRows; row += rowsPerWindow) {
+			long rows = Math.min(rowsPerWindow, numRows - row);
+			windows.add(channel.map(FileChannel.MapMode.READ_ONLY, offset + row * rowSize, rows * rowSize)
+					.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer());
+		}
+		return windows;
+	}
+
+	private static double[][] toArray(List<DoubleBuffer> windows, int numRows, int numColumns) {
+		double[][] factors = new double[numRows][numColumns];
+		int row = 0;
+		for (DoubleBuffer window : windows) {
+			// a duplicate keeps the position of the shared mapping untouched
+			DoubleBuffer values = window.duplicate();
+			while (values.hasRemaining()) {
+				values.get(factors[row++]);
+			}
+		}
+		return factors;
+	}
+}
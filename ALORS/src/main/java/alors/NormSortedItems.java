@@ -0,0 +1,142 @@
+package alors;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+import alors.util.BlockedFactors;
+import alors.util.LinearAlgebra;
+
+/**
+ * The latent features of all items, ordered by decreasing norm, for answering
+ * top-k queries: items are scored in this order and a bounded min-heap keeps
+ * the k best ones. As the score of an item is at most the product of its norm
+ * and the norm of the query (Cauchy-Schwarz), the search stops as soon as this
+ * bound of the next item does not exceed the k-th best score found. The items
+ * are scored a block at a time (see {@link BlockedFactors}).
+ * 
+ * @author helegraf
+ *
+ */
+class NormSortedItems {
+
+	private final int[] items;
+	private final BlockedFactors features;
+	private final double[] norms;
+
+	/**
+	 * Sorts the given item features by norm into a blocked copy.
+	 * 
+	 * @param v the latent features of the items (one row per item)
+	 */
+	NormSortedItems(BlockedFactors v) {
+		int numItems = v.getNumRows();
+		double[][] allFeatures = new double[numItems][v.getNumColumns()];
+		double[] allNorms = new double[numItems];
+		for (int j = 0; j < numItems; j++) {
+			v.getRow(j, allFeatures[j]);
+			allNorms[j] = Math.sqrt(LinearAlgebra.dot(allFeatures[j], allFeatures[j]));
+		}
+		items = IntStream.range(0, numItems).boxed()
+				.sorted(Comparator.comparingDouble((Integer j) -> allNorms[j]).reversed())
+				.mapToInt(Integer::intValue).toArray();
+
+		double[][] sortedFeatures = new double[numItems][];
+		norms = new double[numItems];
+		for (int position = 0; position < items.length; position++) {
+			sortedFeatures[position] = allFeatures[items[position]];
+			norms[position] = allNorms[items[position]];
+		}
+		features = new BlockedFactors(sortedFeatures);
+	}
+
+	/**
+	 * Finds the k items with the highest score <code>u * v_j</code>.
+	 * 
+	 * @param u     the latent features of the query instance
+	 * @param k     the number of items, at most the number of items are returned
+	 * @param prune whether to stop at the norm bound, otherwise all items are
+	 *              scored
+	 * @return the best items, best first
+	 */
+	Recommendation topK(double[] u, int k, boolean prune) {
+		if (k <= 0) {
+			throw new IllegalArgumentException("k must be positive.");
+		}
+		int size = Math.min(k, items.length);
+		double queryNorm = Math.sqrt(LinearAlgebra.dot(u, u));
+
+		// min-heap of the best items so far, the k-th best at the root
+		int[] heapItems = new int[size];
+		double[] heapScores = new double[size];
+		int heapSize = 0;
+		double[] blockScores = new double[BlockedFactors.BLOCK_SIZE];
+		for (int position = 0; position < items.length; position++) {
+			if (prune && heapSize == size && queryNorm * norms[position] <= heapScores[0]) {
+				break;
+			}
+
+			int offset = position % BlockedFactors.BLOCK_SIZE;
+			if (offset == 0) {
+				features.multiplyBlock(u, position / BlockedFactors.BLOCK_SIZE, blockScores);
+			}
+			double score = blockScores[offset];
+			if (heapSize < size) {
+				heapItems[heapSize] = items[position];
+				heapScores[heapSize] = score;
+				siftUp(heapItems, heapScores, heapSize++);
+			} else if (score > heapScores[0]) {
+				heapItems[0] = items[position];
+				heapScores[0] = score;
+				siftDown(heapItems, heapScores, heapSize);
+			}
+		}
+
+		// repeatedly moving the root behind the heap sorts by decreasing score
+		for (int end = heapSize - 1; end > 0; end--) {
+			swap(heapItems, heapScores, 0, end);
+			siftDown(heapItems, heapScores, end);
+		}
+		return new Recommendation(Arrays.copyOf(heapItems, heapSize), Arrays.copyOf(heapScores, heapSize));
+	}
+
+	private static void siftUp(int[] heapItems, double[] heapScores, int index) {
+		while (index > 0) {
+			int parent = (index - 1) / 2;
+			if (heapScores[parent] <= heapScores[index]) {
+				return;
+			}
+			swap(heapItems, heapScores, parent, index);
+			index = parent;
+		}
+	}
+
+	private static void siftDown(int[] heapItems, double[] heapScores, int heapSize) {
+		int index = 0;
+		while (true) {
+			int smallest = index;
+			int left = 2 * index + 1;
+			int right = left + 1;
+			if (left < heapSize && heapScores[left] < heapScores[smallest]) {
+				smallest = left;
+			}
+			if (right < heapSize && heapScores[right] < heapScores[smallest]) {
+				smallest = right;
+			}
+			if (smallest == index) {
+				return;
+			}
+			swap(heapItems, heapScores, smallest, index);
+			index = smallest;
+		}
+	}
+
+	private static void swap(int[] heapItems, double[] heapScores, int a, int b) {
+		int item = heapItems[a];
+		heapItems[a] = heapItems[b];
+		heapItems[b] = item;
+		double score = heapScores[a];
+		heapScores[a] = heapScores[b];
+		heapScores[b] = score;
+	}
+}
@@ -0,0 +1,57 @@
+package alors;
+
+/**
+ * The best items (e.g. algorithms) for an instance, ordered by decreasing
+ * predicted score.
+ * 
+ * @author helegraf
+ *
+ */
+public class Recommendation {
+
+	private final int[] items;
+	private final double[] scores;
+
+	/**
+	 * Creates a recommendation; the arrays are not copied.
+	 * 
+	 * @param items  the item indices (columns of the performance matrix), best
+	 *               first
+	 * @param scores the predicted score of each item
+	 */
+	public Recommendation(int[] items, double[] scores) {
+		this.items = items;
+		this.scores = scores;
+	}
+
+	/**
+	 * @return the number of recommended items
+	 */
+	public int size() {
+		return items.length;
+	}
+
+	/**
+	 * @param rank the rank, starting at 0 for the best item
+	 * @return the index of the item at the given rank
+	 */
+	public int getItem(int rank) {
+		return items[rank];
+	}
+
+	/**
+	 * @param rank the rank, starting at 0 for the best item
+	 * @return the predicted score of the item at the given rank
+	 */
+	public double getScore(int rank) {
+		return scores[rank];
+	}
+
+	public int[] getItems() {
+		return items;
+	}
+
+	public double[] getScores() {
+		return scores;
+	}
+}
@@ -0,0 +1,163 @@
+package alors.evaluation;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The result of a cold-start cross-validation by {@link ColdStartEvaluator}:
+ * the quality of the predictions for each instance and the time and memory
+ * needed by each phase.
+ *
+ * @author helegraf
+ *
+ */
+public class ColdStartEvaluation {
+
+	/**
+	 * The phases of an evaluation, each run for all folds in parallel.
+	 */
+	public enum Phase {
+		/**
+		 * Completing the training matrix and training the feature predictor.
+		 */
+		TRAINING,
+		/**
+		 * Predicting the item values of the test instances from their features.
+		 */
+		PREDICTION
+	}
+
+	private final int ndcgK;
+	private final double[] ndcg;
+	private final double[] regret;
+	private final double[] spearman;
+	private final Map<Phase, PhaseStatistics> phases;
+
+	ColdStartEvaluation(int ndcgK, double[] ndcg, double[] regret, double[] spearman,
+			Map<Phase, PhaseStatistics> phases) {
+		this.ndcgK = ndcgK;
+		this.ndcg = ndcg;
+		this.regret = regret;
+		this.spearman = spearman;
+		this.phases = Collections.unmodifiableMap(new EnumMap<>(phases));
+	}
+
+	public int getNdcgK() {
+		return ndcgK;
+	}
+
+	/**
+	 * @return the NDCG@k of each instance, NaN where it is undefined
+	 */
+	public double[] getNdcg() {
+		return ndcg;
+	}
+
+	/**
+	 * @return the top-1 regret of each instance, NaN where it is undefined
+	 */
+	public double[] getRegret() {
+		return regret;
+	}
+
+	/**
+	 * @return the Spearman rank correlation of each instance, NaN where it is
+	 *         undefined
+	 */
+	public double[] getSpearman() {
+		return spearman;
+	}
+
+	public double getMeanNdcg() {
+		return mean(ndcg);
+	}
+
+	public double getMeanRegret() {
+		return mean(regret);
+	}
+
+	public double getMeanSpearman() {
+		return mean(spearman);
+	}
+
+	/**
+	 * @param phase the phase
+	 * @return the time and memory needed by the phase
+	 */
+	public PhaseStatistics getPhaseStatistics(Phase phase) {
+		return phases.get(phase);
+	}
+
+	private static double mean(double[] values) {
+		return Arrays.stream(values).filter(value -> !Double.isNaN(value)).average().orElse(Double.NaN);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(String.format("NDCG@%d %.4f, top-1 regret %.4f, Spearman %.4f over %d instances", ndcgK,
+				getMeanNdcg(), getMeanRegret(), getMeanSpearman(), ndcg.length));
+		for (Map.Entry<Phase, PhaseStatistics> phase : phases.entrySet()) {
+			builder.append(System.lineSeparator()).append(phase.getKey()).append(": ").append(phase.getValue());
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * The time and memory needed by a phase of the evaluation.
+	 */
+	public static class PhaseStatistics {
+
+		private final long wallClockMillis;
+		private final long[] foldMillis;
+		private final long peakHeapBytes;
+
+		PhaseStatistics(long wallClockMillis, long[] foldMillis, long peakHeapBytes) {
+			this.wallClockMillis = wallClockMillis;
+			this.foldMillis = foldMillis;
+			this.peakHeapBytes = peakHeapBytes;
+		}
+
+		/**
+		 * @return the time from the start of the first fold to the end of the last
+		 *         one
+		 */
+		public long getWallClockMillis() {
+			return wallClockMillis;
+		}
+
+		/**
+		 * @return the time each fold took
+		 */
+		public long[] getFoldMillis() {
+			return foldMillis;
+		}
+
+		public long getMaxFoldMillis() {
+			return Arrays.stream(foldMillis).max().orElse(0);
+		}
+
+		public long getTotalFoldMillis() {
+			return Arrays.stream(foldMillis).sum();
+		}
+
+		/**
+		 * @return the largest used heap of the JVM sampled during the phase. This
+		 *         includes the results of the previous phases, garbage not yet
+		 *         collected and the memory of anything else running in the JVM
+		 *         at the same time, and may miss peaks shorter than the sampling
+		 *         interval
+		 */
+		public long getPeakHeapBytes() {
+			return peakHeapBytes;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("wall clock %d ms, folds %d ms in total, %d ms at most, peak heap %d MB",
+					wallClockMillis, getTotalFoldMillis(), getMaxFoldMillis(), peakHeapBytes >> 20);
+		}
+	}
+}
@@ -0,0 +1,355 @@
+package alors.evaluation;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import alors.Alors;
+import alors.AlorsException;
+import alors.evaluation.ColdStartEvaluation.Phase;
+import alors.evaluation.ColdStartEvaluation.PhaseStatistics;
+import alors.latent_features.FeaturePredictorException;
+import alors.matrix_completion.MatrixCompleterException;
+import alors.util.RankingMetrics;
+
+/**
+ * Evaluates {@link Alors} on the cold-start problem by cross-validation over
+ * the instances: for each fold, Alors is trained on the other instances (see
+ * {@link Alors#completeMatrixAndPrepareColdStart(double[][], double[][])}) and
+ * predicts the item values of the instances of the fold from their features
+ * alone (see {@link Alors#predictForFeatures(double[][])}). The predictions
+ * are compared to the observed values by NDCG@k, top-1 regret and Spearman
+ * rank correlation.
+ *
+ * <p>
+ * The folds run in parallel, first all trainings, then all predictions, so
+ * that the time and peak heap usage of each phase can be reported. Each fold
+ * uses its own {@link Alors} instance. The heap usage is that of the whole
+ * JVM, sampled while the phase runs, so it also counts other activity of the
+ * JVM at the same time.
+ *
+ * @author helegraf
+ *
+ */
+public class ColdStartEvaluator {
+
+	/**
+	 * Value of {@link #setNumFolds(int)} for leave-one-out cross-validation.
+	 */
+	public static final int LEAVE_ONE_OUT = 0;
+
+	// the interval in which the used heap is sampled during a phase
+	private static final long HEAP_SAMPLE_MILLIS = 10;
+
+	// logging
+	private Logger logger = LoggerFactory.getLogger(ColdStartEvaluator.class);
+
+	private final Supplier<Alors> alorsFactory;
+
+	// options
+	private int numFolds = 10;
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+	private int ndcgK = 3;
+	private boolean higherIsBetter = true;
+	private long seed = 0;
+
+	/**
+	 * Creates an evaluator training the instances of {@link Alors} created by the
+	 * given factory, one per fold.
+	 *
+	 * @param alorsFactory creates a new, untrained instance of Alors
+	 */
+	public ColdStartEvaluator(Supplier<Alors> alorsFactory) {
+		this.alorsFactory = alorsFactory;
+	}
+
+	/**
+	 * Cross-validates Alors on the given instances.
+	 *
+	 * @param matrixM the item values of the instances (rows = instances, columns
+	 *                = items), NaN if not observed
+	 * @param matrixX the features of the instances (rows = instances, columns =
+	 *                features)
+	 * @return the quality of the predictions per instance and the statistics of
+	 *         each phase
+	 * @throws MatrixCompleterException  if a training matrix cannot be completed
+	 * @throws FeaturePredictorException if a feature predictor cannot be trained
+	 *                                   or used
+	 * @throws AlorsException            if the evaluation is interrupted
+	 */
+	public ColdStartEvaluation evaluate(double[][] matrixM, double[][] matrixX)
+			throws MatrixCompleterException, FeaturePredictorException, AlorsException {
+		int numInstances = matrixM.length;
+		int[][] folds = createFolds(numInstances);
+		logger.debug("Evaluating {} instances in {} folds", numInstances, folds.length);
+
+		Map<Phase, PhaseStatistics> phases = new EnumMap<>(Phase.class);
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		try {
+			List<Callable<Alors>> trainings = new ArrayList<>();
+			for (int[] fold : folds) {
+				int[] trainingInstances = complement(fold, numInstances);
+				trainings.add(() -> {
+					Alors alors = alorsFactory.get();
+					alors.completeMatrixAndPrepareColdStart(select(matrixM, trainingInstances),
+							select(matrixX, trainingInstances));
+					return alors;
+				});
+			}
+			List<Alors> trained = runPhase(pool, Phase.TRAINING, trainings, phases);
+
+			List<Callable<double[][]>> predictions = new ArrayList<>();
+			for (int f = 0; f < folds.length; f++) {
+				Alors alors = trained.get(f);
+				double[][] testFeatures = select(matrixX, folds[f]);
+				predictions.add(() -> alors.predictForFeatures(testFeatures));
+			}
+			List<double[][]> predicted = runPhase(pool, Phase.PREDICTION, predictions, phases);
+
+			double[] ndcg = new double[numInstances];
+			double[] regret = new double[numInstances];
+			double[] spearman = new double[numInstances];
+			for (int f = 0; f < folds.length; f++) {
+				for (int n = 0; n < folds[f].length; n++) {
+					int instance = folds[f][n];
+					double[] truth = orient(matrixM[instance]);
+					double[] prediction = orient(predicted.get(f)[n]);
+					ndcg[instance] = RankingMetrics.ndcg(truth, prediction, ndcgK);
+					regret[instance] = RankingMetrics.topOneRegret(truth, prediction);
+					spearman[instance] = RankingMetrics.spearman(truth, prediction);
+				}
+			}
+			ColdStartEvaluation evaluation = new ColdStartEvaluation(ndcgK, ndcg, regret, spearman, phases);
+			logger.info("Cold-start evaluation: {}", evaluation);
+			return evaluation;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private <T> List<T> runPhase(ExecutorService pool, Phase phase, List<Callable<T>> tasks,
+			Map<Phase, PhaseStatistics> phases)
+			throws MatrixCompleterException, FeaturePredictorException, AlorsException {
+		HeapSampler heapSampler = new HeapSampler();
+		long[] foldMillis = new long[tasks.size()];
+		List<Future<T>> futures = new ArrayList<>();
+		long start = System.nanoTime();
+		for (int f = 0; f < tasks.size(); f++) {
+			int fold = f;
+			Callable<T> task = tasks.get(f);
+			futures.add(pool.submit(() -> {
+				long foldStart = System.nanoTime();
+				T result = task.call();
+				foldMillis[fold] = (System.nanoTime() - foldStart) / 1000000;
+				return result;
+			}));
+		}
+
+		List<T> results = new ArrayList<>();
+		long peakHeapBytes;
+		try {
+			for (Future<T> future : futures) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AlorsException("Cold-start evaluation interrupted", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof MatrixCompleterException) {
+				throw (MatrixCompleterException) cause;
+			} else if (cause instanceof FeaturePredictorException) {
+				throw (FeaturePredictorException) cause;
+			} else if (cause instanceof AlorsException) {
+				throw (AlorsException) cause;
+			}
+			throw new AlorsException("Cold-start evaluation failed", cause);
+		} finally {
+			peakHeapBytes = heapSampler.stop();
+		}
+		long wallClockMillis = (System.nanoTime() - start) / 1000000;
+		phases.put(phase, new PhaseStatistics(wallClockMillis, foldMillis, peakHeapBytes));
+		return results;
+	}
+
+	private int[][] createFolds(int numInstances) {
+		int k = numFolds == LEAVE_ONE_OUT ? numInstances : Math.min(numFolds, numInstances);
+		if (k < 2) {
+			throw new IllegalArgumentException("At least two folds are needed, got " + k);
+		}
+		List<Integer> order = new ArrayList<>();
+		for (int i = 0; i < numInstances; i++) {
+			order.add(i);
+		}
+		Collections.shuffle(order, new Random(seed));
+
+		int[][] folds = new int[k][];
+		for (int f = 0; f < k; f++) {
+			folds[f] = new int[(numInstances - f + k - 1) / k];
+		}
+		for (int n = 0; n < numInstances; n++) {
+			folds[n % k][n / k] = order.get(n);
+		}
+		return folds;
+	}
+
+	private static int[] complement(int[] fold, int numInstances) {
+		boolean[] inFold = new boolean[numInstances];
+		for (int instance : fold) {
+			inFold[instance] = true;
+		}
+		int[] complement = new int[numInstances - fold.length];
+		int n = 0;
+		for (int instance = 0; instance < numInstances; instance++) {
+			if (!inFold[instance]) {
+				complement[n++] = instance;
+			}
+		}
+		return complement;
+	}
+
+	private static double[][] select(double[][] matrix, int[] rows) {
+		double[][] selection = new double[rows.length][];
+		for (int n = 0; n < rows.length; n++) {
+			selection[n] = matrix[rows[n]];
+		}
+		return selection;
+	}
+
+	/**
+	 * Negates the values if lower values are better, as the ranking metrics
+	 * assume higher values to be better.
+	 */
+	private double[] orient(double[] values) {
+		if (higherIsBetter) {
+			return values;
+		}
+		double[] negated = new double[values.length];
+		for (int j = 0; j < values.length; j++) {
+			negated[j] = -values[j];
+		}
+		return negated;
+	}
+
+	/**
+	 * Samples the used heap of the JVM every {@link #HEAP_SAMPLE_MILLIS} ms
+	 * from its creation until it is stopped, keeping the maximum.
+	 */
+	private static class HeapSampler {
+
+		private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		private final Thread thread;
+		private volatile boolean stopped;
+		private volatile long peak;
+
+		private HeapSampler() {
+			sample();
+			thread = new Thread(() -> {
+				while (!stopped) {
+					sample();
+					try {
+						Thread.sleep(HEAP_SAMPLE_MILLIS);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}, "cold-start-heap-sampler");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		private void sample() {
+			peak = Math.max(peak, memory.getHeapMemoryUsage().getUsed());
+		}
+
+		/**
+		 * @return the largest sample, including one taken now
+		 */
+		private long stop() {
+			stopped = true;
+			thread.interrupt();
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			sample();
+			return peak;
+		}
+	}
+
+	public int getNumFolds() {
+		return numFolds;
+	}
+
+	/**
+	 * Sets the number of folds, i.e. of trainings.
+	 *
+	 * @param numFolds the number of folds, at least 2, or {@link #LEAVE_ONE_OUT}
+	 */
+	public void setNumFolds(int numFolds) {
+		this.numFolds = numFolds;
+	}
+
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * Sets the number of folds run in parallel.
+	 *
+	 * @param numThreads the number of threads
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	public int getNdcgK() {
+		return ndcgK;
+	}
+
+	public void setNdcgK(int ndcgK) {
+		this.ndcgK = ndcgK;
+	}
+
+	public boolean isHigherBetter() {
+		return higherIsBetter;
+	}
+
+	/**
+	 * Sets whether higher item values are better, e.g. accuracies, or lower ones,
+	 * e.g. runtimes or errors.
+	 *
+	 * @param higherIsBetter whether higher values are better
+	 */
+	public void setHigherBetter(boolean higherIsBetter) {
+		this.higherIsBetter = higherIsBetter;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Sets the seed of the random assignment of instances to folds.
+	 *
+	 * @param seed the seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+}
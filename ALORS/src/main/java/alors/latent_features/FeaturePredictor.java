@@ -2,7 +2,15 @@ package alors.latent_features;
 
 /**
  * Represents a very general multi-target regressor, used in the context of
- * ALORS to predict latent features from instance features.
+ * ALORS to predict latent features from instance features. Serializable
+ * predictors can be saved as part of a model, see
+ * {@link alors.AlorsModel#save(java.nio.file.Path)}.
+ * 
+ * <p>
+ * A trained predictor is shared by all predictions of a model, so its
+ * prediction methods have to allow concurrent calls without locking, e.g. by
+ * giving each thread its own copy of underlying regressors which are not
+ * thread-safe.
  * 
  * @author helegraf
  *
@@ -26,4 +34,21 @@ public interface FeaturePredictor {
 	 * @throws FeaturePredictorException if the prediction was not possible
 	 */
 	public double[] predict(double[] featureVectorX) throws FeaturePredictorException;
+
+	/**
+	 * Make a prediction of latent features for each of the given instances. By
+	 * default predicts each instance separately; implementations that can
+	 * predict a batch more efficiently should override this.
+	 * 
+	 * @param featureMatrixX the instance features (rows = instances)
+	 * @return a prediction of latent features for each instance
+	 * @throws FeaturePredictorException if the prediction was not possible
+	 */
+	public default double[][] predict(double[][] featureMatrixX) throws FeaturePredictorException {
+		double[][] results = new double[featureMatrixX.length][];
+		for (int i = 0; i < featureMatrixX.length; i++) {
+			results[i] = predict(featureMatrixX[i]);
+		}
+		return results;
+	}
 }
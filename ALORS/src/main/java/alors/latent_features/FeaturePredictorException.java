@@ -19,4 +19,8 @@ public class FeaturePredictorException extends Exception {
 		super(message);
 	}
 
+	public FeaturePredictorException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
 }
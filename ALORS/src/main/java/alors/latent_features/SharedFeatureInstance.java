@@ -0,0 +1,174 @@
+package alors.latent_features;
+
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Utils;
+
+/**
+ * A dense WEKA instance made of a feature vector that is shared with other
+ * instances plus its own target value as the last attribute. The instances of
+ * the per-latent-feature datasets of {@link WEKAFeaturePredictor} share the
+ * row of the feature matrix X instead of each holding a copy of it. Copies
+ * share the features as well; the features are only copied on the first
+ * modification of a feature value.
+ * 
+ * @author helegraf
+ *
+ */
+class SharedFeatureInstance extends DenseInstance {
+
+	private static final long serialVersionUID = -3253487061327405549L;
+
+	private double[] features;
+	private boolean ownsFeatures;
+	private double target;
+
+	/**
+	 * Creates an instance; the features are not copied and must not be modified
+	 * afterwards.
+	 * 
+	 * @param weight   the weight of the instance
+	 * @param features the feature values, the first attributes of the instance
+	 * @param target   the target value, the last attribute of the instance
+	 */
+	SharedFeatureInstance(double weight, double[] features, double target) {
+		super(weight, null);
+		this.features = features;
+		this.target = target;
+	}
+
+	/**
+	 * Creates an instance owning a buffer for the given number of features, to be
+	 * filled with {@link #setFeatures(double[])}. The target value is 0.
+	 * 
+	 * @param numFeatures the number of features
+	 */
+	SharedFeatureInstance(int numFeatures) {
+		this(1.0, new double[numFeatures], 0.0);
+		ownsFeatures = true;
+	}
+
+	private SharedFeatureInstance(SharedFeatureInstance instance) {
+		this(instance.weight(), instance.features, instance.target);
+		m_Dataset = instance.m_Dataset;
+		// from now on the features are shared, so neither may modify them in place
+		instance.ownsFeatures = false;
+	}
+
+	/**
+	 * Overwrites all feature values with the given ones, so the instance can be
+	 * reused without allocating. Copies the features first if they are shared.
+	 * 
+	 * @param values the new feature values
+	 */
+	void setFeatures(double[] values) {
+		if (!ownsFeatures) {
+			features = new double[features.length];
+			ownsFeatures = true;
+		}
+		System.arraycopy(values, 0, features, 0, features.length);
+	}
+
+	@Override
+	public Object copy() {
+		return new SharedFeatureInstance(this);
+	}
+
+	@Override
+	public Instance copy(double[] values) {
+		DenseInstance result = new DenseInstance(weight(), values);
+		result.setDataset(m_Dataset);
+		return result;
+	}
+
+	@Override
+	public double value(int attIndex) {
+		return attIndex < features.length ? features[attIndex] : target;
+	}
+
+	@Override
+	public double valueSparse(int indexOfIndex) {
+		return value(indexOfIndex);
+	}
+
+	@Override
+	public int index(int position) {
+		return position;
+	}
+
+	@Override
+	public int numAttributes() {
+		return features.length + 1;
+	}
+
+	@Override
+	public int numValues() {
+		return features.length + 1;
+	}
+
+	@Override
+	public void setValue(int attIndex, double value) {
+		if (attIndex < features.length) {
+			if (!ownsFeatures) {
+				features = features.clone();
+				ownsFeatures = true;
+			}
+			features[attIndex] = value;
+		} else {
+			target = value;
+		}
+	}
+
+	@Override
+	public void setValueSparse(int indexOfIndex, double value) {
+		setValue(indexOfIndex, value);
+	}
+
+	@Override
+	public void replaceMissingValues(double[] array) {
+		for (int i = 0; i < numAttributes(); i++) {
+			if (Utils.isMissingValue(value(i))) {
+				setValue(i, array[i]);
+			}
+		}
+	}
+
+	@Override
+	public double[] toDoubleArray() {
+		double[] values = new double[features.length + 1];
+		System.arraycopy(features, 0, values, 0, features.length);
+		values[features.length] = target;
+		return values;
+	}
+
+	@Override
+	public Instance mergeInstance(Instance inst) {
+		return toDenseInstance().mergeInstance(inst);
+	}
+
+	@Override
+	public String toStringNoWeight() {
+		return toDenseInstance().toStringNoWeight();
+	}
+
+	@Override
+	public String toStringNoWeight(int afterDecimalPoint) {
+		return toDenseInstance().toStringNoWeight(afterDecimalPoint);
+	}
+
+	@Override
+	protected void forceDeleteAttributeAt(int position) {
+		throw new UnsupportedOperationException("The attributes of a shared feature instance cannot be changed.");
+	}
+
+	@Override
+	protected void forceInsertAttributeAt(int position) {
+		throw new UnsupportedOperationException("The attributes of a shared feature instance cannot be changed.");
+	}
+
+	private DenseInstance toDenseInstance() {
+		DenseInstance instance = new DenseInstance(weight(), toDoubleArray());
+		instance.setDataset(m_Dataset);
+		return instance;
+	}
+}
@@ -1,37 +1,68 @@
 package alors.latent_features;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import alors.metrics.Metrics;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
+import weka.classifiers.ParallelIteratedSingleClassifierEnhancer;
+import weka.classifiers.ParallelMultipleClassifiersCombiner;
 import weka.classifiers.trees.RandomForest;
 import weka.core.Attribute;
+import weka.core.BatchPredictor;
 import weka.core.DenseInstance;
 import weka.core.Instances;
 
 /**
- * Predicts latent features using WEKA classifiers.
+ * Predicts latent features using WEKA classifiers. Trained predictors can be
+ * serialized along with their regressors.
+ * 
+ * <p>
+ * WEKA classifiers are not guaranteed to be thread-safe, some keep state
+ * while classifying an instance. Thus the trained regressors are never used
+ * for predictions themselves: each predicting thread classifies with its own
+ * copies of them, made on its first prediction after a training, so that
+ * concurrent predictions never wait for each other. A batch is split into
+ * blocks of instances predicted in parallel, each by a thread of the common
+ * {@link ForkJoinPool} with its copies.
  * 
  * @author helegraf
  *
  */
-public class WEKAFeaturePredictor implements FeaturePredictor {
-	
+public class WEKAFeaturePredictor implements FeaturePredictor, Serializable {
+
+	private static final long serialVersionUID = 2750196213857434512L;
+
+	// instances predicted by one task of a batch prediction
+	private static final int PREDICTION_BLOCK_SIZE = 256;
+
 	// logging
-	private Logger logger = LoggerFactory.getLogger(WEKAFeaturePredictor.class);
+	private transient Logger logger = LoggerFactory.getLogger(WEKAFeaturePredictor.class);
 	
 	// options
 	private String classifierName = new RandomForest().getClass().getName();
 	private String[] classifierOptions = new RandomForest().getOptions();
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+	private boolean shareFeatures = true;
 	
-	// results
-	private ArrayList<Classifier> regressors = new ArrayList<>();
-	private ArrayList<Instances> datasets= new ArrayList<>();
-	private boolean isPrepared = false;
+	// results, replaced as a whole by each training so that concurrent
+	// predictions never see a partially trained state
+	private volatile TrainedRegressors trained;
+
+	// per-thread instance the features of single predictions are copied into
+	private transient ThreadLocal<SharedFeatureInstance> queryInstances = new ThreadLocal<>();
 
 	@Override
 	public void train(double[][] featureMatrixX, double[][] featureMatrixU) throws FeaturePredictorException {
@@ -42,44 +73,105 @@ public class WEKAFeaturePredictor implements FeaturePredictor {
 		}
 		attInfo.add(new Attribute("target"));
 		
+		ArrayList<Instances> newDatasets = new ArrayList<>();
 		for (int i = 0; i < featureMatrixU[0].length; i++) {
-			datasets.add(new Instances("data-"+i, attInfo, featureMatrixX.length));
-			datasets.get(i).setClassIndex(attInfo.size()-1);
+			newDatasets.add(new Instances("data-"+i, attInfo, featureMatrixX.length));
+			newDatasets.get(i).setClassIndex(attInfo.size()-1);
 		}
 	
 		for (int i = 0; i < featureMatrixX.length; i++) {
+			// in shared mode, the datasets hold a single copy of the features
+			double[] features = featureMatrixX[i].clone();
 			for (int j = 0; j < featureMatrixU[0].length; j++) {
-				datasets.get(j).add(new DenseInstance(1.0, addToArray(featureMatrixX[i],featureMatrixU[i][j])));
+				if (shareFeatures) {
+					newDatasets.get(j).add(new SharedFeatureInstance(1.0, features, featureMatrixU[i][j]));
+				} else {
+					newDatasets.get(j).add(new DenseInstance(1.0, addToArray(features, featureMatrixU[i][j])));
+				}
 			}
 		}
 		
-		// train classifiers
-		logger.debug("Predicting with {}, options {}", classifierName, Arrays.toString(classifierOptions));
-		for (int i = 0; i < datasets.size(); i++) {
-			try {
-				regressors.add(AbstractClassifier.forName(classifierName, classifierOptions));
-				regressors.get(i).buildClassifier(datasets.get(i));
-			} catch (Exception e1) {
-				throw new FeaturePredictorException(e1);
+		// train classifiers, in parallel over the latent features
+		int parallelism = Math.max(1, Math.min(numThreads, newDatasets.size()));
+		int executionSlots = Math.max(1, numThreads / parallelism);
+		logger.debug("Training with {}, options {}, {} regressors in parallel with {} execution slots each",
+				classifierName, Arrays.toString(classifierOptions), parallelism, executionSlots);
+
+		Classifier[] newRegressors = new Classifier[newDatasets.size()];
+		Exception[] failures = new Exception[newDatasets.size()];
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.submit(() -> IntStream.range(0, newRegressors.length).parallel().forEach(i -> {
+				try {
+					// setOptions consumes the options, so each regressor gets its own copy
+					String[] options = classifierOptions != null ? classifierOptions.clone() : null;
+					Classifier regressor = AbstractClassifier.forName(classifierName, options);
+					setExecutionSlots(regressor, executionSlots);
+					Metrics.time(Metrics.REGRESSOR_TRAINING, () -> regressor.buildClassifier(newDatasets.get(i)));
+					newRegressors[i] = regressor;
+				} catch (Exception e) {
+					failures[i] = e;
+				}
+			})).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new FeaturePredictorException("Training interrupted", e);
+		} catch (ExecutionException e) {
+			throw new FeaturePredictorException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		// report the failure of the first latent feature, independent of timing
+		for (int i = 0; i < failures.length; i++) {
+			if (failures[i] != null) {
+				throw new FeaturePredictorException("Could not train regressor for latent feature " + i, failures[i]);
 			}
 		}
-		
-		isPrepared = true;
+
+		// only the header of the datasets is needed for predictions
+		trained = new TrainedRegressors(Arrays.asList(newRegressors), new Instances(newDatasets.get(0), 0));
 	}
-	
+
+	/**
+	 * Limits the threads a regressor uses itself, so that the regressors trained
+	 * in parallel do not use more than {@link #getNumThreads()} threads in total.
+	 */
+	private void setExecutionSlots(Classifier regressor, int executionSlots) {
+		if (regressor instanceof ParallelIteratedSingleClassifierEnhancer) {
+			((ParallelIteratedSingleClassifierEnhancer) regressor).setNumExecutionSlots(executionSlots);
+		} else if (regressor instanceof ParallelMultipleClassifiersCombiner) {
+			((ParallelMultipleClassifiersCombiner) regressor).setNumExecutionSlots(executionSlots);
+		}
+	}
+
 	@Override
 	public double[] predict(double[] featureVectorX) throws FeaturePredictorException {
-		if (!isPrepared) {
+		TrainedRegressors current = trained;
+		if (current == null) {
 			throw new FeaturePredictorException("Predictor has not been prepared!");
 		}
 		
-		double[] results = new double[regressors.size()];
-		
-		for (int i = 0; i < regressors.size(); i++) {
-			DenseInstance testInstance = new DenseInstance(1.0,addToArray(featureVectorX, 0.0));
-			testInstance.setDataset(datasets.get(i));
+		// all datasets share the same attributes, so one instance serves all
+		// regressors; it is reused by the calling thread until the next training
+		Instances header = current.header;
+		if (featureVectorX.length != header.numAttributes() - 1) {
+			throw new FeaturePredictorException(String.format("Expected %d features, got %d.",
+					header.numAttributes() - 1, featureVectorX.length));
+		}
+		SharedFeatureInstance testInstance = queryInstances.get();
+		if (testInstance == null || testInstance.dataset() != header) {
+			testInstance = new SharedFeatureInstance(featureVectorX.length);
+			testInstance.setDataset(header);
+			queryInstances.set(testInstance);
+		}
+		testInstance.setFeatures(featureVectorX);
+
+		Classifier[] regressors = current.getThreadCopies();
+		double[] results = new double[regressors.length];
+		for (int i = 0; i < results.length; i++) {
 			try {
-				results[i] = regressors.get(i).classifyInstance(testInstance);
+				results[i] = regressors[i].classifyInstance(testInstance);
 			} catch (Exception e) {
 				throw new FeaturePredictorException(e);
 			}
@@ -88,6 +180,55 @@ public class WEKAFeaturePredictor implements FeaturePredictor {
 		return results;
 	}
 
+	@Override
+	public double[][] predict(double[][] featureMatrixX) throws FeaturePredictorException {
+		TrainedRegressors current = trained;
+		if (current == null) {
+			throw new FeaturePredictorException("Predictor has not been prepared!");
+		}
+		int numRegressors = current.regressors.size();
+
+		// predict blocks of instances in parallel, each block with all regressors
+		// using the copies of the executing thread; all datasets share the same
+		// attributes, so one block serves all regressors and batch predictors get
+		// the whole block at once
+		double[][] results = new double[featureMatrixX.length][numRegressors];
+		int numBlocks = (featureMatrixX.length + PREDICTION_BLOCK_SIZE - 1) / PREDICTION_BLOCK_SIZE;
+		try {
+			IntStream.range(0, numBlocks).parallel().forEach(blockIndex -> {
+				int start = blockIndex * PREDICTION_BLOCK_SIZE;
+				int end = Math.min(featureMatrixX.length, start + PREDICTION_BLOCK_SIZE);
+				Instances block = new Instances(current.header, end - start);
+				for (int n = start; n < end; n++) {
+					block.add(new DenseInstance(1.0, addToArray(featureMatrixX[n], 0.0)));
+				}
+				try {
+					Classifier[] regressors = current.getThreadCopies();
+					for (int i = 0; i < numRegressors; i++) {
+						Classifier regressor = regressors[i];
+						if (regressor instanceof BatchPredictor
+								&& ((BatchPredictor) regressor).implementsMoreEfficientBatchPrediction()) {
+							double[][] distributions = ((BatchPredictor) regressor).distributionsForInstances(block);
+							for (int n = 0; n < distributions.length; n++) {
+								results[start + n][i] = distributions[n][0];
+							}
+						} else {
+							for (int n = 0; n < block.numInstances(); n++) {
+								results[start + n][i] = regressor.classifyInstance(block.instance(n));
+							}
+						}
+					}
+				} catch (Exception e) {
+					throw new CompletionException(e);
+				}
+			});
+		} catch (CompletionException e) {
+			throw new FeaturePredictorException(e.getCause());
+		}
+
+		return results;
+	}
+
 	private double[] addToArray(final double[] source, final double element) {
 	   final double[] destination = new double[source.length + 1];
 	   System.arraycopy(source, 0, destination, 0, source.length);
@@ -95,8 +236,114 @@ public class WEKAFeaturePredictor implements FeaturePredictor {
 	   return destination;
 	}
 
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		logger = LoggerFactory.getLogger(WEKAFeaturePredictor.class);
+		queryInstances = new ThreadLocal<>();
+	}
+
 	public boolean isPrepared() {
-		return isPrepared;
+		return trained != null;
+	}
+
+	public String getClassifierName() {
+		return classifierName;
+	}
+
+	public void setClassifierName(String classifierName) {
+		this.classifierName = classifierName;
+	}
+
+	public String[] getClassifierOptions() {
+		return classifierOptions;
 	}
 
+	/**
+	 * Sets the options of the regressors, as given on the WEKA command line.
+	 * 
+	 * @param classifierOptions the options, null for the defaults of the
+	 *                          classifier
+	 */
+	public void setClassifierOptions(String[] classifierOptions) {
+		this.classifierOptions = classifierOptions;
+	}
+
+	public boolean isShareFeatures() {
+		return shareFeatures;
+	}
+
+	/**
+	 * Sets whether the training datasets of all latent features share a single
+	 * copy of the instance features (see {@link SharedFeatureInstance}), instead
+	 * of each holding its own copy. Does not change the trained regressors.
+	 * 
+	 * @param shareFeatures whether to share the instance features
+	 */
+	public void setShareFeatures(boolean shareFeatures) {
+		this.shareFeatures = shareFeatures;
+	}
+
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * Sets the number of threads used for training. Regressors of different
+	 * latent features are trained in parallel; if there are fewer latent features
+	 * than threads, the remaining threads are given to the regressors as WEKA
+	 * execution slots (e.g. for building the trees of a random forest in
+	 * parallel), overriding the configured number of slots.
+	 * 
+	 * @param numThreads the number of threads
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * The regressors of one training and the header of their datasets, which all
+	 * have the same attributes, along with the copies of the regressors each
+	 * thread predicts with.
+	 */
+	private static class TrainedRegressors implements Serializable {
+
+		private static final long serialVersionUID = -6085521873391645402L;
+
+		private final List<Classifier> regressors;
+		private final Instances header;
+
+		// copies of the regressors per predicting thread; the regressors
+		// themselves are only read to copy them
+		private transient ThreadLocal<Classifier[]> threadCopies = new ThreadLocal<>();
+
+		private TrainedRegressors(List<Classifier> regressors, Instances header) {
+			this.regressors = regressors;
+			this.header = header;
+		}
+
+		/**
+		 * Returns the copies of the regressors owned by the calling thread, copying
+		 * them on the first call of the thread.
+		 */
+		private Classifier[] getThreadCopies() throws FeaturePredictorException {
+			Classifier[] copies = threadCopies.get();
+			if (copies == null) {
+				copies = new Classifier[regressors.size()];
+				for (int i = 0; i < copies.length; i++) {
+					try {
+						copies[i] = AbstractClassifier.makeCopy(regressors.get(i));
+					} catch (Exception e) {
+						throw new FeaturePredictorException("Could not copy regressor for latent feature " + i, e);
+					}
+				}
+				threadCopies.set(copies);
+			}
+			return copies;
+		}
+
+		private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+			in.defaultReadObject();
+			threadCopies = new ThreadLocal<>();
+		}
+	}
 }
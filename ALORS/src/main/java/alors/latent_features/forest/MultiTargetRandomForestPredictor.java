@@ -0,0 +1,317 @@
+package alors.latent_features.forest;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import alors.latent_features.FeaturePredictor;
+import alors.latent_features.FeaturePredictorException;
+
+/**
+ * A pure java random forest [0] predicting all latent features with a single
+ * model: each tree chooses its splits by the reduction of the squared error
+ * summed over all latent features [1], so one traversal of a tree yields the
+ * whole latent feature vector. Features are binned into histograms once before
+ * training; the trees are grown in parallel on bootstrap samples.
+ *
+ * <p>
+ * [0] Breiman, Leo. "Random forests." Machine learning 45.1 (2001): 5-32.
+ *
+ * <p>
+ * [1] Kocev, Dragi, et al. "Tree ensembles for predicting structured outputs."
+ * Pattern Recognition 46.3 (2013): 817-833.
+ *
+ * @author helegraf
+ *
+ */
+public class MultiTargetRandomForestPredictor implements FeaturePredictor, Serializable {
+
+	private static final long serialVersionUID = -1839026512947388065L;
+
+	// logging
+	private transient Logger logger = LoggerFactory.getLogger(MultiTargetRandomForestPredictor.class);
+
+	// options
+	private int numTrees = 100;
+	private int numFeaturesPerSplit = 0;
+	private int minLeafSize = 1;
+	private int maxDepth = 0;
+	private int numBins = 64;
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+	private long seed = 1;
+
+	// results, replaced as a whole by each training
+	private volatile Forest forest;
+
+	@Override
+	public void train(double[][] featureMatrixX, double[][] featureMatrixU) throws FeaturePredictorException {
+		if (featureMatrixX.length == 0 || featureMatrixX.length != featureMatrixU.length) {
+			throw new FeaturePredictorException("Need the same positive number of instance and latent feature rows.");
+		}
+		if (numBins < 2 || numBins > 256) {
+			throw new FeaturePredictorException("The number of bins must be between 2 and 256.");
+		}
+
+		int numInstances = featureMatrixX.length;
+		int newNumFeatures = featureMatrixX[0].length;
+		int newNumTargets = featureMatrixU[0].length;
+		int featuresPerSplit = numFeaturesPerSplit > 0 ? Math.min(numFeaturesPerSplit, newNumFeatures)
+				: (int) (Math.log(newNumFeatures) / Math.log(2)) + 1;
+
+		double[] targets = new double[numInstances * newNumTargets];
+		for (int i = 0; i < numInstances; i++) {
+			System.arraycopy(featureMatrixU[i], 0, targets, i * newNumTargets, newNumTargets);
+		}
+
+		// seeds are drawn up front, so the forest does not depend on the threads
+		Random random = new Random(seed);
+		long[] treeSeeds = new long[numTrees];
+		for (int t = 0; t < numTrees; t++) {
+			treeSeeds[t] = random.nextLong();
+		}
+
+		logger.debug("Training {} trees on {} instances with {} features and {} targets", numTrees, numInstances,
+				newNumFeatures, newNumTargets);
+		RegressionTree[] newTrees = new RegressionTree[numTrees];
+		byte[][] bins = new byte[newNumFeatures][numInstances];
+		double[][] binThresholds = new double[newNumFeatures][];
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, numThreads));
+		try {
+			pool.submit(() -> IntStream.range(0, newNumFeatures).parallel()
+					.forEach(f -> binThresholds[f] = binFeature(featureMatrixX, f, bins[f]))).get();
+
+			pool.submit(() -> IntStream.range(0, numTrees).parallel().forEach(t -> {
+				Random treeRandom = new Random(treeSeeds[t]);
+				int[] sample = new int[numInstances];
+				for (int n = 0; n < numInstances; n++) {
+					sample[n] = treeRandom.nextInt(numInstances);
+				}
+				newTrees[t] = new RegressionTree.Builder(bins, binThresholds, targets, newNumTargets, minLeafSize,
+						maxDepth, featuresPerSplit, treeRandom).build(sample);
+			})).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new FeaturePredictorException("Training interrupted", e);
+		} catch (ExecutionException e) {
+			throw new FeaturePredictorException("Could not train random forest", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		forest = new Forest(newTrees, newNumFeatures, newNumTargets);
+	}
+
+	/**
+	 * Bins the values of a feature into at most {@link #getNumBins()} bins of
+	 * roughly equal frequency. Bins are separated at the midpoint between two
+	 * observed values; missing (NaN) values fall into the last bin.
+	 *
+	 * @return the upper bounds of all but the last bin, ascending
+	 */
+	private double[] binFeature(double[][] featureMatrixX, int feature, byte[] featureBins) {
+		double[] sorted = new double[featureMatrixX.length];
+		int numValues = 0;
+		for (double[] featureVectorX : featureMatrixX) {
+			if (!Double.isNaN(featureVectorX[feature])) {
+				sorted[numValues++] = featureVectorX[feature];
+			}
+		}
+		Arrays.sort(sorted, 0, numValues);
+
+		int numDistinct = numValues == 0 ? 0 : 1;
+		for (int n = 1; n < numValues; n++) {
+			if (sorted[n] != sorted[n - 1]) {
+				numDistinct++;
+			}
+		}
+
+		double[] thresholds = new double[Math.max(0, Math.min(numBins, numDistinct) - 1)];
+		int numThresholds = 0;
+		if (numDistinct <= numBins) {
+			for (int n = 1; n < numValues; n++) {
+				if (sorted[n] != sorted[n - 1]) {
+					thresholds[numThresholds++] = midpoint(sorted[n - 1], sorted[n]);
+				}
+			}
+		} else {
+			for (int bin = 1; bin < numBins; bin++) {
+				int n = (int) ((long) bin * numValues / numBins);
+				if (sorted[n] != sorted[n - 1]) {
+					double threshold = midpoint(sorted[n - 1], sorted[n]);
+					if (numThresholds == 0 || threshold > thresholds[numThresholds - 1]) {
+						thresholds[numThresholds++] = threshold;
+					}
+				}
+			}
+			thresholds = Arrays.copyOf(thresholds, numThresholds);
+		}
+
+		for (int i = 0; i < featureMatrixX.length; i++) {
+			double value = featureMatrixX[i][feature];
+			int bin = Arrays.binarySearch(thresholds, value);
+			featureBins[i] = (byte) (bin >= 0 ? bin : (Double.isNaN(value) ? thresholds.length : -bin - 1));
+		}
+		return thresholds;
+	}
+
+	private double midpoint(double lower, double upper) {
+		double midpoint = lower + (upper - lower) / 2;
+		return midpoint < upper && !Double.isInfinite(midpoint) ? midpoint : lower;
+	}
+
+	@Override
+	public double[] predict(double[] featureVectorX) throws FeaturePredictorException {
+		Forest current = getTrainedForest();
+		current.checkNumFeatures(featureVectorX);
+		return current.predict(featureVectorX);
+	}
+
+	@Override
+	public double[][] predict(double[][] featureMatrixX) throws FeaturePredictorException {
+		Forest current = getTrainedForest();
+		for (double[] featureVectorX : featureMatrixX) {
+			current.checkNumFeatures(featureVectorX);
+		}
+
+		// trained trees are only read, so instances can be predicted in parallel
+		double[][] results = new double[featureMatrixX.length][];
+		IntStream.range(0, featureMatrixX.length).parallel()
+				.forEach(i -> results[i] = current.predict(featureMatrixX[i]));
+		return results;
+	}
+
+	private Forest getTrainedForest() throws FeaturePredictorException {
+		Forest current = forest;
+		if (current == null) {
+			throw new FeaturePredictorException("Predictor has not been prepared!");
+		}
+		return current;
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		logger = LoggerFactory.getLogger(MultiTargetRandomForestPredictor.class);
+	}
+
+	public boolean isPrepared() {
+		return forest != null;
+	}
+
+	public int getNumTrees() {
+		return numTrees;
+	}
+
+	public void setNumTrees(int numTrees) {
+		this.numTrees = numTrees;
+	}
+
+	public int getNumFeaturesPerSplit() {
+		return numFeaturesPerSplit;
+	}
+
+	/**
+	 * Sets the number of randomly chosen features considered for each split. If
+	 * not positive, log2(number of features) + 1 are used, as in WEKA.
+	 *
+	 * @param numFeaturesPerSplit the number of features considered for each split
+	 */
+	public void setNumFeaturesPerSplit(int numFeaturesPerSplit) {
+		this.numFeaturesPerSplit = numFeaturesPerSplit;
+	}
+
+	public int getMinLeafSize() {
+		return minLeafSize;
+	}
+
+	public void setMinLeafSize(int minLeafSize) {
+		this.minLeafSize = minLeafSize;
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Sets the maximal depth of the trees.
+	 *
+	 * @param maxDepth the maximal depth, unlimited if not positive
+	 */
+	public void setMaxDepth(int maxDepth) {
+		this.maxDepth = maxDepth;
+	}
+
+	public int getNumBins() {
+		return numBins;
+	}
+
+	/**
+	 * Sets the maximal number of histogram bins per feature; splits are only
+	 * considered between bins. Features with fewer distinct values are split
+	 * between any two of them.
+	 *
+	 * @param numBins the number of bins, between 2 and 256
+	 */
+	public void setNumBins(int numBins) {
+		this.numBins = numBins;
+	}
+
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * The trees of one training with the dimensions of their data.
+	 */
+	private static class Forest implements Serializable {
+
+		private static final long serialVersionUID = 4412930127735790143L;
+
+		private final RegressionTree[] trees;
+		private final int numFeatures;
+		private final int numTargets;
+
+		private Forest(RegressionTree[] trees, int numFeatures, int numTargets) {
+			this.trees = trees;
+			this.numFeatures = numFeatures;
+			this.numTargets = numTargets;
+		}
+
+		private void checkNumFeatures(double[] featureVectorX) throws FeaturePredictorException {
+			if (featureVectorX.length != numFeatures) {
+				throw new FeaturePredictorException(
+						String.format("Expected %d features, got %d.", numFeatures, featureVectorX.length));
+			}
+		}
+
+		private double[] predict(double[] featureVectorX) {
+			double[] result = new double[numTargets];
+			for (RegressionTree tree : trees) {
+				tree.addPrediction(featureVectorX, result);
+			}
+			for (int t = 0; t < numTargets; t++) {
+				result[t] /= trees.length;
+			}
+			return result;
+		}
+	}
+}
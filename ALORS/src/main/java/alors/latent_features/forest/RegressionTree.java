@@ -0,0 +1,289 @@
+package alors.latent_features.forest;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A multi-target regression tree stored in primitive arrays. Nodes are laid
+ * out in pre-order, so the left child of an inner node directly follows it.
+ * Leaves hold the mean of all targets of their training instances, so a single
+ * traversal yields the whole target vector.
+ *
+ * @author helegraf
+ *
+ */
+class RegressionTree implements Serializable {
+
+	private static final long serialVersionUID = 7395170624113950266L;
+
+	// a split has to reduce the squared error by more than this fraction
+	private static final double SPLIT_TOLERANCE = 1e-10;
+
+	private final int numTargets;
+
+	// split feature of each node, -1 for leaves
+	private final int[] features;
+	private final double[] thresholds;
+	private final int[] rightChildren;
+
+	// the target means of leaf n start at n * numTargets
+	private final double[] values;
+
+	private RegressionTree(int numTargets, int numNodes, int[] features, double[] thresholds, int[] rightChildren,
+			double[] values) {
+		this.numTargets = numTargets;
+		this.features = Arrays.copyOf(features, numNodes);
+		this.thresholds = Arrays.copyOf(thresholds, numNodes);
+		this.rightChildren = Arrays.copyOf(rightChildren, numNodes);
+		this.values = Arrays.copyOf(values, numNodes * numTargets);
+	}
+
+	/**
+	 * Adds the target vector predicted for the given instance to the result.
+	 *
+	 * @param featureVector the features of the instance
+	 * @param result        the array the prediction is added to
+	 */
+	void addPrediction(double[] featureVector, double[] result) {
+		int node = 0;
+		while (features[node] >= 0) {
+			node = featureVector[features[node]] <= thresholds[node] ? node + 1 : rightChildren[node];
+		}
+		int offset = node * numTargets;
+		for (int t = 0; t < numTargets; t++) {
+			result[t] += values[offset + t];
+		}
+	}
+
+	/**
+	 * @return the number of nodes of the tree
+	 */
+	int getNumNodes() {
+		return features.length;
+	}
+
+	/**
+	 * Grows a tree on histogram-binned features. Each split is chosen among the
+	 * bin boundaries of randomly selected features, maximizing the reduction of
+	 * the squared error summed over all targets. A builder keeps scratch space
+	 * and must only be used by one thread.
+	 */
+	static class Builder {
+
+		private final byte[][] bins;
+		private final double[][] binThresholds;
+		private final double[] targets;
+		private final int numTargets;
+		private final int minLeafSize;
+		private final int maxDepth;
+		private final int numFeaturesPerSplit;
+		private final Random random;
+
+		// the tree under construction
+		private int numNodes;
+		private int[] features = new int[64];
+		private double[] thresholds = new double[64];
+		private int[] rightChildren = new int[64];
+		private double[] values;
+
+		// scratch space for the histograms of a node
+		private final int[] counts;
+		private final double[] sums;
+		private final double[] leftSums;
+		private final int[] featureOrder;
+
+		/**
+		 * Creates a builder for trees on the given data.
+		 *
+		 * @param bins                the bin of each feature (first index) of each
+		 *                            instance (second index)
+		 * @param binThresholds       the upper bounds of all but the last bin of each
+		 *                            feature, ascending
+		 * @param targets             the targets of all instances, row-major
+		 * @param numTargets          the number of targets per instance
+		 * @param minLeafSize         the minimal number of instances in a leaf
+		 * @param maxDepth            the maximal depth of a tree, unlimited if not
+		 *                            positive
+		 * @param numFeaturesPerSplit the number of randomly chosen features
+		 *                            considered for each split
+		 * @param random              the source of randomness
+		 */
+		Builder(byte[][] bins, double[][] binThresholds, double[] targets, int numTargets, int minLeafSize,
+				int maxDepth, int numFeaturesPerSplit, Random random) {
+			this.bins = bins;
+			this.binThresholds = binThresholds;
+			this.targets = targets;
+			this.numTargets = numTargets;
+			this.minLeafSize = Math.max(1, minLeafSize);
+			this.maxDepth = maxDepth;
+			this.numFeaturesPerSplit = numFeaturesPerSplit;
+			this.random = random;
+
+			int maxBins = 1;
+			for (double[] featureThresholds : binThresholds) {
+				maxBins = Math.max(maxBins, featureThresholds.length + 1);
+			}
+			counts = new int[maxBins];
+			sums = new double[maxBins * numTargets];
+			leftSums = new double[numTargets];
+			featureOrder = new int[bins.length];
+			for (int f = 0; f < featureOrder.length; f++) {
+				featureOrder[f] = f;
+			}
+			values = new double[64 * numTargets];
+		}
+
+		/**
+		 * Grows a tree on the given instances.
+		 *
+		 * @param sample the indices of the instances, may contain duplicates;
+		 *               reordered during construction
+		 * @return the tree
+		 */
+		RegressionTree build(int[] sample) {
+			numNodes = 0;
+			grow(sample, 0, sample.length, 0);
+			return new RegressionTree(numTargets, numNodes, features, thresholds, rightChildren, values);
+		}
+
+		private int grow(int[] sample, int from, int to, int depth) {
+			int node = addNode();
+			int size = to - from;
+
+			double[] total = new double[numTargets];
+			double sumOfSquares = 0;
+			for (int n = from; n < to; n++) {
+				int offset = sample[n] * numTargets;
+				for (int t = 0; t < numTargets; t++) {
+					double value = targets[offset + t];
+					total[t] += value;
+					sumOfSquares += value * value;
+				}
+			}
+			double parentScore = 0;
+			for (int t = 0; t < numTargets; t++) {
+				parentScore += total[t] * total[t] / size;
+			}
+			double squaredError = sumOfSquares - parentScore;
+
+			features[node] = -1;
+			if (size < 2 * minLeafSize || (maxDepth > 0 && depth >= maxDepth)
+					|| squaredError <= SPLIT_TOLERANCE * sumOfSquares) {
+				makeLeaf(node, total, size);
+				return node;
+			}
+
+			// the split maximizing sum_t (left_t^2 / nLeft + right_t^2 / nRight)
+			// minimizes the squared error of both children
+			int bestFeature = -1;
+			int bestBin = -1;
+			double bestScore = parentScore + SPLIT_TOLERANCE * squaredError;
+			for (int k = 0; k < featureOrder.length; k++) {
+				if (k >= numFeaturesPerSplit && bestFeature >= 0) {
+					break;
+				}
+				int swap = k + random.nextInt(featureOrder.length - k);
+				int feature = featureOrder[swap];
+				featureOrder[swap] = featureOrder[k];
+				featureOrder[k] = feature;
+
+				int numBins = binThresholds[feature].length + 1;
+				if (numBins < 2) {
+					continue;
+				}
+				fillHistogram(feature, numBins, sample, from, to);
+
+				Arrays.fill(leftSums, 0);
+				int leftSize = 0;
+				for (int bin = 0; bin < numBins - 1; bin++) {
+					if (counts[bin] == 0) {
+						continue;
+					}
+					leftSize += counts[bin];
+					for (int t = 0; t < numTargets; t++) {
+						leftSums[t] += sums[bin * numTargets + t];
+					}
+					int rightSize = size - leftSize;
+					if (rightSize < minLeafSize) {
+						break;
+					}
+					if (leftSize < minLeafSize) {
+						continue;
+					}
+
+					double score = 0;
+					for (int t = 0; t < numTargets; t++) {
+						double right = total[t] - leftSums[t];
+						score += leftSums[t] * leftSums[t] / leftSize + right * right / rightSize;
+					}
+					if (score > bestScore) {
+						bestScore = score;
+						bestFeature = feature;
+						bestBin = bin;
+					}
+				}
+			}
+
+			if (bestFeature < 0) {
+				makeLeaf(node, total, size);
+				return node;
+			}
+
+			// move the instances of the left child to the front
+			byte[] featureBins = bins[bestFeature];
+			int left = from;
+			int right = to - 1;
+			while (left <= right) {
+				if ((featureBins[sample[left]] & 0xFF) <= bestBin) {
+					left++;
+				} else {
+					int index = sample[left];
+					sample[left] = sample[right];
+					sample[right--] = index;
+				}
+			}
+
+			features[node] = bestFeature;
+			thresholds[node] = binThresholds[bestFeature][bestBin];
+			// the node arrays may grow while the children are built
+			grow(sample, from, left, depth + 1);
+			int rightChild = grow(sample, left, to, depth + 1);
+			rightChildren[node] = rightChild;
+			return node;
+		}
+
+		private void fillHistogram(int feature, int numBins, int[] sample, int from, int to) {
+			Arrays.fill(counts, 0, numBins, 0);
+			Arrays.fill(sums, 0, numBins * numTargets, 0);
+			byte[] featureBins = bins[feature];
+			for (int n = from; n < to; n++) {
+				int index = sample[n];
+				int bin = featureBins[index] & 0xFF;
+				counts[bin]++;
+				int offset = index * numTargets;
+				int binOffset = bin * numTargets;
+				for (int t = 0; t < numTargets; t++) {
+					sums[binOffset + t] += targets[offset + t];
+				}
+			}
+		}
+
+		private void makeLeaf(int node, double[] total, int size) {
+			for (int t = 0; t < numTargets; t++) {
+				values[node * numTargets + t] = total[t] / size;
+			}
+		}
+
+		private int addNode() {
+			if (numNodes == features.length) {
+				int capacity = 2 * numNodes;
+				features = Arrays.copyOf(features, capacity);
+				thresholds = Arrays.copyOf(thresholds, capacity);
+				rightChildren = Arrays.copyOf(rightChildren, capacity);
+				values = Arrays.copyOf(values, capacity * numTargets);
+			}
+			return numNodes++;
+		}
+	}
+}
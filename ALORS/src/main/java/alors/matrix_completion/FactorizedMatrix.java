@@ -0,0 +1,123 @@
+package alors.matrix_completion;
+
+import alors.util.LinearAlgebra;
+
+/**
+ * A completed matrix represented by its factors U and V, such that the matrix
+ * is U * V^T. Entries and rows are computed on access, so that callers that only
+ * need parts of the completion (or only the factors) never materialize the
+ * full matrix.
+ *
+ * @author helegraf
+ *
+ */
+public class FactorizedMatrix {
+
+	// the smallest scale of random initial factors
+	private static final double MIN_INITIAL_SCALE = 0.1;
+
+	private final double[][] u;
+	private final double[][] v;
+
+	/**
+	 * Creates a view of U * V^T; the factors are not copied.
+	 *
+	 * @param u the row (instance) factors, one row per row of the matrix
+	 * @param v the column (item) factors, one row per column of the matrix
+	 * @throws IllegalArgumentException if the numbers of latent features differ
+	 */
+	public FactorizedMatrix(double[][] u, double[][] v) {
+		if (u.length > 0 && v.length > 0 && u[0].length != v[0].length) {
+			throw new IllegalArgumentException("U and V must have the same number of latent features.");
+		}
+		this.u = u;
+		this.v = v;
+	}
+
+	/**
+	 * Copies the factors into the initial factors of a warm-started
+	 * factorization: row i of U into row i of <code>initialU</code> and row j of
+	 * V into row j of <code>initialV</code>, as far as both exist. Other rows are
+	 * left untouched.
+	 *
+	 * @param initialU the initial row factors
+	 * @param initialV the initial column factors
+	 * @throws MatrixCompleterException if the numbers of latent features differ
+	 */
+	public void copyInto(double[][] initialU, double[][] initialV) throws MatrixCompleterException {
+		copyRows(u, initialU);
+		copyRows(v, initialV);
+	}
+
+	private void copyRows(double[][] from, double[][] to) throws MatrixCompleterException {
+		int rows = Math.min(from.length, to.length);
+		for (int i = 0; i < rows; i++) {
+			if (from[i].length != to[i].length) {
+				throw new MatrixCompleterException(String.format(
+						"The initialization has %d latent features, expected %d.", from[i].length, to[i].length));
+			}
+			System.arraycopy(from[i], 0, to[i], 0, to[i].length);
+		}
+	}
+
+	/**
+	 * Computes the scale of the random initial factors of a factorization with
+	 * entries of U and V drawn from <code>[0.5, 1.5) * scale</code>, such that
+	 * U * V^T starts roughly around the mean of the observed entries. The scale
+	 * is at least {@value #MIN_INITIAL_SCALE} whatever the mean, as factors
+	 * starting at zero, e.g. for centered data, never leave it.
+	 *
+	 * @param mean the mean of the observed entries
+	 * @param dimW the number of latent features
+	 * @return the scale
+	 */
+	public static double initialScale(double mean, int dimW) {
+		return Math.max(Math.sqrt(Math.abs(mean) / dimW), MIN_INITIAL_SCALE);
+	}
+
+	/**
+	 * @param row    the row
+	 * @param column the column
+	 * @return the entry of the completed matrix
+	 */
+	public double get(int row, int column) {
+		return LinearAlgebra.dot(u[row], v[column]);
+	}
+
+	/**
+	 * @param row the row
+	 * @return a new array holding the row of the completed matrix
+	 */
+	public double[] getRow(int row) {
+		double[] result = new double[v.length];
+		for (int j = 0; j < v.length; j++) {
+			result[j] = LinearAlgebra.dot(u[row], v[j]);
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the complete matrix.
+	 *
+	 * @return the matrix U * V^T
+	 */
+	public double[][] toDense() {
+		return LinearAlgebra.multiplyTransposed(u, v);
+	}
+
+	public int getNumRows() {
+		return u.length;
+	}
+
+	public int getNumColumns() {
+		return v.length;
+	}
+
+	public double[][] getU() {
+		return u;
+	}
+
+	public double[][] getV() {
+		return v;
+	}
+}
@@ -19,4 +19,17 @@ public interface MatrixCompleter {
 	 * @throws MatrixCompleterException if the matrix cannot be completed
 	 */
 	public double[][] complete(double[][] matrix) throws MatrixCompleterException;
+
+	/**
+	 * Estimate missing values for the given sparse matrix. By default the matrix
+	 * is converted to a dense matrix with NaN for missing entries; implementations
+	 * that can work on the observed entries directly should override this.
+	 * 
+	 * @param matrix the matrix to be completed
+	 * @return an estimate of the matrix completion
+	 * @throws MatrixCompleterException if the matrix cannot be completed
+	 */
+	public default double[][] complete(SparseMatrix matrix) throws MatrixCompleterException {
+		return complete(matrix.toDense());
+	}
 }
@@ -27,4 +27,54 @@ public interface ModelBasedMatrixCompleter extends MatrixCompleter {
 	 * @throws MatrixCompleterException if the item features cannot be retrieved
 	 */
 	public double[][] getV() throws MatrixCompleterException;
+
+	/**
+	 * Factorizes the given matrix into U and V without necessarily computing the
+	 * completed matrix; afterwards {@link #getU()} and {@link #getV()} return the
+	 * same factors.
+	 * 
+	 * @param matrix the matrix to be factorized
+	 * @return the completion as a view of the factors
+	 * @throws MatrixCompleterException if the matrix cannot be factorized
+	 */
+	public default FactorizedMatrix factorize(double[][] matrix) throws MatrixCompleterException {
+		return factorize(SparseMatrix.fromDense(matrix));
+	}
+
+	/**
+	 * Factorizes the given sparse matrix into U and V without necessarily
+	 * computing the completed matrix; afterwards {@link #getU()} and
+	 * {@link #getV()} return the same factors. By default the matrix is completed
+	 * and the factors are retrieved afterwards.
+	 * 
+	 * @param matrix the matrix to be factorized
+	 * @return the completion as a view of the factors
+	 * @throws MatrixCompleterException if the matrix cannot be factorized
+	 */
+	public default FactorizedMatrix factorize(SparseMatrix matrix) throws MatrixCompleterException {
+		complete(matrix);
+		return new FactorizedMatrix(getU(), getV());
+	}
+
+	/**
+	 * Factorizes the given sparse matrix like
+	 * {@link #factorize(SparseMatrix)}, but starts from the given factors, e.g.
+	 * those of a previous run on a matrix that has changed only slightly since.
+	 * Row i of the initial U is used for row i of the matrix and row j of the
+	 * initial V for column j; rows and columns beyond the initialization (e.g.
+	 * instances or items added since) are initialized as usual. By default the
+	 * initialization is ignored, as by completers that cannot start from given
+	 * factors.
+	 * 
+	 * @param matrix         the matrix to be factorized
+	 * @param initialization the factors to start from, with the number of latent
+	 *                       features of this completer; null for a cold start
+	 * @return the completion as a view of the factors
+	 * @throws MatrixCompleterException if the matrix cannot be factorized or the
+	 *                                  initialization does not fit
+	 */
+	public default FactorizedMatrix factorize(SparseMatrix matrix, FactorizedMatrix initialization)
+			throws MatrixCompleterException {
+		return factorize(matrix);
+	}
 }
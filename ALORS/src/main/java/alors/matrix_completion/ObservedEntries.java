@@ -0,0 +1,115 @@
+package alors.matrix_completion;
+
+/**
+ * The observed entries of an incomplete matrix as a list of (row, column,
+ * value) triples held in primitive arrays, as an alternative to a dense matrix
+ * with missing entries marked as NaN.
+ *
+ * @author helegraf
+ *
+ */
+public class ObservedEntries {
+
+	private final int numRows;
+	private final int numColumns;
+
+	private final int[] rows;
+	private final int[] columns;
+	private final double[] values;
+
+	/**
+	 * Creates a list of observed entries; the n-th entry is at row
+	 * <code>rows[n]</code> and column <code>columns[n]</code> with value
+	 * <code>values[n]</code>. The arrays are not copied.
+	 *
+	 * @param numRows    the number of rows of the matrix
+	 * @param numColumns the number of columns of the matrix
+	 * @param rows       the row index of each entry
+	 * @param columns    the column index of each entry
+	 * @param values     the value of each entry
+	 * @throws IllegalArgumentException if the arrays differ in length or an index
+	 *                                  is out of bounds
+	 */
+	public ObservedEntries(int numRows, int numColumns, int[] rows, int[] columns, double[] values) {
+		if (rows.length != columns.length || rows.length != values.length) {
+			throw new IllegalArgumentException("Rows, columns and values must have the same length.");
+		}
+		for (int n = 0; n < rows.length; n++) {
+			if (rows[n] < 0 || rows[n] >= numRows || columns[n] < 0 || columns[n] >= numColumns) {
+				throw new IllegalArgumentException(
+						String.format("Entry (%d, %d) is out of bounds.", rows[n], columns[n]));
+			}
+		}
+
+		this.numRows = numRows;
+		this.numColumns = numColumns;
+		this.rows = rows;
+		this.columns = columns;
+		this.values = values;
+	}
+
+	/**
+	 * Collects the entries of the given matrix that are not NaN, in row-major
+	 * order.
+	 *
+	 * @param matrix the incomplete matrix, missing entries are NaN
+	 * @return the observed entries
+	 */
+	public static ObservedEntries fromDense(double[][] matrix) {
+		int numRows = matrix.length;
+		int numColumns = numRows == 0 ? 0 : matrix[0].length;
+
+		int count = 0;
+		for (double[] row : matrix) {
+			for (double value : row) {
+				if (!Double.isNaN(value)) {
+					count++;
+				}
+			}
+		}
+
+		int[] rows = new int[count];
+		int[] columns = new int[count];
+		double[] values = new double[count];
+		int n = 0;
+		for (int i = 0; i < numRows; i++) {
+			for (int j = 0; j < numColumns; j++) {
+				if (!Double.isNaN(matrix[i][j])) {
+					rows[n] = i;
+					columns[n] = j;
+					values[n] = matrix[i][j];
+					n++;
+				}
+			}
+		}
+
+		return new ObservedEntries(numRows, numColumns, rows, columns, values);
+	}
+
+	/**
+	 * @return the number of observed entries
+	 */
+	public int size() {
+		return values.length;
+	}
+
+	public int getNumRows() {
+		return numRows;
+	}
+
+	public int getNumColumns() {
+		return numColumns;
+	}
+
+	public int getRow(int n) {
+		return rows[n];
+	}
+
+	public int getColumn(int n) {
+		return columns[n];
+	}
+
+	public double getValue(int n) {
+		return values[n];
+	}
+}
@@ -0,0 +1,262 @@
+package alors.matrix_completion;
+
+import java.util.Arrays;
+
+/**
+ * An incomplete matrix in compressed sparse row (CSR) format: the observed
+ * entries of row <code>i</code> are stored at the positions
+ * <code>rowPointers[i]</code> (inclusive) to <code>rowPointers[i + 1]</code>
+ * (exclusive) of the column index and value arrays. A compressed sparse column
+ * view is available as the {@link #transpose() transpose}, which is computed
+ * once on first use.
+ *
+ * <p>
+ * Unlike the dense representation with missing entries marked as NaN, memory
+ * and time of all operations depend only on the number of observed entries.
+ *
+ * @author helegraf
+ *
+ */
+public class SparseMatrix {
+
+	private final int numRows;
+	private final int numColumns;
+
+	private final int[] rowPointers;
+	private final int[] columnIndices;
+	private final double[] values;
+
+	// lazily computed column view
+	private volatile SparseMatrix transpose;
+
+	/**
+	 * Creates a sparse matrix from the given CSR arrays, which are not copied.
+	 *
+	 * @param numRows       the number of rows
+	 * @param numColumns    the number of columns
+	 * @param rowPointers   the start of each row in the other arrays, followed by
+	 *                      the number of entries (length numRows + 1)
+	 * @param columnIndices the column of each entry
+	 * @param values        the value of each entry
+	 * @throws IllegalArgumentException if the arrays are inconsistent or an index
+	 *                                  is out of bounds
+	 */
+	public SparseMatrix(int numRows, int numColumns, int[] rowPointers, int[] columnIndices, double[] values) {
+		if (rowPointers.length != numRows + 1 || rowPointers[0] != 0
+				|| rowPointers[numRows] != columnIndices.length || columnIndices.length != values.length) {
+			throw new IllegalArgumentException("Row pointers, column indices and values are inconsistent.");
+		}
+		for (int i = 0; i < numRows; i++) {
+			if (rowPointers[i] > rowPointers[i + 1]) {
+				throw new IllegalArgumentException("Row pointers must not decrease.");
+			}
+		}
+		for (int column : columnIndices) {
+			if (column < 0 || column >= numColumns) {
+				throw new IllegalArgumentException(String.format("Column %d is out of bounds.", column));
+			}
+		}
+
+		this.numRows = numRows;
+		this.numColumns = numColumns;
+		this.rowPointers = rowPointers;
+		this.columnIndices = columnIndices;
+		this.values = values;
+	}
+
+	/**
+	 * Collects the entries of the given matrix that are not NaN.
+	 *
+	 * @param matrix the incomplete matrix, missing entries are NaN
+	 * @return the sparse matrix
+	 * @throws IllegalArgumentException if the rows differ in length
+	 */
+	public static SparseMatrix fromDense(double[][] matrix) {
+		int numRows = matrix.length;
+		int numColumns = numRows == 0 ? 0 : matrix[0].length;
+
+		int[] rowPointers = new int[numRows + 1];
+		for (int i = 0; i < numRows; i++) {
+			if (matrix[i].length != numColumns) {
+				throw new IllegalArgumentException(String.format("Row %d has %d columns, expected %d.", i,
+						matrix[i].length, numColumns));
+			}
+			int count = 0;
+			for (double value : matrix[i]) {
+				if (!Double.isNaN(value)) {
+					count++;
+				}
+			}
+			rowPointers[i + 1] = rowPointers[i] + count;
+		}
+
+		int[] columnIndices = new int[rowPointers[numRows]];
+		double[] values = new double[rowPointers[numRows]];
+		int n = 0;
+		for (int i = 0; i < numRows; i++) {
+			for (int j = 0; j < numColumns; j++) {
+				if (!Double.isNaN(matrix[i][j])) {
+					columnIndices[n] = j;
+					values[n] = matrix[i][j];
+					n++;
+				}
+			}
+		}
+
+		return new SparseMatrix(numRows, numColumns, rowPointers, columnIndices, values);
+	}
+
+	/**
+	 * Creates a sparse matrix from the given observed entries, sorted by row and
+	 * within each row by column.
+	 *
+	 * @param entries the observed entries
+	 * @return the sparse matrix
+	 */
+	public static SparseMatrix fromObservedEntries(ObservedEntries entries) {
+		int size = entries.size();
+
+		// counting sort by column, then stably by row
+		int[] columnPointers = new int[entries.getNumColumns() + 1];
+		for (int n = 0; n < size; n++) {
+			columnPointers[entries.getColumn(n) + 1]++;
+		}
+		for (int j = 0; j < entries.getNumColumns(); j++) {
+			columnPointers[j + 1] += columnPointers[j];
+		}
+		int[] byColumn = new int[size];
+		for (int n = 0; n < size; n++) {
+			byColumn[columnPointers[entries.getColumn(n)]++] = n;
+		}
+
+		int[] rowPointers = new int[entries.getNumRows() + 1];
+		for (int n = 0; n < size; n++) {
+			rowPointers[entries.getRow(n) + 1]++;
+		}
+		for (int i = 0; i < entries.getNumRows(); i++) {
+			rowPointers[i + 1] += rowPointers[i];
+		}
+		int[] next = Arrays.copyOf(rowPointers, entries.getNumRows());
+		int[] columnIndices = new int[size];
+		double[] values = new double[size];
+		for (int n : byColumn) {
+			int position = next[entries.getRow(n)]++;
+			columnIndices[position] = entries.getColumn(n);
+			values[position] = entries.getValue(n);
+		}
+
+		return new SparseMatrix(entries.getNumRows(), entries.getNumColumns(), rowPointers, columnIndices, values);
+	}
+
+	/**
+	 * Creates a dense copy of this matrix with missing entries marked as NaN.
+	 *
+	 * @return the dense matrix
+	 */
+	public double[][] toDense() {
+		double[][] matrix = new double[numRows][numColumns];
+		for (int i = 0; i < numRows; i++) {
+			Arrays.fill(matrix[i], Double.NaN);
+			for (int n = rowPointers[i]; n < rowPointers[i + 1]; n++) {
+				matrix[i][columnIndices[n]] = values[n];
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * Lists the entries of this matrix in row-major order; the column indices and
+	 * values are shared with this matrix.
+	 *
+	 * @return the observed entries
+	 */
+	public ObservedEntries toObservedEntries() {
+		int[] rows = new int[values.length];
+		for (int i = 0; i < numRows; i++) {
+			Arrays.fill(rows, rowPointers[i], rowPointers[i + 1], i);
+		}
+		return new ObservedEntries(numRows, numColumns, rows, columnIndices, values);
+	}
+
+	/**
+	 * Returns the transpose of this matrix, whose rows are the columns of this
+	 * matrix (i.e. this matrix in compressed sparse column format). The transpose
+	 * is computed on the first call only.
+	 *
+	 * @return the transposed matrix
+	 */
+	public SparseMatrix transpose() {
+		SparseMatrix result = transpose;
+		if (result == null) {
+			synchronized (this) {
+				result = transpose;
+				if (result == null) {
+					result = computeTranspose();
+					result.transpose = this;
+					transpose = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	private SparseMatrix computeTranspose() {
+		int[] columnPointers = new int[numColumns + 1];
+		for (int column : columnIndices) {
+			columnPointers[column + 1]++;
+		}
+		for (int j = 0; j < numColumns; j++) {
+			columnPointers[j + 1] += columnPointers[j];
+		}
+
+		int[] next = Arrays.copyOf(columnPointers, numColumns);
+		int[] rowIndices = new int[values.length];
+		double[] columnValues = new double[values.length];
+		for (int i = 0; i < numRows; i++) {
+			for (int n = rowPointers[i]; n < rowPointers[i + 1]; n++) {
+				int position = next[columnIndices[n]]++;
+				rowIndices[position] = i;
+				columnValues[position] = values[n];
+			}
+		}
+
+		return new SparseMatrix(numColumns, numRows, columnPointers, rowIndices, columnValues);
+	}
+
+	public int getNumRows() {
+		return numRows;
+	}
+
+	public int getNumColumns() {
+		return numColumns;
+	}
+
+	/**
+	 * @return the number of observed entries
+	 */
+	public int getNumEntries() {
+		return values.length;
+	}
+
+	/**
+	 * @return the start of each row in {@link #getColumnIndices()} and
+	 *         {@link #getValues()}, followed by the number of entries; not copied
+	 */
+	public int[] getRowPointers() {
+		return rowPointers;
+	}
+
+	/**
+	 * @return the column of each entry; not copied
+	 */
+	public int[] getColumnIndices() {
+		return columnIndices;
+	}
+
+	/**
+	 * @return the value of each entry; not copied
+	 */
+	public double[] getValues() {
+		return values;
+	}
+}
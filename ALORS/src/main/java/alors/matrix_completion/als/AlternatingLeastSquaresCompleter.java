@@ -0,0 +1,288 @@
+package alors.matrix_completion.als;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import alors.matrix_completion.FactorizedMatrix;
+import alors.matrix_completion.MatrixCompleterException;
+import alors.matrix_completion.ModelBasedMatrixCompleter;
+import alors.matrix_completion.SparseMatrix;
+import alors.util.LinearAlgebra;
+
+/**
+ * A pure java matrix completer factorizing the given matrix into U and V by
+ * weighted alternating least squares [0], where missing (NaN) entries have
+ * weight zero. The regularization of each row / column is scaled by its number
+ * of observed entries (ALS-WR). The independent ridge regression problems of
+ * each phase are solved in parallel. Factorizations can be warm-started from
+ * previous factors; as each iteration starts by solving U for the current V,
+ * only the initial V matters.
+ *
+ * <p>
+ * [0] Zhou, Yunhong, et al. "Large-scale parallel collaborative filtering for
+ * the netflix prize." International conference on algorithmic applications in
+ * management. Springer, 2008.
+ *
+ * @author helegraf
+ *
+ */
+public class AlternatingLeastSquaresCompleter implements ModelBasedMatrixCompleter {
+
+	// logging
+	private Logger logger = LoggerFactory.getLogger(AlternatingLeastSquaresCompleter.class);
+
+	// options
+	private int dimW = 10;
+	private double lambda = 0.05;
+	private double minProgress = 1e-4;
+	private int minIterations = 3;
+	private int warmStartMinIterations = 1;
+	private int maxIterations = 30;
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+	private long seed = 0;
+
+	// results
+	private double[][] u;
+	private double[][] v;
+
+	@Override
+	public double[][] complete(double[][] matrix) throws MatrixCompleterException {
+		return complete(SparseMatrix.fromDense(matrix));
+	}
+
+	@Override
+	public double[][] complete(SparseMatrix matrix) throws MatrixCompleterException {
+		return factorize(matrix).toDense();
+	}
+
+	@Override
+	public FactorizedMatrix factorize(SparseMatrix matrix) throws MatrixCompleterException {
+		return factorize(matrix, null);
+	}
+
+	@Override
+	public FactorizedMatrix factorize(SparseMatrix matrix, FactorizedMatrix initialization)
+			throws MatrixCompleterException {
+		int numRows = matrix.getNumRows();
+		int numColumns = matrix.getNumColumns();
+		int numObserved = matrix.getNumEntries();
+
+		// index observed entries by row and by column
+		int[][] rowIndices = new int[numRows][];
+		double[][] rowValues = new double[numRows][];
+		splitRows(matrix, rowIndices, rowValues);
+		int[][] columnIndices = new int[numColumns][];
+		double[][] columnValues = new double[numColumns][];
+		splitRows(matrix.transpose(), columnIndices, columnValues);
+
+		double mean = 0;
+		for (double value : matrix.getValues()) {
+			mean += value;
+		}
+
+		if (numObserved == 0) {
+			throw new MatrixCompleterException("Cannot complete a matrix without observed entries.");
+		}
+		mean /= numObserved;
+
+		// initialize V such that U * V^T starts roughly around the mean
+		Random random = new Random(seed);
+		double scale = FactorizedMatrix.initialScale(mean, dimW);
+		double[][] newU = new double[numRows][dimW];
+		double[][] newV = new double[numColumns][dimW];
+		for (int j = 0; j < numColumns; j++) {
+			for (int k = 0; k < dimW; k++) {
+				newV[j][k] = scale * (0.5 + random.nextDouble());
+			}
+		}
+		if (initialization != null) {
+			initialization.copyInto(newU, newV);
+		}
+		int requiredIterations = initialization == null ? minIterations : warmStartMinIterations;
+
+		logger.debug("Running ALS with {} rows, {} columns, {} observed entries", numRows, numColumns, numObserved);
+		ForkJoinPool pool = new ForkJoinPool(numThreads);
+		try {
+			double lastLoss = Double.POSITIVE_INFINITY;
+			for (int iteration = 0; iteration < maxIterations; iteration++) {
+				solvePhase(pool, newU, newV, rowIndices, rowValues);
+				solvePhase(pool, newV, newU, columnIndices, columnValues);
+
+				double loss = computeRmse(newU, newV, rowIndices, rowValues, numObserved);
+				// a perfect fit cannot improve
+				double progress = loss > 0 ? (lastLoss - loss) / loss : 0;
+				logger.debug("ALS iteration {}: training rmse {}", iteration, loss);
+				lastLoss = loss;
+
+				if (iteration + 1 >= requiredIterations && progress < minProgress) {
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MatrixCompleterException("ALS run interrupted", e);
+		} catch (ExecutionException e) {
+			throw new MatrixCompleterException("ALS run failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		u = newU;
+		v = newV;
+
+		return new FactorizedMatrix(u, v);
+	}
+
+	private void splitRows(SparseMatrix matrix, int[][] indices, double[][] values) {
+		int[] rowPointers = matrix.getRowPointers();
+		for (int i = 0; i < matrix.getNumRows(); i++) {
+			indices[i] = Arrays.copyOfRange(matrix.getColumnIndices(), rowPointers[i], rowPointers[i + 1]);
+			values[i] = Arrays.copyOfRange(matrix.getValues(), rowPointers[i], rowPointers[i + 1]);
+		}
+	}
+
+	/**
+	 * Solves the ridge regression problem for each row of <code>target</code>
+	 * given the fixed <code>fixed</code> factors, in parallel.
+	 */
+	private void solvePhase(ForkJoinPool pool, double[][] target, double[][] fixed, int[][] indices,
+			double[][] values) throws InterruptedException, ExecutionException {
+		pool.submit(() -> IntStream.range(0, target.length).parallel()
+				.forEach(i -> solveRidge(target[i], fixed, indices[i], values[i]))).get();
+	}
+
+	private void solveRidge(double[] result, double[][] fixed, int[] indices, double[] values) {
+		if (indices.length == 0) {
+			// nothing observed; the regularizer alone pulls the factor to zero
+			Arrays.fill(result, 0);
+			return;
+		}
+
+		double[][] gram = new double[dimW][dimW];
+		double[] rhs = new double[dimW];
+		for (int n = 0; n < indices.length; n++) {
+			double[] factor = fixed[indices[n]];
+			double value = values[n];
+			for (int a = 0; a < dimW; a++) {
+				double fa = factor[a];
+				rhs[a] += fa * value;
+				double[] gramRow = gram[a];
+				for (int b = 0; b <= a; b++) {
+					gramRow[b] += fa * factor[b];
+				}
+			}
+		}
+
+		double regularization = lambda * indices.length;
+		for (int a = 0; a < dimW; a++) {
+			gram[a][a] += regularization;
+		}
+
+		LinearAlgebra.solveSymmetricPositiveDefinite(gram, rhs);
+		System.arraycopy(rhs, 0, result, 0, dimW);
+	}
+
+	private double computeRmse(double[][] newU, double[][] newV, int[][] rowIndices, double[][] rowValues,
+			int numObserved) {
+		double sum = 0;
+		for (int i = 0; i < newU.length; i++) {
+			for (int n = 0; n < rowIndices[i].length; n++) {
+				double error = LinearAlgebra.dot(newU[i], newV[rowIndices[i][n]]) - rowValues[i][n];
+				sum += error * error;
+			}
+		}
+		return Math.sqrt(sum / numObserved);
+	}
+
+	@Override
+	public double[][] getU() throws MatrixCompleterException {
+		if (u == null) {
+			throw new MatrixCompleterException("No matrix has been completed yet.");
+		}
+		return u;
+	}
+
+	@Override
+	public double[][] getV() throws MatrixCompleterException {
+		if (v == null) {
+			throw new MatrixCompleterException("No matrix has been completed yet.");
+		}
+		return v;
+	}
+
+	public int getDimW() {
+		return dimW;
+	}
+
+	public void setDimW(int dimW) {
+		this.dimW = dimW;
+	}
+
+	public double getLambda() {
+		return lambda;
+	}
+
+	public void setLambda(double lambda) {
+		this.lambda = lambda;
+	}
+
+	public double getMinProgress() {
+		return minProgress;
+	}
+
+	public void setMinProgress(double minProgress) {
+		this.minProgress = minProgress;
+	}
+
+	public int getMinIterations() {
+		return minIterations;
+	}
+
+	public void setMinIterations(int minIterations) {
+		this.minIterations = minIterations;
+	}
+
+	public int getWarmStartMinIterations() {
+		return warmStartMinIterations;
+	}
+
+	/**
+	 * Sets the minimum number of iterations of a warm-started factorization,
+	 * which replaces {@link #getMinIterations()} as the factors are not random.
+	 * 
+	 * @param warmStartMinIterations the minimum number of iterations
+	 */
+	public void setWarmStartMinIterations(int warmStartMinIterations) {
+		this.warmStartMinIterations = warmStartMinIterations;
+	}
+
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+}
@@ -0,0 +1,303 @@
+package alors.matrix_completion.cofirank;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import alors.util.LinearAlgebra;
+
+/**
+ * The bundle method for regularized risk minimization (BMRM) [0] as used by
+ * cofirank: minimizes <code>lambda / 2 * ||w||^2 + R(w)</code> for a convex,
+ * possibly non-smooth risk <code>R</code> by building a piecewise linear lower
+ * bound of <code>R</code> from subgradients. The inner quadratic program over
+ * the cutting planes is solved in its dual by an active set method.
+ *
+ * <p>
+ * Instances hold no state between calls to
+ * {@link #minimize(RiskFunction, double[])} and may be shared between threads.
+ *
+ * <p>
+ * [0] Teo, Choon Hui, et al. "Bundle methods for regularized risk
+ * minimization." Journal of Machine Learning Research 11 (2010): 311-365.
+ *
+ * @author helegraf
+ *
+ */
+class BundleMethod {
+
+	/**
+	 * A convex risk function that can be minimized by the bundle method.
+	 */
+	interface RiskFunction {
+
+		/**
+		 * Evaluates the risk at the given point.
+		 *
+		 * @param w        the point
+		 * @param gradient array a subgradient at w is written to
+		 * @return the risk at w
+		 */
+		double evaluate(double[] w, double[] gradient);
+	}
+
+	// cutting planes that have not been active for this many iterations are dropped
+	private static final int MAX_INACTIVE_ITERATIONS = 10;
+
+	// relative ridge keeping the (rank deficient) restricted dual systems solvable
+	private static final double DUAL_RIDGE = 1e-10;
+	private static final double DUAL_TOLERANCE = 1e-12;
+	private static final int MAX_DUAL_ITERATIONS = 1000;
+
+	private final double lambda;
+	private final double gammaTol;
+	private final double epsilonTol;
+	private final int maxIterations;
+
+	/**
+	 * Creates a new bundle method solver.
+	 *
+	 * @param lambda        the regularization constant
+	 * @param gammaTol      stop once the gap between the best objective found and
+	 *                      the lower bound is below this value
+	 * @param epsilonTol    stop once the gap relative to the best objective is
+	 *                      below this value, disabled if not positive
+	 * @param maxIterations the maximum number of cutting planes to compute
+	 */
+	BundleMethod(double lambda, double gammaTol, double epsilonTol, int maxIterations) {
+		this.lambda = lambda;
+		this.gammaTol = gammaTol;
+		this.epsilonTol = epsilonTol;
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * Minimizes the regularized risk starting from the given point.
+	 *
+	 * @param risk  the risk function
+	 * @param start the starting point, not modified
+	 * @return the best point found
+	 */
+	double[] minimize(RiskFunction risk, double[] start) {
+		int dimension = start.length;
+		double[] w = start.clone();
+		double[] best = start.clone();
+		double bestObjective = Double.POSITIVE_INFINITY;
+
+		// the bundle: planes a, offsets b, their gram matrix and dual weights
+		List<double[]> planes = new ArrayList<>();
+		List<double[]> gram = new ArrayList<>();
+		List<Double> offsets = new ArrayList<>();
+		List<Double> alphas = new ArrayList<>();
+		List<Integer> lastActive = new ArrayList<>();
+
+		for (int iteration = 0; iteration < maxIterations; iteration++) {
+			double[] gradient = new double[dimension];
+			double value = risk.evaluate(w, gradient);
+			double objective = 0.5 * lambda * LinearAlgebra.dot(w, w) + value;
+			if (objective < bestObjective) {
+				bestObjective = objective;
+				System.arraycopy(w, 0, best, 0, dimension);
+			}
+
+			// add the new cutting plane
+			int size = planes.size();
+			double[] newGramRow = new double[size + 1];
+			for (int s = 0; s < size; s++) {
+				double product = LinearAlgebra.dot(gradient, planes.get(s));
+				newGramRow[s] = product;
+				double[] oldRow = gram.get(s);
+				double[] extendedRow = new double[size + 1];
+				System.arraycopy(oldRow, 0, extendedRow, 0, size);
+				extendedRow[size] = product;
+				gram.set(s, extendedRow);
+			}
+			newGramRow[size] = LinearAlgebra.dot(gradient, gradient);
+			planes.add(gradient);
+			gram.add(newGramRow);
+			offsets.add(value - LinearAlgebra.dot(gradient, w));
+			alphas.add(size == 0 ? 1.0 : 0.0);
+			lastActive.add(iteration);
+
+			// solve the dual and recover w
+			double lowerBound = solveDual(gram, offsets, alphas);
+			double[] newW = new double[dimension];
+			for (int s = 0; s < planes.size(); s++) {
+				double alpha = alphas.get(s);
+				if (alpha > 0) {
+					lastActive.set(s, iteration);
+					double[] plane = planes.get(s);
+					for (int d = 0; d < dimension; d++) {
+						newW[d] -= alpha * plane[d] / lambda;
+					}
+				}
+			}
+			w = newW;
+
+			double gap = bestObjective - lowerBound;
+			if (gap <= gammaTol || (epsilonTol > 0 && gap <= epsilonTol * bestObjective)) {
+				break;
+			}
+
+			removeInactivePlanes(iteration, planes, gram, offsets, alphas, lastActive);
+		}
+
+		return best;
+	}
+
+	/**
+	 * Maximizes <code>-1 / (2 lambda) * alpha^T Q alpha + b^T alpha</code> over
+	 * the simplex, starting from (and updating) the given alphas. Solves the
+	 * equivalent minimization with an active set method: the problem restricted to
+	 * the planes with positive weight is solved exactly, planes whose weight would
+	 * become negative are removed and the plane violating optimality the most is
+	 * added until none does.
+	 *
+	 * @return the optimal dual value, a lower bound of the objective
+	 */
+	private double solveDual(List<double[]> gram, List<Double> offsets, List<Double> alphaList) {
+		int size = gram.size();
+		double[][] h = new double[size][size];
+		double[] b = new double[size];
+		double[] alpha = new double[size];
+		boolean[] active = new boolean[size];
+		double maxDiagonal = 0;
+		for (int s = 0; s < size; s++) {
+			double[] row = gram.get(s);
+			for (int t = 0; t < size; t++) {
+				h[s][t] = row[t] / lambda;
+			}
+			maxDiagonal = Math.max(maxDiagonal, h[s][s]);
+			b[s] = offsets.get(s);
+			alpha[s] = alphaList.get(s);
+			active[s] = alpha[s] > 0;
+		}
+		double ridge = DUAL_RIDGE * (1 + maxDiagonal);
+
+		for (int iteration = 0; iteration < MAX_DUAL_ITERATIONS; iteration++) {
+			double[] candidate = solveRestricted(h, b, active, ridge);
+
+			// move towards the restricted solution as far as feasible
+			double step = 1;
+			for (int s = 0; s < size; s++) {
+				if (active[s] && candidate[s] < 0) {
+					step = Math.min(step, alpha[s] / (alpha[s] - candidate[s]));
+				}
+			}
+			for (int s = 0; s < size; s++) {
+				if (active[s]) {
+					alpha[s] += step * (candidate[s] - alpha[s]);
+					if (step < 1 && alpha[s] <= DUAL_TOLERANCE) {
+						alpha[s] = 0;
+						active[s] = false;
+					}
+				}
+			}
+			if (step < 1) {
+				continue;
+			}
+
+			// all active planes share the minimal gradient of 1 / 2 a^T h a - b^T a
+			double[] g = gradient(h, b, alpha);
+			double shared = 0;
+			int entering = -1;
+			for (int s = 0; s < size; s++) {
+				shared += alpha[s] * g[s];
+				if (!active[s] && (entering < 0 || g[s] < g[entering])) {
+					entering = s;
+				}
+			}
+
+			if (entering < 0 || g[entering] >= shared - DUAL_TOLERANCE * (1 + Math.abs(shared))) {
+				break;
+			}
+			active[entering] = true;
+		}
+
+		// -1 / 2 a^T h a + b^T a = -1 / 2 (g + b)^T a + b^T a
+		double[] g = gradient(h, b, alpha);
+		double value = 0;
+		for (int s = 0; s < size; s++) {
+			alphaList.set(s, alpha[s]);
+			value += -0.5 * (g[s] + b[s]) * alpha[s] + b[s] * alpha[s];
+		}
+		return value;
+	}
+
+	private double[] gradient(double[][] h, double[] b, double[] alpha) {
+		double[] g = new double[b.length];
+		for (int s = 0; s < b.length; s++) {
+			g[s] = LinearAlgebra.dot(h[s], alpha) - b[s];
+		}
+		return g;
+	}
+
+	/**
+	 * Minimizes <code>1 / 2 alpha^T h alpha - b^T alpha</code> subject to the
+	 * weights summing to one, where only the active weights may be non-zero.
+	 */
+	private double[] solveRestricted(double[][] h, double[] b, boolean[] active, double ridge) {
+		int size = b.length;
+		int[] indices = new int[size];
+		int count = 0;
+		for (int s = 0; s < size; s++) {
+			if (active[s]) {
+				indices[count++] = s;
+			}
+		}
+
+		// alpha = h^-1 (b + mu * 1) with mu such that the weights sum to one
+		double[] x = new double[count];
+		double[] y = new double[count];
+		for (int k = 0; k < count; k++) {
+			x[k] = b[indices[k]];
+			y[k] = 1;
+		}
+		LinearAlgebra.solveSymmetricPositiveDefinite(restrict(h, indices, count, ridge), x);
+		LinearAlgebra.solveSymmetricPositiveDefinite(restrict(h, indices, count, ridge), y);
+
+		double sumX = 0;
+		double sumY = 0;
+		for (int k = 0; k < count; k++) {
+			sumX += x[k];
+			sumY += y[k];
+		}
+		double mu = (1 - sumX) / sumY;
+
+		double[] candidate = new double[size];
+		for (int k = 0; k < count; k++) {
+			candidate[indices[k]] = x[k] + mu * y[k];
+		}
+		return candidate;
+	}
+
+	private double[][] restrict(double[][] h, int[] indices, int count, double ridge) {
+		double[][] restricted = new double[count][count];
+		for (int k = 0; k < count; k++) {
+			for (int l = 0; l < count; l++) {
+				restricted[k][l] = h[indices[k]][indices[l]];
+			}
+			restricted[k][k] += ridge;
+		}
+		return restricted;
+	}
+
+	private void removeInactivePlanes(int iteration, List<double[]> planes, List<double[]> gram, List<Double> offsets,
+			List<Double> alphas, List<Integer> lastActive) {
+		for (int s = planes.size() - 1; s >= 0; s--) {
+			if (iteration - lastActive.get(s) > MAX_INACTIVE_ITERATIONS) {
+				planes.remove(s);
+				gram.remove(s);
+				offsets.remove(s);
+				alphas.remove(s);
+				lastActive.remove(s);
+				for (int t = 0; t < gram.size(); t++) {
+					double[] row = gram.get(t);
+					double[] shortened = new double[row.length - 1];
+					System.arraycopy(row, 0, shortened, 0, s);
+					System.arraycopy(row, s + 1, shortened, s, row.length - s - 1);
+					gram.set(t, shortened);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package alors.matrix_completion.cofirank;
+
+/**
+ * Indicates that a cofirank run was aborted because its
+ * {@link CofiIterationListener} decided not to continue it.
+ *
+ * @author helegraf
+ *
+ */
+public class CofiAbortedException extends CofiException {
+
+	private static final long serialVersionUID = -3861517318924620795L;
+
+	private final transient CofiIteration lastIteration;
+
+	/**
+	 * @param lastIteration the iteration after which the run was aborted
+	 */
+	public CofiAbortedException(CofiIteration lastIteration) {
+		super("Cofi-Run aborted after iteration " + lastIteration.getIteration());
+		this.lastIteration = lastIteration;
+	}
+
+	/**
+	 * @return the iteration after which the run was aborted
+	 */
+	public CofiIteration getLastIteration() {
+		return lastIteration;
+	}
+}
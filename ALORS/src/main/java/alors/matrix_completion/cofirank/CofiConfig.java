@@ -4,6 +4,7 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Path;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,6 +18,13 @@ import org.slf4j.LoggerFactory;
  *
  */
 public class CofiConfig {
+
+	/**
+	 * Value of {@link #setLsvmPrecision(int)} for writing matrix entries such that
+	 * they are read back exactly, possibly in scientific notation.
+	 */
+	public static final int LOSSLESS_PRECISION = -1;
+
 	// logging
 	private Logger logger = LoggerFactory.getLogger(CofiConfig.class);
 	
@@ -36,12 +44,18 @@ public class CofiConfig {
 
 	private double minProgress = 0.1;
 	private int minIterations = 3;
+	// not an option of the c++ executable, which cannot be warm-started
+	private int warmStartMinIterations = 1;
 	private int maxIterations = 30;
 
 	private String optimizedMeasure = "REGRESSION";
 	private int ndcgKLoss = 10;
 	private double ndcgLossExponent = -0.25;
 
+	// Options of the java wrapper
+	private int lsvmPrecision = 6;
+	private boolean storeF = false;
+
 	/**
 	 * Create a new cofirank configuration with the given parameters that don't have
 	 * default values. Other parameters can be adapted with corresponding setters.
@@ -67,6 +81,48 @@ public class CofiConfig {
 		this.testFilePath = testFilePath;
 	}
 
+	/**
+	 * Creates a copy of this configuration whose files are all located in the
+	 * given directory: the configuration file <code>cofi.cfg</code>, the data
+	 * files <code>train.lsvm</code> and <code>test.lsvm</code> and the output
+	 * folder <code>out</code>, which is not created. Runs with configurations for
+	 * different directories do not interfere with each other.
+	 * 
+	 * @param workspace the directory
+	 * @return the copy
+	 */
+	public CofiConfig forWorkspace(Path workspace) {
+		CofiConfig copy = copy();
+		copy.configurationPath = workspace.resolve("cofi.cfg").toString();
+		copy.outFolderPath = workspace.resolve("out").toString();
+		copy.trainFilePath = workspace.resolve("train.lsvm").toString();
+		copy.testFilePath = workspace.resolve("test.lsvm").toString();
+		return copy;
+	}
+
+	/**
+	 * Creates a copy of this configuration, e.g. to be varied independently.
+	 * 
+	 * @return the copy
+	 */
+	public CofiConfig copy() {
+		CofiConfig copy = new CofiConfig(executablePath, configurationPath, outFolderPath, trainFilePath,
+				testFilePath);
+		copy.dimW = dimW;
+		copy.userPhaseLambda = userPhaseLambda;
+		copy.moviePhaseLambda = moviePhaseLambda;
+		copy.minProgress = minProgress;
+		copy.minIterations = minIterations;
+		copy.warmStartMinIterations = warmStartMinIterations;
+		copy.maxIterations = maxIterations;
+		copy.optimizedMeasure = optimizedMeasure;
+		copy.ndcgKLoss = ndcgKLoss;
+		copy.ndcgLossExponent = ndcgLossExponent;
+		copy.lsvmPrecision = lsvmPrecision;
+		copy.storeF = storeF;
+		return copy;
+	}
+
 	/**
 	 * Creates a configuration file in the configured location with the configured
 	 * options, to be read by the cofirank c++ executable.
@@ -96,7 +152,7 @@ public class CofiConfig {
 			// Model storage
 			writer.write(String.format("int cofi.storeU 1%n"));
 			writer.write(String.format("int cofi.storeM 1%n"));
-			writer.write(String.format("int cofi.storeF 1%n"));
+			writer.write(String.format("int cofi.storeF %d%n", storeF ? 1 : 0));
 			writer.write(String.format("int cofi.storeModel 1%n"));
 
 			// Lambdas
@@ -216,6 +272,21 @@ public class CofiConfig {
 		this.minIterations = minIterations;
 	}
 
+	public int getWarmStartMinIterations() {
+		return warmStartMinIterations;
+	}
+
+	/**
+	 * Sets the minimum number of iterations of a run started from previous
+	 * factors by {@link CofirankJava}, which replaces {@link #getMinIterations()}
+	 * for such runs.
+	 * 
+	 * @param warmStartMinIterations the minimum number of iterations
+	 */
+	public void setWarmStartMinIterations(int warmStartMinIterations) {
+		this.warmStartMinIterations = warmStartMinIterations;
+	}
+
 	public int getMaxIterations() {
 		return maxIterations;
 	}
@@ -247,4 +318,34 @@ public class CofiConfig {
 	public void setNdcgLossExponent(double ndcgLossExponent) {
 		this.ndcgLossExponent = ndcgLossExponent;
 	}
+
+	public int getLsvmPrecision() {
+		return lsvmPrecision;
+	}
+
+	/**
+	 * Sets the number of decimals matrix entries are written with for cofirank,
+	 * between 0 and 15, or
+	 * {@link #LOSSLESS_PRECISION} to write them without any rounding.
+	 * 
+	 * @param lsvmPrecision the number of decimals
+	 */
+	public void setLsvmPrecision(int lsvmPrecision) {
+		this.lsvmPrecision = lsvmPrecision;
+	}
+
+	public boolean isStoreF() {
+		return storeF;
+	}
+
+	/**
+	 * Sets whether cofirank writes the completed matrix F. If not,
+	 * {@link CofirankCPlusPlus} computes the completed matrix from the factors U
+	 * and V instead of reading it.
+	 * 
+	 * @param storeF whether cofirank writes the completed matrix
+	 */
+	public void setStoreF(boolean storeF) {
+		this.storeF = storeF;
+	}
 }
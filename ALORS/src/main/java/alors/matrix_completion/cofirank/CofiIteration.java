@@ -0,0 +1,97 @@
+package alors.matrix_completion.cofirank;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The progress of a cofirank run after one of its iterations, as parsed from
+ * its log: the objective and the evaluation metrics cofirank reported for the
+ * iteration, e.g. the RMSE and NDCG on the training set (see
+ * {@link CofiConfig#createConfig()}).
+ *
+ * @author helegraf
+ *
+ */
+public class CofiIteration {
+
+	/**
+	 * The name of the objective (also reported as "obj" or "loss").
+	 */
+	public static final String OBJECTIVE = "objective";
+
+	/**
+	 * The name of the root mean squared error.
+	 */
+	public static final String RMSE = "rmse";
+
+	/**
+	 * The name of the NDCG (also reported as "ndcg@k").
+	 */
+	public static final String NDCG = "ndcg";
+
+	private final int iteration;
+	private final long elapsedMillis;
+	private final Map<String, Double> metrics;
+
+	/**
+	 * Creates the progress after an iteration.
+	 *
+	 * @param iteration     the number of the iteration as reported by cofirank
+	 * @param elapsedMillis the time since the start of the run
+	 * @param metrics       the metrics reported for the iteration, by name
+	 */
+	public CofiIteration(int iteration, long elapsedMillis, Map<String, Double> metrics) {
+		this.iteration = iteration;
+		this.elapsedMillis = elapsedMillis;
+		this.metrics = Collections.unmodifiableMap(new LinkedHashMap<>(metrics));
+	}
+
+	/**
+	 * Returns whether higher values of the given metric are better, which is
+	 * only the case for the NDCG.
+	 *
+	 * @param metric the name of the metric
+	 * @return whether higher values are better
+	 */
+	public static boolean isHigherBetter(String metric) {
+		return NDCG.equals(metric);
+	}
+
+	public int getIteration() {
+		return iteration;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/**
+	 * @param metric the name of the metric
+	 * @return the value reported for the metric, NaN if it was not reported
+	 */
+	public double getMetric(String metric) {
+		Double value = metrics.get(metric);
+		return value != null ? value : Double.NaN;
+	}
+
+	/**
+	 * @return the objective, NaN if it was not reported
+	 */
+	public double getObjective() {
+		return getMetric(OBJECTIVE);
+	}
+
+	/**
+	 * @return all metrics reported for the iteration, by name
+	 */
+	public Map<String, Double> getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public String toString() {
+		return "CofiIteration [iteration=" + iteration + ", elapsedMillis=" + elapsedMillis + ", metrics=" + metrics
+				+ "]";
+	}
+}
@@ -0,0 +1,95 @@
+package alors.matrix_completion.cofirank;
+
+/**
+ * Is notified of the progress of a cofirank run after each of its iterations,
+ * while the run is executing (see
+ * {@link CofirankCPlusPlus#setIterationListener(CofiIterationListener)}), and
+ * decides whether the run continues. A run that is not continued is killed and
+ * fails with a {@link CofiAbortedException}. The listener of a run is never
+ * called concurrently.
+ *
+ * @author helegraf
+ *
+ */
+@FunctionalInterface
+public interface CofiIterationListener {
+
+	/**
+	 * Called after each iteration of the run.
+	 *
+	 * @param iteration the progress after the iteration
+	 * @return whether the run should continue
+	 */
+	boolean onIteration(CofiIteration iteration);
+
+	/**
+	 * Returns a listener continuing the run only as long as both this and the
+	 * given listener do. Both are notified of every iteration.
+	 *
+	 * @param other the other listener
+	 * @return the combined listener
+	 */
+	default CofiIterationListener and(CofiIterationListener other) {
+		return iteration -> onIteration(iteration) & other.onIteration(iteration);
+	}
+
+	/**
+	 * Returns a listener aborting a run once the given metric has not improved
+	 * by at least the given relative amount over its best value for the given
+	 * number of iterations in a row. Iterations not reporting the metric are
+	 * ignored.
+	 *
+	 * @param metric      the name of the metric, see {@link CofiIteration}
+	 * @param minProgress the minimum relative improvement
+	 * @param patience    the number of iterations without improvement to allow
+	 * @return the listener, to be used for a single run
+	 */
+	static CofiIterationListener stopOnPlateau(String metric, double minProgress, int patience) {
+		boolean higherIsBetter = CofiIteration.isHigherBetter(metric);
+		return new CofiIterationListener() {
+
+			private double best = Double.NaN;
+			private int iterationsWithoutProgress = 0;
+
+			@Override
+			public boolean onIteration(CofiIteration iteration) {
+				double value = iteration.getMetric(metric);
+				if (Double.isNaN(value)) {
+					return true;
+				}
+				double improvement = higherIsBetter ? value - best : best - value;
+				if (Double.isNaN(best) || improvement > minProgress * Math.abs(best)) {
+					best = value;
+					iterationsWithoutProgress = 0;
+					return true;
+				}
+				if (improvement > 0) {
+					best = value;
+				}
+				return ++iterationsWithoutProgress < patience;
+			}
+		};
+	}
+
+	/**
+	 * Returns a listener aborting a run once the given metric is worse than the
+	 * given bound, e.g. the final value of the best configuration known so far,
+	 * from the given iteration on. Earlier iterations are not judged, as the
+	 * metric usually still improves quickly.
+	 *
+	 * @param metric        the name of the metric, see {@link CofiIteration}
+	 * @param bound         the worst acceptable value
+	 * @param fromIteration the first iteration (as reported by cofirank) to judge
+	 * @return the listener
+	 */
+	static CofiIterationListener stopIfWorseThan(String metric, double bound, int fromIteration) {
+		boolean higherIsBetter = CofiIteration.isHigherBetter(metric);
+		return iteration -> {
+			double value = iteration.getMetric(metric);
+			if (iteration.getIteration() < fromIteration || Double.isNaN(value)) {
+				return true;
+			}
+			return higherIsBetter ? value >= bound : value <= bound;
+		};
+	}
+}
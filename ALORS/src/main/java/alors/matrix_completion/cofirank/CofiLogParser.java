@@ -0,0 +1,126 @@
+package alors.matrix_completion.cofirank;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the log of a running cofirank process line by line into
+ * {@link CofiIteration}s and passes them to a listener. A line mentioning
+ * "iteration n" (or "iter n") starts iteration n; metrics reported as
+ * <code>name value</code>, <code>name: value</code> or
+ * <code>name = value</code> on it or the following lines belong to it. The
+ * names objective, obj, loss, rmse and ndcg (or ndcg@k) are recognized,
+ * case-insensitively. An iteration is complete when the next one starts or the
+ * log ends.
+ *
+ * @author helegraf
+ *
+ */
+class CofiLogParser {
+
+	private static final Pattern ITERATION = Pattern.compile("(?i)\\biter(?:ation)?\\b\\s*[:=#]?\\s*(\\d+)");
+	private static final Pattern METRIC = Pattern.compile(
+			"(?i)\\b(objective|obj|loss|rmse|ndcg(?:@\\d+)?)\\s*[:=]?\\s*([-+]?(?:\\d+\\.?\\d*|\\.\\d+)(?:e[-+]?\\d+)?|[-+]?nan|[-+]?inf)\\b");
+
+	private final CofiIterationListener listener;
+	private final long startNanos = System.nanoTime();
+
+	// the current iteration, -1 before the first one
+	private int iteration = -1;
+	private final Map<String, Double> metrics = new LinkedHashMap<>();
+	private CofiIteration abortedAfter;
+
+	/**
+	 * @param listener the listener to notify of each iteration
+	 */
+	CofiLogParser(CofiIterationListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Parses the next line of the log.
+	 *
+	 * @param line the line
+	 * @return false if the listener decided to abort the run
+	 */
+	synchronized boolean accept(String line) {
+		Matcher iterationMatcher = ITERATION.matcher(line);
+		if (iterationMatcher.find()) {
+			int newIteration = Integer.parseInt(iterationMatcher.group(1));
+			if (newIteration != iteration && !notifyListener()) {
+				return false;
+			}
+			iteration = newIteration;
+		}
+		if (iteration < 0) {
+			return abortedAfter == null;
+		}
+
+		Matcher metricMatcher = METRIC.matcher(line);
+		while (metricMatcher.find()) {
+			metrics.put(normalizeName(metricMatcher.group(1)), parseValue(metricMatcher.group(2)));
+		}
+		return abortedAfter == null;
+	}
+
+	/**
+	 * Completes the last iteration at the end of the log.
+	 *
+	 * @return false if the listener decided to abort the run
+	 */
+	synchronized boolean finish() {
+		return notifyListener();
+	}
+
+	/**
+	 * @return the iteration after which the listener decided to abort the run,
+	 *         null if it did not
+	 */
+	synchronized CofiIteration getAbortedAfter() {
+		return abortedAfter;
+	}
+
+	private boolean notifyListener() {
+		if (abortedAfter != null) {
+			return false;
+		}
+		if (iteration < 0) {
+			return true;
+		}
+
+		long elapsedMillis = (System.nanoTime() - startNanos) / 1000000;
+		CofiIteration completed = new CofiIteration(iteration, elapsedMillis, metrics);
+		metrics.clear();
+		iteration = -1;
+		if (!listener.onIteration(completed)) {
+			abortedAfter = completed;
+			return false;
+		}
+		return true;
+	}
+
+	private static String normalizeName(String name) {
+		String lowerCase = name.toLowerCase(Locale.ROOT);
+		if (lowerCase.equals("obj") || lowerCase.equals("loss")) {
+			return CofiIteration.OBJECTIVE;
+		}
+		if (lowerCase.startsWith(CofiIteration.NDCG)) {
+			return CofiIteration.NDCG;
+		}
+		return lowerCase;
+	}
+
+	private static double parseValue(String value) {
+		String lowerCase = value.toLowerCase(Locale.ROOT);
+		if (lowerCase.endsWith("nan")) {
+			return Double.NaN;
+		}
+		if (lowerCase.endsWith("inf")) {
+			return lowerCase.startsWith("-") ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+		}
+		return Double.parseDouble(value);
+	}
+}
@@ -0,0 +1,50 @@
+package alors.matrix_completion.cofirank;
+
+/**
+ * A loss of cofirank, measuring how well the predictions for the observed
+ * entries of a single row (user) match the true values of that row.
+ *
+ * @author helegraf
+ *
+ */
+interface CofiLoss {
+
+	/**
+	 * Computes the loss as well as a subgradient with respect to the predictions.
+	 *
+	 * @param predictions the predictions for the observed entries of a row
+	 * @param truth       the true values of the observed entries of the row
+	 * @param gradient    array the subgradient is written to (same length as the
+	 *                    predictions)
+	 * @return the loss
+	 */
+	double lossAndGradient(double[] predictions, double[] truth, double[] gradient);
+
+	/**
+	 * Whether the loss is a sum of losses of the individual entries, so that it
+	 * can equally be applied to the observed entries of a column.
+	 *
+	 * @return whether the loss decomposes over entries
+	 */
+	default boolean isSeparable() {
+		return false;
+	}
+
+	/**
+	 * Creates the loss named in the given configuration.
+	 *
+	 * @param config the configuration
+	 * @return the loss
+	 * @throws CofiException if the configured loss is not supported
+	 */
+	static CofiLoss forConfig(CofiConfig config) throws CofiException {
+		switch (config.getOptimizedMeasure()) {
+		case "REGRESSION":
+			return new RegressionLoss();
+		case "NDCG":
+			return new NDCGLoss(config.getNdcgKLoss(), config.getNdcgLossExponent());
+		default:
+			throw new CofiException("Unsupported loss " + config.getOptimizedMeasure());
+		}
+	}
+}
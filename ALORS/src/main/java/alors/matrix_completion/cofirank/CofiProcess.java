@@ -0,0 +1,268 @@
+package alors.matrix_completion.cofirank;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single execution of the cofirank executable. Standard output and error are
+ * drained by their own threads while the process runs, so it never blocks on
+ * a full pipe; standard output is logged, standard error is kept to check the
+ * run. The process is killed if it exceeds its timeout, if the waiting thread
+ * is interrupted or if the execution is cancelled.
+ * 
+ * <p>
+ * Optionally, the log of the process is followed while it runs: the log file,
+ * or standard output if there is none, is parsed by a {@link CofiLogParser},
+ * whose listener may abort the run. Only one of them is parsed, as cofirank
+ * may report an iteration in both.
+ *
+ * @author helegraf
+ *
+ */
+class CofiProcess {
+
+	// the only line cofirank writes to standard error on success
+	private static final String EXPECTED_ERROR_OUTPUT = "All output including logs will go to";
+
+	// the number of lines of standard error kept for the error message
+	private static final int MAX_ERROR_LINES = 100;
+
+	// the time to wait for the output after the process has exited
+	private static final long STREAM_CLOSE_MILLIS = 10000;
+
+	// the interval in which the log file is checked for new lines
+	private static final long LOG_POLL_MILLIS = 100;
+
+	// logging
+	private Logger logger = LoggerFactory.getLogger(CofiProcess.class);
+
+	private final List<String> errorLines = new ArrayList<>();
+	private int numErrorLines;
+
+	private Path logFile;
+	private CofiLogParser logParser;
+	private volatile boolean processExited;
+
+	// guarded by this
+	private Process process;
+	private boolean cancelled;
+
+	/**
+	 * Follows the log of the process once it runs.
+	 *
+	 * @param logFile   the log file, which need not exist before the process
+	 *                  writes it, or null to parse standard output instead
+	 * @param logParser the parser of the log
+	 */
+	void followLog(Path logFile, CofiLogParser logParser) {
+		this.logFile = logFile;
+		this.logParser = logParser;
+	}
+
+	/**
+	 * Runs cofirank with the given configuration file and waits for it to exit.
+	 *
+	 * @param executablePath the cofirank executable
+	 * @param configPath     the configuration file
+	 * @param timeoutMillis  the maximum running time in milliseconds, 0 for no
+	 *                       limit
+	 * @throws CofiException        if the process cannot be started, times out,
+	 *                              is cancelled or aborted or reports an error
+	 * @throws InterruptedException if interrupted while waiting, the process is
+	 *                              killed then
+	 */
+	void run(String executablePath, String configPath, long timeoutMillis)
+			throws CofiException, InterruptedException {
+		Process started;
+		synchronized (this) {
+			if (cancelled) {
+				throw new CofiException("Cofi-Run cancelled");
+			}
+			try {
+				started = new ProcessBuilder(Arrays.asList(executablePath, configPath)).start();
+			} catch (IOException e) {
+				throw new CofiException("Could not start cofirank", e);
+			}
+			process = started;
+		}
+
+		Thread output = drain(started.getInputStream(), this::addOutputLine, "stdout");
+		Thread error = drain(started.getErrorStream(), this::addErrorLine, "stderr");
+		Thread logTail = logParser != null && logFile != null ? tail(logFile) : null;
+		try {
+			if (timeoutMillis <= 0) {
+				started.waitFor();
+			} else if (!started.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+				throw new CofiException(String.format("Cofi-Run timed out after %d ms", timeoutMillis));
+			}
+		} finally {
+			if (started.isAlive()) {
+				started.destroyForcibly();
+			}
+			processExited = true;
+		}
+
+		synchronized (this) {
+			if (cancelled) {
+				throw new CofiException("Cofi-Run cancelled");
+			}
+		}
+
+		// both streams end with the process, unless it left children holding them
+		output.join(STREAM_CLOSE_MILLIS);
+		error.join(STREAM_CLOSE_MILLIS);
+		if (error.isAlive()) {
+			logger.warn("Standard error of cofirank still open {} ms after it exited", STREAM_CLOSE_MILLIS);
+		}
+
+		if (logParser != null) {
+			if (logTail != null) {
+				logTail.join();
+			}
+			// the listener may also abort after the last iteration
+			if (logParser.getAbortedAfter() != null || !logParser.finish()) {
+				throw new CofiAbortedException(logParser.getAbortedAfter());
+			}
+		}
+		checkErrorOutput();
+	}
+
+	/**
+	 * Cancels the execution, killing the process if it has been started. A
+	 * subsequent or concurrent {@link #run(String, String, long)} fails.
+	 */
+	synchronized void cancel() {
+		cancelled = true;
+		if (process != null) {
+			process.destroyForcibly();
+		}
+	}
+
+	private Thread drain(InputStream stream, Consumer<String> lineConsumer, String streamName) {
+		Thread thread = new Thread(() -> {
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					lineConsumer.accept(line);
+				}
+			} catch (IOException e) {
+				// the stream is closed when the process is killed
+				logger.debug("Stopped reading cofirank {}", streamName, e);
+			}
+		}, "cofirank-" + streamName);
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Follows the log file until the process has exited, reading new lines
+	 * every {@link #LOG_POLL_MILLIS} ms.
+	 */
+	private Thread tail(Path file) {
+		Thread thread = new Thread(() -> {
+			ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+			ByteBuffer buffer = ByteBuffer.allocate(8192);
+			long position = 0;
+			try {
+				boolean exited;
+				do {
+					exited = processExited;
+					try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+						channel.position(position);
+						int read;
+						while ((read = channel.read(buffer)) > 0) {
+							position += read;
+							buffer.flip();
+							while (buffer.hasRemaining()) {
+								byte b = buffer.get();
+								if (b == '\n') {
+									addLogLine(new String(partialLine.toByteArray(), StandardCharsets.UTF_8));
+									partialLine.reset();
+								} else if (b != '\r') {
+									partialLine.write(b);
+								}
+							}
+							buffer.clear();
+						}
+					} catch (NoSuchFileException e) {
+						// not written yet
+					}
+					if (!exited) {
+						Thread.sleep(LOG_POLL_MILLIS);
+					}
+				} while (!exited);
+				if (partialLine.size() > 0) {
+					addLogLine(new String(partialLine.toByteArray(), StandardCharsets.UTF_8));
+				}
+			} catch (IOException e) {
+				logger.warn("Could not follow cofirank log {}", file, e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, "cofirank-log");
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	private void addOutputLine(String line) {
+		logger.debug("cofirank: {}", line);
+		if (logFile == null) {
+			addLogLine(line);
+		}
+	}
+
+	private void addLogLine(String line) {
+		if (logParser != null && !logParser.accept(line)) {
+			abort();
+		}
+	}
+
+	private synchronized void abort() {
+		if (process != null && process.isAlive()) {
+			logger.info("Aborting cofirank run after iteration {}", logParser.getAbortedAfter().getIteration());
+			process.destroyForcibly();
+		}
+	}
+
+	private synchronized void addErrorLine(String line) {
+		numErrorLines++;
+		if (errorLines.size() < MAX_ERROR_LINES) {
+			errorLines.add(line);
+		}
+	}
+
+	private synchronized void checkErrorOutput() throws CofiException {
+		if (numErrorLines == 1 && errorLines.get(0).startsWith(EXPECTED_ERROR_OUTPUT)) {
+			return;
+		}
+
+		StringBuilder message = new StringBuilder("Exception while running COFI!");
+		for (String line : errorLines) {
+			message.append(System.lineSeparator()).append(line);
+		}
+		if (numErrorLines > errorLines.size()) {
+			message.append(System.lineSeparator())
+					.append(String.format("(%d more lines)", numErrorLines - errorLines.size()));
+		}
+		throw new CofiException(message.toString());
+	}
+}
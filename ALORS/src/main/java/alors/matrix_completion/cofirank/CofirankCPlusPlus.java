@@ -1,24 +1,47 @@
 package alors.matrix_completion.cofirank;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import alors.matrix_completion.FactorizedMatrix;
 import alors.matrix_completion.MatrixCompleterException;
 import alors.matrix_completion.ModelBasedMatrixCompleter;
+import alors.matrix_completion.SparseMatrix;
+import alors.metrics.Metrics;
 
 /**
- * A wrapper for the c++ implementation [0] of cofirank [1].
+ * A wrapper for the c++ implementation [0] of cofirank [1]. The factors U and
+ * V of the run that finished last are kept in memory. The completed matrix is
+ * computed from them, unless cofirank is configured to write it (see
+ * {@link CofiConfig#setStoreF(boolean)}).
+ * 
+ * <p>
+ * By default, each run writes its files to a new temporary workspace, which
+ * is deleted once the results are read, instead of the file locations of the
+ * configuration. Thus any number of runs, of one wrapper or several, can
+ * execute concurrently; see {@link CofirankPool} for running a bounded number
+ * of them in parallel. The process is run with its output drained
+ * concurrently; it can be given a timeout (see {@link #setTimeoutMillis(long)})
+ * and asynchronous runs (see {@link #completeAsync(SparseMatrix, Executor)})
+ * can be cancelled, both killing the process. The progress of a run can be
+ * followed while it executes, see
+ * {@link #setIterationListener(CofiIterationListener)}.
+ * 
+ * <p>
+ * Each run returns its own results; concurrent callers should use the
+ * factorization or matrix returned by {@link #factorize(SparseMatrix)},
+ * {@link #complete(SparseMatrix)} or their asynchronous variants, since
+ * {@link #getU()} and {@link #getV()} return the factors of whichever run
+ * finished last.
  * 
  * <p>
  * [0] https://github.com/helegraf/cofirank; forked from
@@ -39,6 +62,14 @@ public class CofirankCPlusPlus implements ModelBasedMatrixCompleter {
 	
 	// configuration
 	private CofiConfig config;
+	private boolean useWorkspaces = true;
+	private String workspaceDirectory;
+	private long timeoutMillis = 0;
+	private CofiIterationListener iterationListener;
+	private String logFileName = "log.txt";
+
+	// results of the run that finished last
+	private volatile FactorizedMatrix lastFactorization;
 
 	/**
 	 * Creates a new Cofirank wrapper using the given configuration. Any execution
@@ -53,121 +84,203 @@ public class CofirankCPlusPlus implements ModelBasedMatrixCompleter {
 
 	@Override
 	public double[][] complete(double[][] matrix) throws CofiException {
-		try {
-			// write the matrix into COFI format (assume not huge non-sparse matrix)
-			writeLSVMMatrix(config.getTestFilePath(), new double[0][0]);
-			writeLSVMMatrix(config.getTrainFilePath(), matrix);
+		return complete(SparseMatrix.fromDense(matrix));
+	}
 
-			// create configuration
-			String configPath = config.createConfig();
+	@Override
+	public double[][] complete(SparseMatrix matrix) throws CofiException {
+		CofiResult result = run(matrix);
+		return result.completedMatrix != null ? result.completedMatrix : result.factorization.toDense();
+	}
 
-			// Command to create an external process
-			String command = config.getExecutablePath() + " " + configPath;
+	@Override
+	public FactorizedMatrix factorize(SparseMatrix matrix) throws CofiException {
+		return run(matrix).factorization;
+	}
 
-			// Running the above command
-			logger.info("Running Cofirank");
-			Runtime run = Runtime.getRuntime();
-			Process proc = run.exec(command);
+	/**
+	 * Completes the given matrix like {@link #complete(SparseMatrix)}, running
+	 * cofirank on the given executor. Cancelling the returned future kills the
+	 * cofirank process.
+	 * 
+	 * @param matrix   the matrix to be completed
+	 * @param executor the executor to wait for cofirank on
+	 * @return the completed matrix; completes exceptionally with a
+	 *         {@link CofiException} if the run fails or times out
+	 */
+	public CompletableFuture<double[][]> completeAsync(SparseMatrix matrix, Executor executor) {
+		return runAsync(matrix, executor,
+				result -> result.completedMatrix != null ? result.completedMatrix : result.factorization.toDense());
+	}
 
-			// execute
-			proc.waitFor();
-			readCofiOutput(proc);
+	/**
+	 * Factorizes the given matrix like {@link #factorize(SparseMatrix)}, running
+	 * cofirank on the given executor. Cancelling the returned future kills the
+	 * cofirank process.
+	 * 
+	 * @param matrix   the matrix to be factorized
+	 * @param executor the executor to wait for cofirank on
+	 * @return the factorization; completes exceptionally with a
+	 *         {@link CofiException} if the run fails or times out
+	 */
+	public CompletableFuture<FactorizedMatrix> factorizeAsync(SparseMatrix matrix, Executor executor) {
+		return runAsync(matrix, executor, result -> result.factorization);
+	}
 
-			// read the result
-			return parseNonSparseLSVM("F.lsvm");
+	private <T> CompletableFuture<T> runAsync(SparseMatrix matrix, Executor executor,
+			Function<CofiResult, T> resultExtractor) {
+		CofiProcess process = new CofiProcess();
+		CompletableFuture<T> future = new CompletableFuture<>();
+		future.whenComplete((result, e) -> {
+			if (future.isCancelled()) {
+				process.cancel();
+			}
+		});
 
-		} catch (IOException | InterruptedException e1) {
-			throw new CofiException("Cofi-Run incomplete", e1);
-		}
+		executor.execute(() -> {
+			// cancelled before it started
+			if (future.isDone()) {
+				return;
+			}
+			try {
+				future.complete(resultExtractor.apply(run(matrix, process)));
+			} catch (CofiException | RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
 	}
 
-	private void readCofiOutput(Process proc) throws CofiException {
-		try {
-			// Read any errors from the attempted command
-			BufferedReader stdError = new BufferedReader(new InputStreamReader(proc.getErrorStream()));
-			String firstLine = stdError.readLine();
-			String line = stdError.readLine();
-
-			if (line != null || !firstLine.startsWith("All output including logs will go to")) {
-				StringBuffer buff = new StringBuffer();
-				buff.append("Exception while running COFI!");
-				buff.append(System.lineSeparator());
-				buff.append(firstLine);
-				buff.append(line);
-
-				while ((line = stdError.readLine()) != null) {
-					buff.append(line);
-				}
+	private CofiResult run(SparseMatrix matrix) throws CofiException {
+		return run(matrix, new CofiProcess());
+	}
 
-				throw new CofiException(buff.toString());
+	private CofiResult run(SparseMatrix matrix, CofiProcess process) throws CofiException {
+		CofiConfig runConfig = config;
+		Path workspace = null;
+		try {
+			if (useWorkspaces) {
+				workspace = createWorkspace();
+				runConfig = config.forWorkspace(workspace);
+				Files.createDirectory(Paths.get(runConfig.getOutFolderPath()));
 			}
+			CofiResult result = run(matrix, runConfig, process);
+			lastFactorization = result.factorization;
+			return result;
 		} catch (IOException e) {
-			throw new CofiException(e);
+			throw new CofiException("Could not create a workspace for cofirank", e);
+		} finally {
+			if (workspace != null) {
+				deleteWorkspace(workspace);
+			}
 		}
 	}
 
-	private void writeLSVMMatrix(String location, double[][] matrix) throws IOException {
-		logger.debug("Writing matrix to {}", location);
-		
-		try (BufferedWriter writer = new BufferedWriter(new FileWriter(new File(location)))) {
-			for (int i = 0; i < matrix.length; i++) {
-				for (int j = 0; j < matrix[i].length; j++) {
-					if (!Double.isNaN(matrix[i][j])) {
-						writer.write(String.format("%d:%f ", j + 1, matrix[i][j]));
+	private CofiResult run(SparseMatrix matrix, CofiConfig runConfig, CofiProcess process) throws CofiException {
+		try {
+			// write the matrix into COFI format and create configuration
+			String configPath;
+			Metrics.Timer serializationTimer = Metrics.startTimer(Metrics.COFIRANK_SERIALIZATION);
+			try {
+				writeLSVMMatrix(runConfig.getTestFilePath(),
+						new SparseMatrix(0, 0, new int[1], new int[0], new double[0]), runConfig);
+				writeLSVMMatrix(runConfig.getTrainFilePath(), matrix, runConfig);
+				configPath = runConfig.createConfig();
+			} finally {
+				serializationTimer.close();
+			}
+			Metrics.increment(Metrics.COFIRANK_OBSERVED_ENTRIES, matrix.getNumEntries());
+
+			// execute
+			if (iterationListener != null) {
+				process.followLog(logFileName != null ? Paths.get(runConfig.getOutFolderPath(), logFileName) : null,
+						new CofiLogParser(iterationListener));
+			}
+			logger.info("Running Cofirank");
+			Metrics.Timer processTimer = Metrics.startTimer(Metrics.COFIRANK_PROCESS);
+			try {
+				process.run(runConfig.getExecutablePath(), configPath, timeoutMillis);
+			} finally {
+				processTimer.close();
+			}
+
+			// read the factors
+			Metrics.Timer parsingTimer = Metrics.startTimer(Metrics.COFIRANK_PARSING);
+			try {
+				double[][] newU = parseNonSparseLSVM(runConfig, "U.lsvm", matrix.getNumRows(), runConfig.getDimW());
+				double[][] newV = parseNonSparseLSVM(runConfig, "M.lsvm", matrix.getNumColumns(),
+						runConfig.getDimW());
+				CofiResult result = new CofiResult(new FactorizedMatrix(newU, newV));
+
+				if (runConfig.isStoreF()) {
+					try {
+						result.completedMatrix = parseNonSparseLSVM(runConfig, "F.lsvm", matrix.getNumRows(),
+								matrix.getNumColumns());
+					} catch (IOException e) {
+						throw new CofiException("Could not parse f-matrix", e);
 					}
 				}
-
-				writer.write(System.lineSeparator());
+				return result;
+			} finally {
+				parsingTimer.close();
 			}
+
+		} catch (IOException e1) {
+			throw new CofiException("Cofi-Run incomplete", e1);
+		} catch (InterruptedException e1) {
+			Thread.currentThread().interrupt();
+			throw new CofiException("Cofi-Run interrupted", e1);
 		}
 	}
 
-	@Override
-	public double[][] getU() throws MatrixCompleterException {
-		try {
-			return parseNonSparseLSVM("U.lsvm");
-		} catch (IOException e) {
-			throw new MatrixCompleterException("Could not parse u-matrix", e);
+	private Path createWorkspace() throws IOException {
+		if (workspaceDirectory == null) {
+			return Files.createTempDirectory("cofirank");
 		}
+		return Files.createTempDirectory(Paths.get(workspaceDirectory), "cofirank");
 	}
 
-	@Override
-	public double[][] getV() throws MatrixCompleterException {
+	private void deleteWorkspace(Path workspace) {
 		try {
-			return parseNonSparseLSVM("M.lsvm");
+			FileUtils.deleteDirectory(workspace.toFile());
 		} catch (IOException e) {
-			throw new MatrixCompleterException("Could not parse v-matrix", e);
+			logger.warn("Could not delete cofirank workspace {}", workspace, e);
 		}
 	}
 
-	private double[][] parseNonSparseLSVM(String locationRelativeToCOFIOutFolder) throws IOException {
-		logger.debug("Parsing matrix {}",locationRelativeToCOFIOutFolder);
-		
-		try (BufferedReader reader = new BufferedReader(
-				new FileReader(Paths.get(config.getOutFolderPath(), locationRelativeToCOFIOutFolder).toString()))) {
-			String line = reader.readLine();
-
-			List<double[]> u = new ArrayList<>();
-			while (line != null) {
-				// parse lsvm file
-				line = line.trim();
-				if (line != "") {
-					String[] parts = line.split(" ");
-					double[] entries = new double[parts.length];
-
-					for (int i = 0; i < parts.length; i++) {
-						entries[i] = Double.parseDouble(parts[i].split(":")[1]);
-					}
+	private void writeLSVMMatrix(String location, SparseMatrix matrix, CofiConfig runConfig) throws IOException {
+		logger.debug("Writing matrix to {}", location);
+		Path path = Paths.get(location);
+		LSVMWriter.write(path, matrix, runConfig.getLsvmPrecision());
+		Metrics.increment(Metrics.COFIRANK_BYTES_WRITTEN, () -> Files.size(path));
+	}
 
-					u.add(entries);
+	@Override
+	public double[][] getU() throws MatrixCompleterException {
+		FactorizedMatrix factorization = lastFactorization;
+		if (factorization == null) {
+			throw new MatrixCompleterException("No matrix has been completed yet.");
+		}
+		return factorization.getU();
+	}
 
-				}
+	@Override
+	public double[][] getV() throws MatrixCompleterException {
+		FactorizedMatrix factorization = lastFactorization;
+		if (factorization == null) {
+			throw new MatrixCompleterException("No matrix has been completed yet.");
+		}
+		return factorization.getV();
+	}
 
-				line = reader.readLine();
-			}
+	private double[][] parseNonSparseLSVM(CofiConfig runConfig, String locationRelativeToCOFIOutFolder,
+			int expectedRows, int expectedColumns) throws IOException {
+		logger.debug("Parsing matrix {}", locationRelativeToCOFIOutFolder);
 
-			return u.toArray(new double[0][0]);
-		}
+		Path path = Paths.get(runConfig.getOutFolderPath(), locationRelativeToCOFIOutFolder);
+		double[][] matrix = LSVMReader.read(path, expectedRows, expectedColumns);
+		Metrics.increment(Metrics.COFIRANK_BYTES_READ, () -> Files.size(path));
+		return matrix;
 	}
 
 	public CofiConfig getConfig() {
@@ -178,4 +291,94 @@ public class CofirankCPlusPlus implements ModelBasedMatrixCompleter {
 		this.config = config;
 	}
 
+	public boolean isUseWorkspaces() {
+		return useWorkspaces;
+	}
+
+	/**
+	 * Sets whether each run uses its own temporary workspace (the default) or
+	 * the file locations of the configuration, which are kept after the run but
+	 * allow only one run at a time.
+	 * 
+	 * @param useWorkspaces whether to use temporary workspaces
+	 */
+	public void setUseWorkspaces(boolean useWorkspaces) {
+		this.useWorkspaces = useWorkspaces;
+	}
+
+	public String getWorkspaceDirectory() {
+		return workspaceDirectory;
+	}
+
+	/**
+	 * Sets the directory the temporary workspaces are created in.
+	 * 
+	 * @param workspaceDirectory an existing directory, or null for the default
+	 *                           temporary-file directory
+	 */
+	public void setWorkspaceDirectory(String workspaceDirectory) {
+		this.workspaceDirectory = workspaceDirectory;
+	}
+
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	/**
+	 * Sets the maximum wall-clock time of a cofirank process, after which it is
+	 * killed and the run fails.
+	 * 
+	 * @param timeoutMillis the timeout in milliseconds, 0 for no timeout
+	 */
+	public void setTimeoutMillis(long timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	public CofiIterationListener getIterationListener() {
+		return iterationListener;
+	}
+
+	/**
+	 * Sets a listener to be notified of the objective and evaluation metrics of
+	 * each iteration while cofirank runs, parsed from its log file or standard
+	 * output (see {@link #setLogFileName(String)}). The listener can abort a run,
+	 * which then fails with a {@link CofiAbortedException}. Concurrent runs share
+	 * the listener, so a listener keeping state, like
+	 * {@link CofiIterationListener#stopOnPlateau(String, double, int)}, should
+	 * be set anew for each run.
+	 * 
+	 * @param iterationListener the listener, null to not follow runs
+	 */
+	public void setIterationListener(CofiIterationListener iterationListener) {
+		this.iterationListener = iterationListener;
+	}
+
+	public String getLogFileName() {
+		return logFileName;
+	}
+
+	/**
+	 * Sets the name of the log file cofirank writes to its output folder, which
+	 * is followed if an iteration listener is set.
+	 * 
+	 * @param logFileName the name of the log file, or null to follow the standard
+	 *                    output of cofirank instead
+	 */
+	public void setLogFileName(String logFileName) {
+		this.logFileName = logFileName;
+	}
+
+	/**
+	 * The results of a single run.
+	 */
+	private static class CofiResult {
+
+		private final FactorizedMatrix factorization;
+		private double[][] completedMatrix;
+
+		private CofiResult(FactorizedMatrix factorization) {
+			this.factorization = factorization;
+		}
+	}
+
 }
@@ -0,0 +1,326 @@
+package alors.matrix_completion.cofirank;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import alors.matrix_completion.FactorizedMatrix;
+import alors.matrix_completion.MatrixCompleterException;
+import alors.matrix_completion.ModelBasedMatrixCompleter;
+import alors.matrix_completion.SparseMatrix;
+import alors.util.LinearAlgebra;
+
+/**
+ * A pure java port of cofirank [0], configured by the same {@link CofiConfig}
+ * as {@link CofirankCPlusPlus} (the file locations of the configuration are not
+ * used). Alternates between a user phase, optimizing the rows of U, and a movie
+ * phase, optimizing V, each by the bundle method for regularized risk
+ * minimization. The user phase decomposes into one problem per row, which are
+ * solved in parallel. For the regression loss the movie phase decomposes into
+ * one problem per column in the same way; for the NDCG loss it is a single
+ * problem whose risk and gradient are evaluated in parallel over rows and
+ * reduced in parallel over columns. Runs can be warm-started from previous
+ * factors, see {@link #factorize(SparseMatrix, FactorizedMatrix)}.
+ *
+ * <p>
+ * [0] Weimer, Markus, et al. "Cofi rank-maximum margin matrix factorization for
+ * collaborative ranking." Advances in neural information processing systems.
+ * 2008.
+ *
+ * @author helegraf
+ *
+ */
+public class CofirankJava implements ModelBasedMatrixCompleter {
+
+	// logging
+	private Logger logger = LoggerFactory.getLogger(CofirankJava.class);
+
+	// BMRM options, as written by CofiConfig#createConfig()
+	private static final double BMRM_GAMMA_TOL = 0.01;
+	private static final double BMRM_EPSILON_TOL = -1.0;
+	private static final int BMRM_MAX_ITERATIONS = 4000;
+
+	// configuration
+	private CofiConfig config;
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+	private long seed = 0;
+
+	// results
+	private double[][] u;
+	private double[][] v;
+
+	/**
+	 * Creates a new java cofirank using the given configuration. Any execution of
+	 * {@link #complete(double[][])} will use this configuration.
+	 *
+	 * @param config the configuration to be used
+	 */
+	public CofirankJava(CofiConfig config) {
+		this.config = config;
+	}
+
+	@Override
+	public double[][] complete(double[][] matrix) throws MatrixCompleterException {
+		return complete(SparseMatrix.fromDense(matrix));
+	}
+
+	@Override
+	public double[][] complete(SparseMatrix matrix) throws MatrixCompleterException {
+		return factorize(matrix).toDense();
+	}
+
+	@Override
+	public FactorizedMatrix factorize(SparseMatrix matrix) throws MatrixCompleterException {
+		return factorize(matrix, null);
+	}
+
+	@Override
+	public FactorizedMatrix factorize(SparseMatrix matrix, FactorizedMatrix initialization)
+			throws MatrixCompleterException {
+		CofiLoss loss = CofiLoss.forConfig(config);
+
+		int numRows = matrix.getNumRows();
+		int numColumns = matrix.getNumColumns();
+		int[] rowPointers = matrix.getRowPointers();
+		int[][] rowIndices = new int[numRows][];
+		double[][] rowValues = new double[numRows][];
+		for (int i = 0; i < numRows; i++) {
+			rowIndices[i] = Arrays.copyOfRange(matrix.getColumnIndices(), rowPointers[i], rowPointers[i + 1]);
+			rowValues[i] = Arrays.copyOfRange(matrix.getValues(), rowPointers[i], rowPointers[i + 1]);
+		}
+
+		// users start at zero, movies randomly, unless given
+		Random random = new Random(seed);
+		int dimW = config.getDimW();
+		double[][] initialU = new double[numRows][dimW];
+		double[][] initialV = new double[numColumns][dimW];
+		for (int j = 0; j < numColumns; j++) {
+			for (int d = 0; d < dimW; d++) {
+				initialV[j][d] = random.nextGaussian();
+			}
+		}
+		if (initialization != null) {
+			initialization.copyInto(initialU, initialV);
+		}
+		int minIterations = initialization == null ? config.getMinIterations() : config.getWarmStartMinIterations();
+
+		ForkJoinPool pool = new ForkJoinPool(numThreads);
+		try {
+			// all parallel streams of the factorization run in the pool
+			pool.submit(() -> alternate(loss, rowIndices, rowValues, initialU, initialV, minIterations)).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CofiException("Cofi-Run interrupted", e);
+		} catch (ExecutionException e) {
+			throw new CofiException("Cofi-Run incomplete", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		return new FactorizedMatrix(u, v);
+	}
+
+	private void alternate(CofiLoss loss, int[][] rowIndices, double[][] rowValues, double[][] newU,
+			double[][] newV, int minIterations) {
+		int numRows = rowIndices.length;
+		int numColumns = newV.length;
+		int dimW = config.getDimW();
+
+		// for separable losses the movie phase decomposes into one problem per column
+		int[][] columnIndices = new int[numColumns][];
+		double[][] columnValues = new double[numColumns][];
+		if (loss.isSeparable()) {
+			int[] counts = new int[numColumns];
+			for (int[] indices : rowIndices) {
+				for (int j : indices) {
+					counts[j]++;
+				}
+			}
+			for (int j = 0; j < numColumns; j++) {
+				columnIndices[j] = new int[counts[j]];
+				columnValues[j] = new double[counts[j]];
+				counts[j] = 0;
+			}
+			for (int i = 0; i < numRows; i++) {
+				for (int n = 0; n < rowIndices[i].length; n++) {
+					int j = rowIndices[i][n];
+					columnIndices[j][counts[j]] = i;
+					columnValues[j][counts[j]] = rowValues[i][n];
+					counts[j]++;
+				}
+			}
+		}
+
+		BundleMethod userPhase = new BundleMethod(config.getUserPhaseLambda(), BMRM_GAMMA_TOL, BMRM_EPSILON_TOL,
+				BMRM_MAX_ITERATIONS);
+		BundleMethod moviePhase = new BundleMethod(config.getMoviePhaseLambda(), BMRM_GAMMA_TOL, BMRM_EPSILON_TOL,
+				BMRM_MAX_ITERATIONS);
+
+		double lastObjective = objective(loss, newU, newV, rowIndices, rowValues);
+		for (int iteration = 0; iteration < config.getMaxIterations(); iteration++) {
+			IntStream.range(0, numRows).parallel().forEach(i -> newU[i] = userPhase.minimize(
+					(w, gradient) -> factorRisk(loss, w, gradient, newV, rowIndices[i], rowValues[i]), newU[i]));
+
+			if (loss.isSeparable()) {
+				IntStream.range(0, numColumns).parallel().forEach(j -> newV[j] = moviePhase.minimize(
+						(w, gradient) -> factorRisk(loss, w, gradient, newU, columnIndices[j], columnValues[j]),
+						newV[j]));
+			} else {
+				double[] flatV = new double[numColumns * dimW];
+				for (int j = 0; j < numColumns; j++) {
+					System.arraycopy(newV[j], 0, flatV, j * dimW, dimW);
+				}
+				flatV = moviePhase.minimize(
+						(w, gradient) -> movieRisk(loss, w, gradient, newU, rowIndices, rowValues, numColumns), flatV);
+				for (int j = 0; j < numColumns; j++) {
+					System.arraycopy(flatV, j * dimW, newV[j], 0, dimW);
+				}
+			}
+
+			double objective = objective(loss, newU, newV, rowIndices, rowValues);
+			double progress = lastObjective == 0 ? 0 : (lastObjective - objective) / Math.abs(lastObjective);
+			logger.debug("Cofi iteration {}: objective {}", iteration, objective);
+			lastObjective = objective;
+
+			if (iteration + 1 >= minIterations && progress < config.getMinProgress()) {
+				break;
+			}
+		}
+
+		u = newU;
+		v = newV;
+	}
+
+	/**
+	 * The risk of a single factor (a row of U or, for separable losses, of V)
+	 * given the fixed factors of the other side.
+	 */
+	private double factorRisk(CofiLoss loss, double[] w, double[] gradient, double[][] fixed, int[] indices,
+			double[] values) {
+		double[] predictions = new double[indices.length];
+		for (int n = 0; n < indices.length; n++) {
+			predictions[n] = LinearAlgebra.dot(w, fixed[indices[n]]);
+		}
+
+		double[] lossGradient = new double[indices.length];
+		double risk = loss.lossAndGradient(predictions, values, lossGradient);
+
+		for (int n = 0; n < indices.length; n++) {
+			double[] factor = fixed[indices[n]];
+			for (int d = 0; d < w.length; d++) {
+				gradient[d] += lossGradient[n] * factor[d];
+			}
+		}
+		return risk;
+	}
+
+	private double movieRisk(CofiLoss loss, double[] flatV, double[] gradient, double[][] fixedU,
+			int[][] rowIndices, double[][] rowValues, int numColumns) {
+		int dimW = config.getDimW();
+		int numRows = fixedU.length;
+		int numChunks = Math.max(1, Math.min(numRows, numThreads * 4));
+
+		// each chunk of rows accumulates its own gradient; reduced in a fixed order
+		double[] chunkRisks = new double[numChunks];
+		double[][] chunkGradients = new double[numChunks][];
+		IntStream.range(0, numChunks).parallel().forEach(c -> {
+			double[] chunkGradient = new double[flatV.length];
+			double risk = 0;
+			for (int i = c * numRows / numChunks; i < (c + 1) * numRows / numChunks; i++) {
+				int[] indices = rowIndices[i];
+				double[] userFactor = fixedU[i];
+				double[] predictions = new double[indices.length];
+				for (int n = 0; n < indices.length; n++) {
+					int offset = indices[n] * dimW;
+					for (int d = 0; d < dimW; d++) {
+						predictions[n] += userFactor[d] * flatV[offset + d];
+					}
+				}
+
+				double[] lossGradient = new double[indices.length];
+				risk += loss.lossAndGradient(predictions, rowValues[i], lossGradient);
+				for (int n = 0; n < indices.length; n++) {
+					int offset = indices[n] * dimW;
+					for (int d = 0; d < dimW; d++) {
+						chunkGradient[offset + d] += lossGradient[n] * userFactor[d];
+					}
+				}
+			}
+			chunkRisks[c] = risk;
+			chunkGradients[c] = chunkGradient;
+		});
+
+		IntStream.range(0, numColumns).parallel().forEach(j -> {
+			for (int c = 0; c < numChunks; c++) {
+				for (int d = j * dimW; d < (j + 1) * dimW; d++) {
+					gradient[d] += chunkGradients[c][d];
+				}
+			}
+		});
+
+		double risk = 0;
+		for (int c = 0; c < numChunks; c++) {
+			risk += chunkRisks[c];
+		}
+		return risk;
+	}
+
+	private double objective(CofiLoss loss, double[][] currentU, double[][] currentV, int[][] rowIndices,
+			double[][] rowValues) {
+		double objective = 0;
+		for (double[] factor : currentV) {
+			objective += 0.5 * config.getMoviePhaseLambda() * LinearAlgebra.dot(factor, factor);
+		}
+		for (int i = 0; i < currentU.length; i++) {
+			double[] unusedGradient = new double[currentU[i].length];
+			objective += 0.5 * config.getUserPhaseLambda() * LinearAlgebra.dot(currentU[i], currentU[i]);
+			objective += factorRisk(loss, currentU[i], unusedGradient, currentV, rowIndices[i], rowValues[i]);
+		}
+		return objective;
+	}
+
+	@Override
+	public double[][] getU() throws MatrixCompleterException {
+		if (u == null) {
+			throw new MatrixCompleterException("No matrix has been completed yet.");
+		}
+		return u;
+	}
+
+	@Override
+	public double[][] getV() throws MatrixCompleterException {
+		if (v == null) {
+			throw new MatrixCompleterException("No matrix has been completed yet.");
+		}
+		return v;
+	}
+
+	public CofiConfig getConfig() {
+		return config;
+	}
+
+	public void setConfig(CofiConfig config) {
+		this.config = config;
+	}
+
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+}
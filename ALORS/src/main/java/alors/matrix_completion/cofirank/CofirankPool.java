@@ -0,0 +1,142 @@
+package alors.matrix_completion.cofirank;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import alors.matrix_completion.FactorizedMatrix;
+import alors.matrix_completion.SparseMatrix;
+
+/**
+ * Runs independent factorizations by the c++ implementation of cofirank,
+ * executing at most a fixed number of cofirank processes at once. Each run
+ * uses its own temporary workspace (see {@link CofirankCPlusPlus}), so runs
+ * with different configurations, e.g. of a hyperparameter sweep, or on
+ * different matrices can be submitted freely. Runs beyond the limit wait for a
+ * free slot in submission order. Cancelling the future of a run kills its
+ * process or, if it has not started yet, skips it.
+ *
+ * @author helegraf
+ *
+ */
+public class CofirankPool implements AutoCloseable {
+
+	// logging
+	private Logger logger = LoggerFactory.getLogger(CofirankPool.class);
+
+	private final int numProcesses;
+	private final ExecutorService executor;
+	private volatile String workspaceDirectory;
+	private volatile long timeoutMillis = 0;
+
+	/**
+	 * Creates a pool running one cofirank process per available processor.
+	 */
+	public CofirankPool() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a pool running at most the given number of cofirank processes at
+	 * once.
+	 *
+	 * @param numProcesses the maximum number of concurrent processes
+	 */
+	public CofirankPool(int numProcesses) {
+		if (numProcesses < 1) {
+			throw new IllegalArgumentException("At least one process is needed, got " + numProcesses);
+		}
+		this.numProcesses = numProcesses;
+
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(numProcesses, runnable -> {
+			Thread thread = new Thread(runnable, "cofirank-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Submits a factorization of the given matrix with the given configuration.
+	 * The file locations of the configuration are not used.
+	 *
+	 * @param config the configuration, must not be modified until the run has
+	 *               finished
+	 * @param matrix the matrix to be factorized
+	 * @return the factorization once cofirank has finished; completes
+	 *         exceptionally with a {@link CofiException} if the run fails or
+	 *         times out
+	 */
+	public CompletableFuture<FactorizedMatrix> submit(CofiConfig config, SparseMatrix matrix) {
+		return submit(config, matrix, null);
+	}
+
+	/**
+	 * Submits a factorization of the given matrix with the given configuration,
+	 * whose progress is reported to the given listener while it runs (see
+	 * {@link CofirankCPlusPlus#setIterationListener(CofiIterationListener)}).
+	 *
+	 * @param config   the configuration, must not be modified until the run has
+	 *                 finished
+	 * @param matrix   the matrix to be factorized
+	 * @param listener the listener of this run, null for none
+	 * @return the factorization once cofirank has finished; completes
+	 *         exceptionally with a {@link CofiException} if the run fails or
+	 *         times out, or a {@link CofiAbortedException} if the listener
+	 *         aborted it
+	 */
+	public CompletableFuture<FactorizedMatrix> submit(CofiConfig config, SparseMatrix matrix,
+			CofiIterationListener listener) {
+		CofirankCPlusPlus cofirank = new CofirankCPlusPlus(config);
+		cofirank.setIterationListener(listener);
+		cofirank.setWorkspaceDirectory(workspaceDirectory);
+		cofirank.setTimeoutMillis(timeoutMillis);
+		logger.debug("Submitting cofirank run for a {}x{} matrix", matrix.getNumRows(), matrix.getNumColumns());
+		return cofirank.factorizeAsync(matrix, executor);
+	}
+
+	/**
+	 * Stops accepting runs; submitted runs are still executed.
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+	public int getNumProcesses() {
+		return numProcesses;
+	}
+
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	/**
+	 * Sets the timeout of subsequently submitted runs, see
+	 * {@link CofirankCPlusPlus#setTimeoutMillis(long)}.
+	 *
+	 * @param timeoutMillis the timeout in milliseconds, 0 for no timeout
+	 */
+	public void setTimeoutMillis(long timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	public String getWorkspaceDirectory() {
+		return workspaceDirectory;
+	}
+
+	/**
+	 * Sets the directory the temporary workspaces of subsequently submitted runs
+	 * are created in.
+	 *
+	 * @param workspaceDirectory an existing directory, or null for the default
+	 *                           temporary-file directory
+	 */
+	public void setWorkspaceDirectory(String workspaceDirectory) {
+		this.workspaceDirectory = workspaceDirectory;
+	}
+}
@@ -0,0 +1,269 @@
+package alors.matrix_completion.cofirank;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Parses the dense matrices written by cofirank (U.lsvm, M.lsvm, F.lsvm), one
+ * line of <code>index:value</code> pairs per row, into a preallocated matrix
+ * of known dimensions. The file is memory mapped in windows and parsed byte by
+ * byte; tokens may span window boundaries. Apart from the mapping, no objects
+ * are created per row or entry unless a value cannot be parsed by the fast
+ * path (more than 15 significant digits, large exponents, nan or inf).
+ *
+ * <p>
+ * Instances are not thread safe.
+ *
+ * @author helegraf
+ *
+ */
+class LSVMReader {
+
+	private static final long DEFAULT_WINDOW_SIZE = 64L << 20;
+
+	// the largest token accepted as a value
+	private static final int MAX_TOKEN_LENGTH = 64;
+
+	// doubles represent these powers of ten and all integers up to 2^53 exactly
+	private static final double[] POWERS_OF_TEN = new double[23];
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int p = 1; p < POWERS_OF_TEN.length; p++) {
+			POWERS_OF_TEN[p] = POWERS_OF_TEN[p - 1] * 10;
+		}
+	}
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	private enum State {
+		BETWEEN_ENTRIES, INDEX, VALUE
+	}
+
+	private final long windowSize;
+	private final byte[] token = new byte[MAX_TOKEN_LENGTH];
+
+	// parser state
+	private State state;
+	private int tokenLength;
+	private int row;
+	private int column;
+	private double[][] target;
+
+	/**
+	 * Creates a reader mapping files in windows of 64 MB.
+	 */
+	LSVMReader() {
+		this(DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Creates a reader mapping files in windows of the given size.
+	 *
+	 * @param windowSize the number of bytes mapped at once
+	 */
+	LSVMReader(long windowSize) {
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Reads the given file into a new matrix of the given dimensions.
+	 *
+	 * @param path       the file
+	 * @param numRows    the expected number of rows
+	 * @param numColumns the expected number of entries of each row
+	 * @return the matrix
+	 * @throws IOException if the file cannot be read, is malformed or its
+	 *                     dimensions differ from the expected ones
+	 */
+	static double[][] read(Path path, int numRows, int numColumns) throws IOException {
+		double[][] matrix = new double[numRows][numColumns];
+		new LSVMReader().read(path, matrix);
+		return matrix;
+	}
+
+	/**
+	 * Reads the given file into the given matrix, which defines the expected
+	 * dimensions.
+	 *
+	 * @param path   the file
+	 * @param matrix the matrix to fill
+	 * @throws IOException if the file cannot be read, is malformed or its
+	 *                     dimensions differ from the matrix
+	 */
+	void read(Path path, double[][] matrix) throws IOException {
+		target = matrix;
+		state = State.BETWEEN_ENTRIES;
+		tokenLength = 0;
+		row = 0;
+		column = 0;
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			for (long position = 0; position < size; position += windowSize) {
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+						Math.min(windowSize, size - position));
+				while (window.hasRemaining()) {
+					accept(window.get());
+				}
+			}
+		}
+		accept((byte) '\n');
+
+		if (row != matrix.length) {
+			throw new IOException(String.format("Expected %d rows in %s but found %d.", matrix.length, path, row));
+		}
+	}
+
+	private void accept(byte b) throws IOException {
+		switch (b) {
+		case '\n':
+			endEntry();
+			if (column > 0) {
+				if (column != target[row].length) {
+					throw new IOException(String.format("Expected %d entries in row %d but found %d.",
+							target[row].length, row + 1, column));
+				}
+				row++;
+				column = 0;
+			}
+			return;
+		case ' ':
+		case '\t':
+		case '\r':
+			endEntry();
+			return;
+		case ':':
+			if (state != State.INDEX) {
+				throw new IOException(String.format("Unexpected ':' in row %d.", row + 1));
+			}
+			state = State.VALUE;
+			tokenLength = 0;
+			return;
+		default:
+			break;
+		}
+
+		switch (state) {
+		case BETWEEN_ENTRIES:
+			if (row >= target.length) {
+				throw new IOException(String.format("Expected only %d rows.", target.length));
+			}
+			checkIndexDigit(b);
+			state = State.INDEX;
+			return;
+		case INDEX:
+			checkIndexDigit(b);
+			return;
+		default:
+			if (tokenLength == MAX_TOKEN_LENGTH) {
+				throw new IOException(String.format("Malformed value in row %d.", row + 1));
+			}
+			token[tokenLength++] = b;
+		}
+	}
+
+	private void checkIndexDigit(byte b) throws IOException {
+		if (b < '0' || b > '9') {
+			throw new IOException(String.format("Malformed index in row %d.", row + 1));
+		}
+	}
+
+	private void endEntry() throws IOException {
+		if (state == State.BETWEEN_ENTRIES) {
+			return;
+		}
+		if (state == State.INDEX || tokenLength == 0) {
+			throw new IOException(String.format("Entry without value in row %d.", row + 1));
+		}
+		if (column >= target[row].length) {
+			throw new IOException(String.format("Expected only %d entries in row %d.", target[row].length, row + 1));
+		}
+		target[row][column++] = parseDouble(token, tokenLength);
+		state = State.BETWEEN_ENTRIES;
+	}
+
+	/**
+	 * Parses a decimal number; exact whenever both the digits and the power of ten
+	 * are exactly representable as doubles (as then a single multiplication or
+	 * division is correctly rounded), otherwise delegates to
+	 * {@link Double#parseDouble(String)}.
+	 */
+	static double parseDouble(byte[] bytes, int length) throws IOException {
+		int position = 0;
+		boolean negative = false;
+		if (position < length && (bytes[position] == '-' || bytes[position] == '+')) {
+			negative = bytes[position++] == '-';
+		}
+
+		long mantissa = 0;
+		int exponent = 0;
+		int digits = 0;
+		boolean fraction = false;
+		boolean exact = true;
+		for (; position < length; position++) {
+			byte b = bytes[position];
+			if (b >= '0' && b <= '9') {
+				if (mantissa < MAX_EXACT_MANTISSA / 10) {
+					mantissa = mantissa * 10 + (b - '0');
+					if (fraction) {
+						exponent--;
+					}
+				} else {
+					exact = false;
+				}
+				digits++;
+			} else if (b == '.' && !fraction) {
+				fraction = true;
+			} else {
+				break;
+			}
+		}
+
+		if (position < length && (bytes[position] == 'e' || bytes[position] == 'E')) {
+			position++;
+			boolean negativeExponent = false;
+			if (position < length && (bytes[position] == '-' || bytes[position] == '+')) {
+				negativeExponent = bytes[position++] == '-';
+			}
+			int explicitExponent = 0;
+			int start = position;
+			for (; position < length && bytes[position] >= '0' && bytes[position] <= '9'; position++) {
+				explicitExponent = Math.min(explicitExponent * 10 + (bytes[position] - '0'), 100_000);
+			}
+			if (position == start) {
+				return parseSlow(bytes, length);
+			}
+			exponent += negativeExponent ? -explicitExponent : explicitExponent;
+		}
+
+		if (position != length || digits == 0 || !exact || Math.abs(exponent) >= POWERS_OF_TEN.length) {
+			return parseSlow(bytes, length);
+		}
+
+		double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+		return negative ? -value : value;
+	}
+
+	private static double parseSlow(byte[] bytes, int length) throws IOException {
+		String text = new String(bytes, 0, length, StandardCharsets.US_ASCII).trim();
+		String lower = text.toLowerCase(Locale.ROOT);
+		boolean negative = lower.startsWith("-");
+		String unsigned = negative || lower.startsWith("+") ? lower.substring(1) : lower;
+		if (unsigned.equals("nan")) {
+			return Double.NaN;
+		}
+		if (unsigned.equals("inf") || unsigned.equals("infinity")) {
+			return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+		}
+
+		try {
+			return Double.parseDouble(text);
+		} catch (NumberFormatException e) {
+			throw new IOException("Malformed value " + text, e);
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package alors.matrix_completion.cofirank;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import alors.matrix_completion.SparseMatrix;
+
+/**
+ * Streams a sparse matrix into the (1-based, sparse) LSVM format read by
+ * cofirank, one line of <code>column:value</code> pairs per row. Numbers are
+ * encoded directly into a large direct buffer that is written to a file
+ * channel, without creating intermediate strings in the fixed precision mode.
+ *
+ * <p>
+ * Values are written either with a fixed number of decimals or, with
+ * {@link CofiConfig#LOSSLESS_PRECISION}, by {@link Double#toString(double)}.
+ * With a fixed number of decimals n, the value is multiplied by 10^n in double
+ * arithmetic and rounded half up. The output equals
+ * <code>String.format(Locale.ROOT, "%d:%.nf ", ...)</code>, except for values
+ * whose scaled value is within its rounding error of a half, where the last
+ * decimal may be one lower or higher (e.g. 1.005 with two decimals is written
+ * as 1.00, while <code>String.format</code> gives 1.01). The lossless
+ * representation parses back to the same double, but before JDK 19 it is not
+ * always the shortest one, and it uses scientific notation (e.g. 1.0E-4) for
+ * magnitudes below 10^-3 or from 10^7 on.
+ *
+ * @author helegraf
+ *
+ */
+class LSVMWriter implements Closeable {
+
+	static final int MAX_PRECISION = 15;
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	// a column index and the plain expansion of any double (up to 309 integer digits)
+	private static final int MAX_ENTRY_LENGTH = 512;
+
+	// beyond this, scaled values no longer fit a long exactly
+	private static final double MAX_SCALED = 1e17;
+
+	private static final long[] POWERS_OF_TEN = new long[MAX_PRECISION + 1];
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int p = 1; p <= MAX_PRECISION; p++) {
+			POWERS_OF_TEN[p] = POWERS_OF_TEN[p - 1] * 10;
+		}
+	}
+
+	private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final byte[] digits = new byte[MAX_ENTRY_LENGTH];
+	private final int precision;
+
+	/**
+	 * Opens (and truncates) the given file for writing.
+	 *
+	 * @param path      the file to write to
+	 * @param precision the number of decimals between 0 and
+	 *                  {@value #MAX_PRECISION}, or
+	 *                  {@link CofiConfig#LOSSLESS_PRECISION}
+	 * @throws IOException if the file cannot be opened
+	 */
+	LSVMWriter(Path path, int precision) throws IOException {
+		if ((precision < 0 || precision > MAX_PRECISION) && precision != CofiConfig.LOSSLESS_PRECISION) {
+			throw new IllegalArgumentException("Unsupported precision " + precision);
+		}
+		this.precision = precision;
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	/**
+	 * Writes the given matrix to the given file.
+	 *
+	 * @param path      the file to write to
+	 * @param matrix    the matrix
+	 * @param precision the number of decimals, see
+	 *                  {@link #LSVMWriter(Path, int)}
+	 * @throws IOException if the file cannot be written
+	 */
+	static void write(Path path, SparseMatrix matrix, int precision) throws IOException {
+		try (LSVMWriter writer = new LSVMWriter(path, precision)) {
+			writer.write(matrix);
+		}
+	}
+
+	/**
+	 * Appends all rows of the given matrix.
+	 *
+	 * @param matrix the matrix
+	 * @throws IOException if writing fails
+	 */
+	void write(SparseMatrix matrix) throws IOException {
+		int[] rowPointers = matrix.getRowPointers();
+		int[] columnIndices = matrix.getColumnIndices();
+		double[] values = matrix.getValues();
+		for (int i = 0; i < matrix.getNumRows(); i++) {
+			for (int n = rowPointers[i]; n < rowPointers[i + 1]; n++) {
+				writeEntry(columnIndices[n], values[n]);
+			}
+			endRow();
+		}
+	}
+
+	/**
+	 * Appends an entry to the current row.
+	 *
+	 * @param column the (0-based) column of the entry
+	 * @param value  the value of the entry
+	 * @throws IOException if writing fails
+	 */
+	void writeEntry(int column, double value) throws IOException {
+		ensureRemaining(MAX_ENTRY_LENGTH);
+
+		int length = appendLong(digits, 0, column + 1L);
+		digits[length++] = ':';
+		// Double.toString round-trips, possibly in scientific notation
+		if (precision == CofiConfig.LOSSLESS_PRECISION || Double.isNaN(value) || Double.isInfinite(value)) {
+			length = appendAscii(digits, length, Double.toString(value));
+		} else {
+			length = appendFixed(digits, length, value);
+		}
+		digits[length++] = ' ';
+		buffer.put(digits, 0, length);
+	}
+
+	/**
+	 * Ends the current row.
+	 *
+	 * @throws IOException if writing fails
+	 */
+	void endRow() throws IOException {
+		ensureRemaining(LINE_SEPARATOR.length);
+		buffer.put(LINE_SEPARATOR);
+	}
+
+	private int appendFixed(byte[] target, int offset, double value) {
+		double scaled = Math.abs(value) * POWERS_OF_TEN[precision];
+		if (scaled >= MAX_SCALED) {
+			return appendAscii(target, offset,
+					BigDecimal.valueOf(value).setScale(precision, RoundingMode.HALF_UP).toPlainString());
+		}
+
+		// like %f, negative values (including -0.0) keep their sign after rounding
+		if (Double.doubleToRawLongBits(value) < 0) {
+			target[offset++] = '-';
+		}
+		long rounded = Math.round(scaled);
+		offset = appendLong(target, offset, rounded / POWERS_OF_TEN[precision]);
+		if (precision > 0) {
+			target[offset++] = '.';
+			long fraction = rounded % POWERS_OF_TEN[precision];
+			for (int p = precision - 1; p >= 0; p--) {
+				target[offset + p] = (byte) ('0' + fraction % 10);
+				fraction /= 10;
+			}
+			offset += precision;
+		}
+		return offset;
+	}
+
+	private static int appendLong(byte[] target, int offset, long value) {
+		int length = 1;
+		for (long rest = value / 10; rest > 0; rest /= 10) {
+			length++;
+		}
+		for (int p = offset + length - 1; p >= offset; p--) {
+			target[p] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		return offset + length;
+	}
+
+	private static int appendAscii(byte[] target, int offset, String text) {
+		for (int c = 0; c < text.length(); c++) {
+			target[offset++] = (byte) text.charAt(c);
+		}
+		return offset;
+	}
+
+	private void ensureRemaining(int length) throws IOException {
+		if (buffer.remaining() < length) {
+			flush();
+		}
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+}
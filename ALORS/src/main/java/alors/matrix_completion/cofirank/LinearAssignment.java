@@ -0,0 +1,87 @@
+package alors.matrix_completion.cofirank;
+
+import java.util.Arrays;
+
+/**
+ * Solves the linear assignment problem with the Hungarian method in
+ * <code>O(n^3)</code>, as needed for the NDCG loss of cofirank.
+ *
+ * @author helegraf
+ *
+ */
+final class LinearAssignment {
+
+	private LinearAssignment() {
+		// static utility class
+	}
+
+	/**
+	 * Finds an assignment of rows to columns of the given square cost matrix that
+	 * minimizes the total cost.
+	 *
+	 * @param cost the square cost matrix
+	 * @return for each row the index of the column it is assigned to
+	 */
+	static int[] minimize(double[][] cost) {
+		int n = cost.length;
+
+		// potentials and matching use 1-based indices, 0 is a virtual column
+		double[] rowPotential = new double[n + 1];
+		double[] columnPotential = new double[n + 1];
+		int[] columnMatch = new int[n + 1];
+		int[] way = new int[n + 1];
+		double[] minSlack = new double[n + 1];
+		boolean[] used = new boolean[n + 1];
+
+		for (int row = 1; row <= n; row++) {
+			columnMatch[0] = row;
+			int column = 0;
+			Arrays.fill(minSlack, Double.POSITIVE_INFINITY);
+			Arrays.fill(used, false);
+
+			do {
+				used[column] = true;
+				int matchedRow = columnMatch[column];
+				double delta = Double.POSITIVE_INFINITY;
+				int nextColumn = 0;
+
+				for (int j = 1; j <= n; j++) {
+					if (!used[j]) {
+						double slack = cost[matchedRow - 1][j - 1] - rowPotential[matchedRow] - columnPotential[j];
+						if (slack < minSlack[j]) {
+							minSlack[j] = slack;
+							way[j] = column;
+						}
+						if (minSlack[j] < delta) {
+							delta = minSlack[j];
+							nextColumn = j;
+						}
+					}
+				}
+
+				for (int j = 0; j <= n; j++) {
+					if (used[j]) {
+						rowPotential[columnMatch[j]] += delta;
+						columnPotential[j] -= delta;
+					} else {
+						minSlack[j] -= delta;
+					}
+				}
+				column = nextColumn;
+			} while (columnMatch[column] != 0);
+
+			// augment along the found path
+			do {
+				int previousColumn = way[column];
+				columnMatch[column] = columnMatch[previousColumn];
+				column = previousColumn;
+			} while (column != 0);
+		}
+
+		int[] assignment = new int[n];
+		for (int j = 1; j <= n; j++) {
+			assignment[columnMatch[j] - 1] = j - 1;
+		}
+		return assignment;
+	}
+}
@@ -0,0 +1,93 @@
+package alors.matrix_completion.cofirank;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * The convex upper bound on <code>1 - NDCG@k</code> of cofirank [0]:
+ * <code>l(f, y) = max_pi [ delta(pi, y) + &lt;c_pi - c_pi_y, f&gt; ]</code>,
+ * where pi ranges over permutations (positions of the items),
+ * <code>pi_y</code> is the ranking induced by the true values and
+ * <code>c_r = (r + 1)^exponent</code> is a decreasing score per position. The
+ * maximizing permutation is found as a linear assignment problem.
+ *
+ * <p>
+ * [0] Weimer, Markus, et al. "Cofi rank-maximum margin matrix factorization for
+ * collaborative ranking." Advances in neural information processing systems.
+ * 2008.
+ *
+ * @author helegraf
+ *
+ */
+class NDCGLoss implements CofiLoss {
+
+	private final int k;
+	private final double exponent;
+
+	/**
+	 * Creates a new NDCG loss.
+	 *
+	 * @param k        the truncation of the NDCG (only the top k positions count)
+	 * @param exponent the exponent for the position scores, should be negative
+	 */
+	NDCGLoss(int k, double exponent) {
+		this.k = k;
+		this.exponent = exponent;
+	}
+
+	@Override
+	public double lossAndGradient(double[] predictions, double[] truth, double[] gradient) {
+		int n = predictions.length;
+		if (n == 0) {
+			return 0;
+		}
+
+		// position scores and discounts
+		double[] c = new double[n];
+		double[] discount = new double[n];
+		for (int r = 0; r < n; r++) {
+			c[r] = Math.pow(r + 1, exponent);
+			discount[r] = r < k ? 1 / (Math.log(r + 2) / Math.log(2)) : 0;
+		}
+
+		// ideal ranking, its dcg and the gains
+		Integer[] byTruth = IntStream.range(0, n).boxed().toArray(Integer[]::new);
+		Arrays.sort(byTruth, Comparator.comparingDouble((Integer i) -> -truth[i]));
+		int[] idealPosition = new int[n];
+		double[] gain = new double[n];
+		double idealDcg = 0;
+		for (int r = 0; r < n; r++) {
+			int item = byTruth[r];
+			idealPosition[item] = r;
+			gain[item] = Math.pow(2, truth[item]) - 1;
+			idealDcg += gain[item] * discount[r];
+		}
+
+		if (idealDcg <= 0) {
+			Arrays.fill(gradient, 0);
+			return 0;
+		}
+
+		// most violating permutation: maximize sum_i c_pi(i) f_i - gain_i D(pi(i)) / idcg
+		double[][] cost = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			double normalizedGain = gain[i] / idealDcg;
+			for (int r = 0; r < n; r++) {
+				cost[i][r] = normalizedGain * discount[r] - c[r] * predictions[i];
+			}
+		}
+		int[] position = LinearAssignment.minimize(cost);
+
+		double loss = 1;
+		for (int i = 0; i < n; i++) {
+			loss -= gain[i] / idealDcg * discount[position[i]];
+			gradient[i] = c[position[i]] - c[idealPosition[i]];
+			loss += gradient[i] * predictions[i];
+		}
+
+		// numerically, the ideal permutation gives a lower bound of zero
+		return Math.max(loss, 0);
+	}
+
+}
@@ -0,0 +1,27 @@
+package alors.matrix_completion.cofirank;
+
+/**
+ * The squared error loss <code>0.5 * sum (f_i - y_i)^2</code>.
+ *
+ * @author helegraf
+ *
+ */
+class RegressionLoss implements CofiLoss {
+
+	@Override
+	public double lossAndGradient(double[] predictions, double[] truth, double[] gradient) {
+		double loss = 0;
+		for (int i = 0; i < predictions.length; i++) {
+			double difference = predictions[i] - truth[i];
+			gradient[i] = difference;
+			loss += difference * difference;
+		}
+		return 0.5 * loss;
+	}
+
+	@Override
+	public boolean isSeparable() {
+		return true;
+	}
+
+}
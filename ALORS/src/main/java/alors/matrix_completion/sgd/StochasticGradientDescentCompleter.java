@@ -0,0 +1,509 @@
+package alors.matrix_completion.sgd;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import alors.matrix_completion.FactorizedMatrix;
+import alors.matrix_completion.MatrixCompleterException;
+import alors.matrix_completion.ModelBasedMatrixCompleter;
+import alors.matrix_completion.ObservedEntries;
+import alors.matrix_completion.SparseMatrix;
+
+/**
+ * A pure java matrix completer factorizing the observed entries into U and V by
+ * parallel stochastic gradient descent on the regularized squared error.
+ * Intended for very large matrices given as {@link ObservedEntries}, where even
+ * an epoch of alternating least squares is too expensive.
+ *
+ * <p>
+ * Two modes of parallelization are supported: {@link ParallelMode#HOGWILD} [0],
+ * where all threads update the shared factors without any locking, and
+ * {@link ParallelMode#STRATIFIED} [1], where rows and columns are split into as
+ * many blocks as there are threads and each sub-epoch processes blocks that
+ * share neither rows nor columns, so that results are deterministic for a
+ * given seed and number of threads.
+ *
+ * <p>
+ * [0] Recht, Benjamin, et al. "Hogwild: A lock-free approach to parallelizing
+ * stochastic gradient descent." Advances in neural information processing
+ * systems. 2011.
+ *
+ * <p>
+ * [1] Gemulla, Rainer, et al. "Large-scale matrix factorization with
+ * distributed stochastic gradient descent." Proceedings of the 17th ACM SIGKDD
+ * international conference on Knowledge discovery and data mining. 2011.
+ *
+ * @author helegraf
+ *
+ */
+public class StochasticGradientDescentCompleter implements ModelBasedMatrixCompleter {
+
+	/**
+	 * How the entries of an epoch are distributed among threads.
+	 */
+	public enum ParallelMode {
+		/** lock-free updates of shared factors, not deterministic */
+		HOGWILD,
+		/** stratified blocks without conflicting updates, deterministic */
+		STRATIFIED
+	}
+
+	/**
+	 * How the learning rate changes over epochs.
+	 */
+	public enum LearningRateSchedule {
+		/** the learning rate stays the same */
+		CONSTANT,
+		/** the learning rate decays as <code>rate / (1 + decay * epoch)</code> */
+		INVERSE_TIME,
+		/** the rate grows by 5% after improving epochs and is halved otherwise */
+		BOLD_DRIVER
+	}
+
+	// logging
+	private Logger logger = LoggerFactory.getLogger(StochasticGradientDescentCompleter.class);
+
+	// options
+	private int dimW = 10;
+	private double lambda = 0.02;
+	private double learningRate = 0.005;
+	private double decay = 0.1;
+	private LearningRateSchedule schedule = LearningRateSchedule.BOLD_DRIVER;
+	private ParallelMode parallelMode = ParallelMode.HOGWILD;
+	private double minProgress = 1e-4;
+	private int minEpochs = 3;
+	private int warmStartMinEpochs = 1;
+	private int maxEpochs = 100;
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+	private long seed = 0;
+
+	// results, row-major (row * dimW + latent dimension)
+	private int numRows;
+	private int numColumns;
+	private double[] u;
+	private double[] v;
+
+	@Override
+	public double[][] complete(double[][] matrix) throws MatrixCompleterException {
+		return complete(ObservedEntries.fromDense(matrix));
+	}
+
+	@Override
+	public double[][] complete(SparseMatrix matrix) throws MatrixCompleterException {
+		return complete(matrix.toObservedEntries());
+	}
+
+	@Override
+	public FactorizedMatrix factorize(SparseMatrix matrix) throws MatrixCompleterException {
+		train(matrix.toObservedEntries());
+		return new FactorizedMatrix(getU(), getV());
+	}
+
+	@Override
+	public FactorizedMatrix factorize(SparseMatrix matrix, FactorizedMatrix initialization)
+			throws MatrixCompleterException {
+		train(matrix.toObservedEntries(), initialization);
+		return new FactorizedMatrix(getU(), getV());
+	}
+
+	/**
+	 * Estimate missing values for the matrix of the given observed entries.
+	 *
+	 * @param entries the observed entries of the matrix to be completed
+	 * @return an estimate of the matrix completion
+	 * @throws MatrixCompleterException if the matrix cannot be completed
+	 */
+	public double[][] complete(ObservedEntries entries) throws MatrixCompleterException {
+		train(entries);
+
+		double[][] result = new double[numRows][numColumns];
+		for (int i = 0; i < numRows; i++) {
+			for (int j = 0; j < numColumns; j++) {
+				result[i][j] = predict(u, v, i, j);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Factorizes the matrix of the given observed entries without computing the
+	 * completed matrix; the factors are available via {@link #getU()} and
+	 * {@link #getV()} afterwards.
+	 *
+	 * @param entries the observed entries
+	 * @throws MatrixCompleterException if the factorization fails or diverges
+	 */
+	public void train(ObservedEntries entries) throws MatrixCompleterException {
+		train(entries, null);
+	}
+
+	/**
+	 * Factorizes the matrix of the given observed entries like
+	 * {@link #train(ObservedEntries)}, starting from the given factors as far as
+	 * they cover the matrix (see
+	 * {@link #factorize(SparseMatrix, FactorizedMatrix)}).
+	 *
+	 * @param entries        the observed entries
+	 * @param initialization the factors to start from, null for a cold start
+	 * @throws MatrixCompleterException if the factorization fails or diverges or
+	 *                                  the initialization does not fit
+	 */
+	public void train(ObservedEntries entries, FactorizedMatrix initialization) throws MatrixCompleterException {
+		int size = entries.size();
+		if (size == 0) {
+			throw new MatrixCompleterException("Cannot complete a matrix without observed entries.");
+		}
+
+		double mean = 0;
+		for (int n = 0; n < size; n++) {
+			mean += entries.getValue(n);
+		}
+		mean /= size;
+
+		// initialize the factors such that U * V^T starts roughly around the mean
+		Random random = new Random(seed);
+		double scale = FactorizedMatrix.initialScale(mean, dimW);
+		double[] newU = new double[entries.getNumRows() * dimW];
+		double[] newV = new double[entries.getNumColumns() * dimW];
+		for (int k = 0; k < newU.length; k++) {
+			newU[k] = scale * (0.5 + random.nextDouble());
+		}
+		for (int k = 0; k < newV.length; k++) {
+			newV[k] = scale * (0.5 + random.nextDouble());
+		}
+		if (initialization != null) {
+			copyRows(initialization.getU(), newU);
+			copyRows(initialization.getV(), newV);
+		}
+		int requiredEpochs = initialization == null ? minEpochs : warmStartMinEpochs;
+
+		int[] order = new int[size];
+		for (int n = 0; n < size; n++) {
+			order[n] = n;
+		}
+		int[][] blocks = parallelMode == ParallelMode.STRATIFIED ? createBlocks(entries) : null;
+
+		logger.debug("Running {} SGD on {} observed entries with {} threads", parallelMode, size, numThreads);
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		try {
+			double rate = learningRate;
+			double lastLoss = Double.POSITIVE_INFINITY;
+			for (int epoch = 0; epoch < maxEpochs; epoch++) {
+				if (schedule == LearningRateSchedule.INVERSE_TIME) {
+					rate = learningRate / (1 + decay * epoch);
+				}
+
+				if (parallelMode == ParallelMode.STRATIFIED) {
+					runStratifiedEpoch(pool, entries, blocks, newU, newV, rate, epoch);
+				} else {
+					shuffle(order, random);
+					runHogwildEpoch(pool, entries, order, newU, newV, rate);
+				}
+
+				double loss = computeRmse(pool, entries, newU, newV);
+				if (Double.isNaN(loss) || Double.isInfinite(loss)) {
+					throw new MatrixCompleterException("SGD diverged, the learning rate is too large.");
+				}
+				double progress = (lastLoss - loss) / loss;
+				logger.debug("SGD epoch {}: learning rate {}, training rmse {}", epoch, rate, loss);
+
+				if (schedule == LearningRateSchedule.BOLD_DRIVER) {
+					rate *= progress >= 0 ? 1.05 : 0.5;
+				}
+				lastLoss = Math.min(lastLoss, loss);
+
+				// the bold driver reacts to a worse epoch by lowering the rate instead
+				boolean converged = progress < minProgress
+						&& (progress >= 0 || schedule != LearningRateSchedule.BOLD_DRIVER);
+				if (epoch + 1 >= requiredEpochs && converged) {
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MatrixCompleterException("SGD run interrupted", e);
+		} catch (ExecutionException e) {
+			throw new MatrixCompleterException("SGD run failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		numRows = entries.getNumRows();
+		numColumns = entries.getNumColumns();
+		u = newU;
+		v = newV;
+	}
+
+	private void copyRows(double[][] from, double[] to) throws MatrixCompleterException {
+		int rows = Math.min(from.length, to.length / dimW);
+		for (int i = 0; i < rows; i++) {
+			if (from[i].length != dimW) {
+				throw new MatrixCompleterException(String
+						.format("The initialization has %d latent features, expected %d.", from[i].length, dimW));
+			}
+			System.arraycopy(from[i], 0, to, i * dimW, dimW);
+		}
+	}
+
+	private void runHogwildEpoch(ExecutorService pool, ObservedEntries entries, int[] order, double[] sharedU,
+			double[] sharedV, double rate) throws InterruptedException, ExecutionException {
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int t = 0; t < numThreads; t++) {
+			int start = (int) ((long) t * order.length / numThreads);
+			int end = (int) ((long) (t + 1) * order.length / numThreads);
+			tasks.add(() -> {
+				for (int k = start; k < end; k++) {
+					int n = order[k];
+					update(sharedU, sharedV, entries.getRow(n), entries.getColumn(n), entries.getValue(n), rate);
+				}
+				return null;
+			});
+		}
+		invokeAll(pool, tasks);
+	}
+
+	private void runStratifiedEpoch(ExecutorService pool, ObservedEntries entries, int[][] blocks, double[] sharedU,
+			double[] sharedV, double rate, int epoch) throws InterruptedException, ExecutionException {
+		int numBlocks = numThreads;
+		for (int stratum = 0; stratum < numBlocks; stratum++) {
+			List<Callable<Void>> tasks = new ArrayList<>();
+			for (int rowBlock = 0; rowBlock < numBlocks; rowBlock++) {
+				int blockIndex = rowBlock * numBlocks + (rowBlock + stratum) % numBlocks;
+				int[] block = blocks[blockIndex];
+				long blockSeed = seed + (long) epoch * blocks.length + blockIndex;
+				tasks.add(() -> {
+					shuffle(block, new Random(blockSeed));
+					for (int n : block) {
+						update(sharedU, sharedV, entries.getRow(n), entries.getColumn(n), entries.getValue(n), rate);
+					}
+					return null;
+				});
+			}
+			invokeAll(pool, tasks);
+		}
+	}
+
+	/**
+	 * Groups the entries by (row block, column block), such that the blocks of a
+	 * stratum (row block b, column block (b + s) mod T) share no rows or columns.
+	 */
+	private int[][] createBlocks(ObservedEntries entries) {
+		int numBlocks = numThreads;
+		int[] counts = new int[numBlocks * numBlocks];
+		int[] blockOfEntry = new int[entries.size()];
+		for (int n = 0; n < entries.size(); n++) {
+			int rowBlock = (int) ((long) entries.getRow(n) * numBlocks / entries.getNumRows());
+			int columnBlock = (int) ((long) entries.getColumn(n) * numBlocks / entries.getNumColumns());
+			blockOfEntry[n] = rowBlock * numBlocks + columnBlock;
+			counts[blockOfEntry[n]]++;
+		}
+
+		int[][] blocks = new int[counts.length][];
+		for (int b = 0; b < counts.length; b++) {
+			blocks[b] = new int[counts[b]];
+			counts[b] = 0;
+		}
+		for (int n = 0; n < entries.size(); n++) {
+			int b = blockOfEntry[n];
+			blocks[b][counts[b]++] = n;
+		}
+		return blocks;
+	}
+
+	private void update(double[] sharedU, double[] sharedV, int row, int column, double value, double rate) {
+		int uOffset = row * dimW;
+		int vOffset = column * dimW;
+		double error = value - predict(sharedU, sharedV, row, column);
+		for (int k = 0; k < dimW; k++) {
+			double uk = sharedU[uOffset + k];
+			double vk = sharedV[vOffset + k];
+			sharedU[uOffset + k] = uk + rate * (error * vk - lambda * uk);
+			sharedV[vOffset + k] = vk + rate * (error * uk - lambda * vk);
+		}
+	}
+
+	private double predict(double[] factorsU, double[] factorsV, int row, int column) {
+		int uOffset = row * dimW;
+		int vOffset = column * dimW;
+		double prediction = 0;
+		for (int k = 0; k < dimW; k++) {
+			prediction += factorsU[uOffset + k] * factorsV[vOffset + k];
+		}
+		return prediction;
+	}
+
+	private double computeRmse(ExecutorService pool, ObservedEntries entries, double[] factorsU, double[] factorsV)
+			throws InterruptedException, ExecutionException {
+		List<Callable<Double>> tasks = new ArrayList<>();
+		for (int t = 0; t < numThreads; t++) {
+			int start = (int) ((long) t * entries.size() / numThreads);
+			int end = (int) ((long) (t + 1) * entries.size() / numThreads);
+			tasks.add(() -> {
+				double sum = 0;
+				for (int n = start; n < end; n++) {
+					double error = entries.getValue(n)
+							- predict(factorsU, factorsV, entries.getRow(n), entries.getColumn(n));
+					sum += error * error;
+				}
+				return sum;
+			});
+		}
+
+		double sum = 0;
+		for (Future<Double> future : pool.invokeAll(tasks)) {
+			sum += future.get();
+		}
+		return Math.sqrt(sum / entries.size());
+	}
+
+	private static <T> void invokeAll(ExecutorService pool, List<Callable<T>> tasks)
+			throws InterruptedException, ExecutionException {
+		for (Future<T> future : pool.invokeAll(tasks)) {
+			future.get();
+		}
+	}
+
+	private static void shuffle(int[] array, Random random) {
+		for (int i = array.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = array[i];
+			array[i] = array[j];
+			array[j] = swap;
+		}
+	}
+
+	@Override
+	public double[][] getU() throws MatrixCompleterException {
+		if (u == null) {
+			throw new MatrixCompleterException("No matrix has been completed yet.");
+		}
+		return toMatrix(u, numRows);
+	}
+
+	@Override
+	public double[][] getV() throws MatrixCompleterException {
+		if (v == null) {
+			throw new MatrixCompleterException("No matrix has been completed yet.");
+		}
+		return toMatrix(v, numColumns);
+	}
+
+	private double[][] toMatrix(double[] factors, int count) {
+		double[][] matrix = new double[count][dimW];
+		for (int i = 0; i < count; i++) {
+			System.arraycopy(factors, i * dimW, matrix[i], 0, dimW);
+		}
+		return matrix;
+	}
+
+	public int getDimW() {
+		return dimW;
+	}
+
+	public void setDimW(int dimW) {
+		this.dimW = dimW;
+	}
+
+	public double getLambda() {
+		return lambda;
+	}
+
+	public void setLambda(double lambda) {
+		this.lambda = lambda;
+	}
+
+	public double getLearningRate() {
+		return learningRate;
+	}
+
+	public void setLearningRate(double learningRate) {
+		this.learningRate = learningRate;
+	}
+
+	public double getDecay() {
+		return decay;
+	}
+
+	public void setDecay(double decay) {
+		this.decay = decay;
+	}
+
+	public LearningRateSchedule getSchedule() {
+		return schedule;
+	}
+
+	public void setSchedule(LearningRateSchedule schedule) {
+		this.schedule = schedule;
+	}
+
+	public ParallelMode getParallelMode() {
+		return parallelMode;
+	}
+
+	public void setParallelMode(ParallelMode parallelMode) {
+		this.parallelMode = parallelMode;
+	}
+
+	public double getMinProgress() {
+		return minProgress;
+	}
+
+	public void setMinProgress(double minProgress) {
+		this.minProgress = minProgress;
+	}
+
+	public int getWarmStartMinEpochs() {
+		return warmStartMinEpochs;
+	}
+
+	/**
+	 * Sets the minimum number of epochs of a warm-started factorization, which
+	 * replaces {@link #getMinEpochs()} as the factors are not random.
+	 *
+	 * @param warmStartMinEpochs the minimum number of epochs
+	 */
+	public void setWarmStartMinEpochs(int warmStartMinEpochs) {
+		this.warmStartMinEpochs = warmStartMinEpochs;
+	}
+
+	public int getMinEpochs() {
+		return minEpochs;
+	}
+
+	public void setMinEpochs(int minEpochs) {
+		this.minEpochs = minEpochs;
+	}
+
+	public int getMaxEpochs() {
+		return maxEpochs;
+	}
+
+	public void setMaxEpochs(int maxEpochs) {
+		this.maxEpochs = maxEpochs;
+	}
+
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+}
@@ -0,0 +1,75 @@
+package alors.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link MetricsRegistry} keeping a {@link LatencyHistogram} per latency and
+ * a sum per counter in memory, e.g. to log a summary after training or to be
+ * polled by a monitoring system.
+ * 
+ * @author helegraf
+ *
+ */
+public class InMemoryMetricsRegistry implements MetricsRegistry {
+
+	private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+	private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+	@Override
+	public void recordLatency(String metric, long nanos) {
+		histograms.computeIfAbsent(metric, name -> new LatencyHistogram()).record(nanos);
+	}
+
+	@Override
+	public void increment(String metric, long amount) {
+		counters.computeIfAbsent(metric, name -> new LongAdder()).add(amount);
+	}
+
+	/**
+	 * @param metric the name of the metric
+	 * @return the latencies recorded for the metric, empty if there are none
+	 */
+	public LatencyHistogram getHistogram(String metric) {
+		LatencyHistogram histogram = histograms.get(metric);
+		return histogram != null ? histogram : new LatencyHistogram();
+	}
+
+	/**
+	 * @param metric the name of the metric
+	 * @return the sum of the increments of the counter, 0 if there are none
+	 */
+	public long getCounter(String metric) {
+		LongAdder counter = counters.get(metric);
+		return counter != null ? counter.sum() : 0;
+	}
+
+	/**
+	 * Removes all measurements.
+	 */
+	public void reset() {
+		histograms.clear();
+		counters.clear();
+	}
+
+	/**
+	 * @return a line per metric, sorted by name
+	 */
+	@Override
+	public String toString() {
+		Map<String, Object> sorted = new TreeMap<>(histograms);
+		for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+			sorted.put(counter.getKey(), counter.getValue().sum());
+		}
+		StringBuilder builder = new StringBuilder();
+		for (Map.Entry<String, Object> metric : sorted.entrySet()) {
+			if (builder.length() > 0) {
+				builder.append(System.lineSeparator());
+			}
+			builder.append(metric.getKey()).append(": ").append(metric.getValue());
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,116 @@
+package alors.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of latencies in nanoseconds with a relative error
+ * of at most 1/16: each power of two is split into 16 buckets of equal width.
+ * Recording is lock-free and allocation-free.
+ * 
+ * @author helegraf
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	// values below SUB_BUCKETS get a bucket each, every higher power of two
+	// SUB_BUCKETS buckets
+	private static final int NUM_BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Records a latency.
+	 * 
+	 * @param nanos the latency in nanoseconds, negative values count as 0
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		buckets.incrementAndGet(bucketOf(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/**
+	 * @return the number of recorded latencies
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return the mean latency in nanoseconds, NaN if none was recorded
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? Double.NaN : (double) sum.sum() / n;
+	}
+
+	/**
+	 * @return the highest latency in nanoseconds, 0 if none was recorded
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Returns an upper bound of the given percentile, exceeding it by at most
+	 * 1/16 and never exceeding the maximum.
+	 * 
+	 * @param percentile the percentile in (0, 100], e.g. 99 for p99
+	 * @return the latency in nanoseconds, 0 if none was recorded
+	 */
+	public long getPercentile(double percentile) {
+		if (percentile <= 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile must be in (0, 100], got " + percentile);
+		}
+		long total = 0;
+		long[] snapshot = new long[NUM_BUCKETS];
+		for (int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+			snapshot[bucket] = buckets.get(bucket);
+			total += snapshot[bucket];
+		}
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+			seen += snapshot[bucket];
+			if (seen >= Math.max(1, rank)) {
+				return Math.min(upperBoundOf(bucket), getMax());
+			}
+		}
+		return 0;
+	}
+
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	static long upperBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		long lowerBound = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+		return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count %d, mean %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms", getCount(),
+				getMean() / 1e6, getPercentile(50) / 1e6, getPercentile(99) / 1e6, getMax() / 1e6);
+	}
+}
@@ -0,0 +1,233 @@
+package alors.metrics;
+
+/**
+ * The metrics recorded by Alors, the matrix completers and the feature
+ * predictors, and the global {@link MetricsRegistry} they are recorded to. By
+ * default, measurements are discarded; install e.g. an
+ * {@link InMemoryMetricsRegistry} or an adapter to a monitoring system with
+ * {@link #setRegistry(MetricsRegistry)}.
+ * 
+ * @author helegraf
+ *
+ */
+public final class Metrics {
+
+	// latencies
+	/**
+	 * Factorizing the matrix when training Alors.
+	 */
+	public static final String ALORS_FACTORIZATION = "alors.factorization";
+	/**
+	 * Training the feature predictor when training Alors.
+	 */
+	public static final String ALORS_FEATURE_PREDICTOR_TRAINING = "alors.feature_predictor_training";
+	/**
+	 * A cold-start prediction for a single instance.
+	 */
+	public static final String ALORS_PREDICTION = "alors.prediction";
+	/**
+	 * A cold-start prediction for a batch of instances.
+	 */
+	public static final String ALORS_BATCH_PREDICTION = "alors.batch_prediction";
+	/**
+	 * Writing the matrix and configuration files for cofirank.
+	 */
+	public static final String COFIRANK_SERIALIZATION = "cofirank.serialization";
+	/**
+	 * Running the cofirank executable.
+	 */
+	public static final String COFIRANK_PROCESS = "cofirank.process";
+	/**
+	 * Parsing the factors (and completed matrix) written by cofirank.
+	 */
+	public static final String COFIRANK_PARSING = "cofirank.parsing";
+	/**
+	 * Training the regressor of a single latent feature.
+	 */
+	public static final String REGRESSOR_TRAINING = "feature_predictor.regressor_training";
+
+	// counters
+	/**
+	 * The observed entries of the matrices Alors is trained on.
+	 */
+	public static final String ALORS_OBSERVED_ENTRIES = "alors.observed_entries";
+	/**
+	 * The instances predicted, single or in batches.
+	 */
+	public static final String ALORS_PREDICTED_INSTANCES = "alors.predicted_instances";
+	/**
+	 * The observed entries of the matrices given to cofirank.
+	 */
+	public static final String COFIRANK_OBSERVED_ENTRIES = "cofirank.observed_entries";
+	/**
+	 * The bytes of the files written for cofirank.
+	 */
+	public static final String COFIRANK_BYTES_WRITTEN = "cofirank.bytes_written";
+	/**
+	 * The bytes of the files written by cofirank and parsed.
+	 */
+	public static final String COFIRANK_BYTES_READ = "cofirank.bytes_read";
+
+	private static final Timer NO_OP_TIMER = new Timer(null, null, 0);
+
+	private static volatile MetricsRegistry registry = NoOpMetricsRegistry.INSTANCE;
+
+	private Metrics() {
+	}
+
+	/**
+	 * @return the registry measurements are recorded to
+	 */
+	public static MetricsRegistry getRegistry() {
+		return registry;
+	}
+
+	/**
+	 * Sets the registry all following measurements are recorded to.
+	 * 
+	 * @param registry the registry, or null to discard measurements
+	 */
+	public static void setRegistry(MetricsRegistry registry) {
+		Metrics.registry = registry != null ? registry : NoOpMetricsRegistry.INSTANCE;
+	}
+
+	/**
+	 * Starts measuring a latency, which is recorded when the returned timer is
+	 * closed, e.g. in a finally block. Where the measured code throws at most one
+	 * type of checked exception, {@link #time(String, TimedAction)} is simpler.
+	 * 
+	 * @param metric the name of the metric
+	 * @return the running timer
+	 */
+	public static Timer startTimer(String metric) {
+		MetricsRegistry current = registry;
+		if (current.isNoOp()) {
+			return NO_OP_TIMER;
+		}
+		return new Timer(current, metric, System.nanoTime());
+	}
+
+	/**
+	 * Runs the given action and records its latency, also if it fails.
+	 * 
+	 * @param metric the name of the metric
+	 * @param action the action
+	 * @return the result of the action
+	 * @throws E if the action fails
+	 */
+	public static <T, E extends Exception> T time(String metric, TimedAction<T, E> action) throws E {
+		Timer timer = startTimer(metric);
+		try {
+			return action.run();
+		} finally {
+			timer.close();
+		}
+	}
+
+	/**
+	 * Runs the given action and records its latency, also if it fails.
+	 * 
+	 * @param metric the name of the metric
+	 * @param action the action
+	 * @throws E if the action fails
+	 */
+	public static <E extends Exception> void time(String metric, TimedRunnable<E> action) throws E {
+		Timer timer = startTimer(metric);
+		try {
+			action.run();
+		} finally {
+			timer.close();
+		}
+	}
+
+	/**
+	 * Increments a counter of the current registry.
+	 * 
+	 * @param metric the name of the metric
+	 * @param amount the amount to add
+	 */
+	public static void increment(String metric, long amount) {
+		registry.increment(metric, amount);
+	}
+
+	/**
+	 * Increments a counter of the current registry by an amount which is costly
+	 * to determine, e.g. by counting entries or querying the file system. The
+	 * amount is only determined if the registry does not discard measurements;
+	 * amounts which are known anyway are passed directly, see
+	 * {@link #increment(String, long)}.
+	 * 
+	 * @param metric the name of the metric
+	 * @param amount determines the amount to add
+	 * @throws E if the amount cannot be determined
+	 */
+	public static <E extends Exception> void increment(String metric, CountedAmount<E> amount) throws E {
+		MetricsRegistry current = registry;
+		if (!current.isNoOp()) {
+			current.increment(metric, amount.get());
+		}
+	}
+
+	/**
+	 * An action whose latency is measured, see
+	 * {@link Metrics#time(String, TimedAction)}.
+	 *
+	 * @param <T> the type of the result
+	 * @param <E> the type of exception thrown by the action
+	 */
+	@FunctionalInterface
+	public interface TimedAction<T, E extends Exception> {
+
+		T run() throws E;
+	}
+
+	/**
+	 * An action without result whose latency is measured, see
+	 * {@link Metrics#time(String, TimedRunnable)}.
+	 *
+	 * @param <E> the type of exception thrown by the action
+	 */
+	@FunctionalInterface
+	public interface TimedRunnable<E extends Exception> {
+
+		void run() throws E;
+	}
+
+	/**
+	 * Determines the amount a counter is incremented by, see
+	 * {@link Metrics#increment(String, CountedAmount)}.
+	 *
+	 * @param <E> the type of exception thrown when determining the amount
+	 */
+	@FunctionalInterface
+	public interface CountedAmount<E extends Exception> {
+
+		long get() throws E;
+	}
+
+	/**
+	 * A running latency measurement, see {@link Metrics#startTimer(String)}.
+	 */
+	public static final class Timer implements AutoCloseable {
+
+		private final MetricsRegistry registry;
+		private final String metric;
+		private final long start;
+
+		private Timer(MetricsRegistry registry, String metric, long start) {
+			this.registry = registry;
+			this.metric = metric;
+			this.start = start;
+		}
+
+		/**
+		 * Records the time since the timer was started.
+		 */
+		@Override
+		public void close() {
+			if (registry != null) {
+				registry.recordLatency(metric, System.nanoTime() - start);
+			}
+		}
+	}
+}
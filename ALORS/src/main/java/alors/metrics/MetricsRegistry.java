@@ -0,0 +1,36 @@
+package alors.metrics;
+
+/**
+ * Receives the measurements of Alors, see {@link Metrics} for the recorded
+ * metrics and how to install a registry. Implementations must be thread-safe
+ * and fast, as they are called on the hot paths of training and prediction.
+ * 
+ * @author helegraf
+ *
+ */
+public interface MetricsRegistry {
+
+	/**
+	 * Records a duration, e.g. into a latency histogram.
+	 * 
+	 * @param metric the name of the metric
+	 * @param nanos  the duration in nanoseconds
+	 */
+	public void recordLatency(String metric, long nanos);
+
+	/**
+	 * Increments a counter.
+	 * 
+	 * @param metric the name of the metric
+	 * @param amount the amount to add
+	 */
+	public void increment(String metric, long amount);
+
+	/**
+	 * @return whether this registry discards all measurements, so that they need
+	 *         not be taken
+	 */
+	public default boolean isNoOp() {
+		return false;
+	}
+}
@@ -0,0 +1,30 @@
+package alors.metrics;
+
+/**
+ * The default {@link MetricsRegistry}, which discards all measurements.
+ * 
+ * @author helegraf
+ *
+ */
+public final class NoOpMetricsRegistry implements MetricsRegistry {
+
+	public static final NoOpMetricsRegistry INSTANCE = new NoOpMetricsRegistry();
+
+	private NoOpMetricsRegistry() {
+	}
+
+	@Override
+	public void recordLatency(String metric, long nanos) {
+		// discarded
+	}
+
+	@Override
+	public void increment(String metric, long amount) {
+		// discarded
+	}
+
+	@Override
+	public boolean isNoOp() {
+		return true;
+	}
+}
@@ -0,0 +1,132 @@
+package alors.tuning;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import alors.matrix_completion.cofirank.CofiConfig;
+
+/**
+ * The values to be tried for the hyperparameters of cofirank: the number of
+ * latent features, the regularization of both phases and the optimized
+ * measure. Each parameter defaults to the single value of the base
+ * configuration; all other options of the candidates are those of the base
+ * configuration.
+ *
+ * @author helegraf
+ *
+ */
+public class CofiSearchSpace {
+
+	private final CofiConfig baseConfig;
+
+	private int[] dimW;
+	private int[] userPhaseLambda;
+	private int[] moviePhaseLambda;
+	private String[] optimizedMeasure;
+
+	/**
+	 * Creates a search space containing only the given configuration.
+	 *
+	 * @param baseConfig the configuration defining all options not searched
+	 */
+	public CofiSearchSpace(CofiConfig baseConfig) {
+		this.baseConfig = baseConfig;
+		this.dimW = new int[] { baseConfig.getDimW() };
+		this.userPhaseLambda = new int[] { baseConfig.getUserPhaseLambda() };
+		this.moviePhaseLambda = new int[] { baseConfig.getMoviePhaseLambda() };
+		this.optimizedMeasure = new String[] { baseConfig.getOptimizedMeasure() };
+	}
+
+	/**
+	 * @return the number of configurations in the search space
+	 */
+	public int size() {
+		return dimW.length * userPhaseLambda.length * moviePhaseLambda.length * optimizedMeasure.length;
+	}
+
+	/**
+	 * @return all configurations of the search space
+	 */
+	public List<CofiConfig> grid() {
+		List<CofiConfig> grid = new ArrayList<>(size());
+		for (int index = 0; index < size(); index++) {
+			grid.add(get(index));
+		}
+		return grid;
+	}
+
+	/**
+	 * Draws distinct configurations uniformly at random, or returns all of them
+	 * if there are not more than the requested number.
+	 *
+	 * @param numCandidates the number of configurations
+	 * @param seed          the seed of the random draws
+	 * @return the configurations, in the order drawn
+	 */
+	public List<CofiConfig> sample(int numCandidates, long seed) {
+		if (numCandidates >= size()) {
+			return grid();
+		}
+		Random random = new Random(seed);
+		Set<Integer> indices = new LinkedHashSet<>();
+		while (indices.size() < numCandidates) {
+			indices.add(random.nextInt(size()));
+		}
+		List<CofiConfig> sample = new ArrayList<>(numCandidates);
+		for (int index : indices) {
+			sample.add(get(index));
+		}
+		return sample;
+	}
+
+	private CofiConfig get(int index) {
+		CofiConfig config = baseConfig.copy();
+		config.setDimW(dimW[index % dimW.length]);
+		index /= dimW.length;
+		config.setUserPhaseLambda(userPhaseLambda[index % userPhaseLambda.length]);
+		index /= userPhaseLambda.length;
+		config.setMoviePhaseLambda(moviePhaseLambda[index % moviePhaseLambda.length]);
+		index /= moviePhaseLambda.length;
+		config.setOptimizedMeasure(optimizedMeasure[index]);
+		return config;
+	}
+
+	public CofiConfig getBaseConfig() {
+		return baseConfig;
+	}
+
+	public int[] getDimW() {
+		return dimW;
+	}
+
+	public void setDimW(int... dimW) {
+		this.dimW = dimW;
+	}
+
+	public int[] getUserPhaseLambda() {
+		return userPhaseLambda;
+	}
+
+	public void setUserPhaseLambda(int... userPhaseLambda) {
+		this.userPhaseLambda = userPhaseLambda;
+	}
+
+	public int[] getMoviePhaseLambda() {
+		return moviePhaseLambda;
+	}
+
+	public void setMoviePhaseLambda(int... moviePhaseLambda) {
+		this.moviePhaseLambda = moviePhaseLambda;
+	}
+
+	public String[] getOptimizedMeasure() {
+		return optimizedMeasure;
+	}
+
+	public void setOptimizedMeasure(String... optimizedMeasure) {
+		this.optimizedMeasure = optimizedMeasure;
+	}
+}
@@ -0,0 +1,351 @@
+package alors.tuning;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import alors.matrix_completion.FactorizedMatrix;
+import alors.matrix_completion.MatrixCompleterException;
+import alors.matrix_completion.ModelBasedMatrixCompleter;
+import alors.matrix_completion.SparseMatrix;
+import alors.matrix_completion.cofirank.CofiConfig;
+import alors.matrix_completion.cofirank.CofirankJava;
+
+/**
+ * Searches the hyperparameters of cofirank (see {@link CofiSearchSpace}) by
+ * grid search, random search or successive halving. Each configuration is
+ * scored by cross-validation on the observed entries of the matrix: the
+ * entries are split into folds, and the completion of the matrix without a
+ * fold is scored on the entries of the fold (see {@link TuningMetric}). The
+ * completions of all configurations and folds run in parallel.
+ *
+ * <p>
+ * Successive halving first evaluates all configurations with few iterations
+ * and continues only with the best fraction of them, with a multiple of the
+ * iterations, until a single configuration is left or the maximum number of
+ * iterations is reached. Each round warm-starts from the factors of the
+ * previous round, for completers which support that.
+ *
+ * <p>
+ * By default, configurations are evaluated by {@link CofirankJava}, one thread
+ * each; {@link #setCompleterFactory(Function)} allows to use e.g.
+ * {@link alors.matrix_completion.cofirank.CofirankCPlusPlus} instead.
+ *
+ * @author helegraf
+ *
+ */
+public class CofiTuner {
+
+	// logging
+	private Logger logger = LoggerFactory.getLogger(CofiTuner.class);
+
+	// options
+	private Function<CofiConfig, ModelBasedMatrixCompleter> completerFactory = CofiTuner::createJavaCofirank;
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+	private TuningMetric metric = TuningMetric.RMSE;
+	private int ndcgK = 10;
+	private int numFolds = 3;
+	private long seed = 0;
+	private int halvingMinIterations = 3;
+	private int halvingFactor = 3;
+
+	/**
+	 * Evaluates all configurations of the given search space.
+	 *
+	 * @param matrix the matrix to be completed
+	 * @param space  the search space
+	 * @return the evaluations and the best configuration
+	 * @throws MatrixCompleterException if the search is interrupted
+	 */
+	public TuningResult gridSearch(SparseMatrix matrix, CofiSearchSpace space) throws MatrixCompleterException {
+		return evaluateAll(matrix, space.grid());
+	}
+
+	/**
+	 * Evaluates the given number of configurations drawn randomly from the given
+	 * search space.
+	 *
+	 * @param matrix        the matrix to be completed
+	 * @param space         the search space
+	 * @param numCandidates the number of configurations to evaluate
+	 * @return the evaluations and the best configuration
+	 * @throws MatrixCompleterException if the search is interrupted
+	 */
+	public TuningResult randomSearch(SparseMatrix matrix, CofiSearchSpace space, int numCandidates)
+			throws MatrixCompleterException {
+		return evaluateAll(matrix, space.sample(numCandidates, seed));
+	}
+
+	/**
+	 * Searches all configurations of the given search space by successive
+	 * halving.
+	 *
+	 * @param matrix the matrix to be completed
+	 * @param space  the search space
+	 * @return the evaluations of all rounds and the best configuration of the
+	 *         last round
+	 * @throws MatrixCompleterException if the search is interrupted
+	 */
+	public TuningResult successiveHalving(SparseMatrix matrix, CofiSearchSpace space)
+			throws MatrixCompleterException {
+		return successiveHalving(matrix, space.grid());
+	}
+
+	/**
+	 * Searches the given configurations by successive halving: starting with
+	 * {@link #getHalvingMinIterations()} iterations, all remaining
+	 * configurations are evaluated, the best <code>1 / halvingFactor</code> of
+	 * them are kept and the number of iterations is multiplied by the halving
+	 * factor, up to the maximum number of iterations of the configurations.
+	 *
+	 * @param matrix     the matrix to be completed
+	 * @param candidates the configurations, at least one
+	 * @return the evaluations of all rounds and the best configuration of the
+	 *         last round
+	 * @throws MatrixCompleterException if the search is interrupted
+	 */
+	public TuningResult successiveHalving(SparseMatrix matrix, List<CofiConfig> candidates)
+			throws MatrixCompleterException {
+		checkCandidates(candidates);
+		HoldoutFold[] folds = HoldoutFold.split(matrix, numFolds, seed);
+		int maxIterations = candidates.stream().mapToInt(CofiConfig::getMaxIterations).max().getAsInt();
+
+		List<Candidate> remaining = new ArrayList<>();
+		for (CofiConfig config : candidates) {
+			remaining.add(new Candidate(config, folds.length));
+		}
+		List<TuningResult.Evaluation> evaluations = new ArrayList<>();
+		int iterations = Math.min(halvingMinIterations, maxIterations);
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		try {
+			while (true) {
+				logger.debug("Evaluating {} configurations with {} iterations", remaining.size(), iterations);
+				for (Candidate candidate : remaining) {
+					CofiConfig config = candidate.config.copy();
+					config.setMaxIterations(Math.min(iterations, candidate.config.getMaxIterations()));
+					config.setMinIterations(Math.min(config.getMinIterations(), config.getMaxIterations()));
+					candidate.roundConfig = config;
+				}
+				evaluate(pool, remaining, folds);
+				for (Candidate candidate : remaining) {
+					evaluations.add(candidate.evaluation);
+				}
+
+				if (remaining.size() == 1 || iterations >= maxIterations) {
+					break;
+				}
+				remaining.sort(Comparator.comparingDouble(candidate -> candidate.evaluation.getError()));
+				int numKept = (remaining.size() + halvingFactor - 1) / halvingFactor;
+				remaining = new ArrayList<>(remaining.subList(0, numKept));
+				iterations = (int) Math.min((long) iterations * halvingFactor, maxIterations);
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		List<TuningResult.Evaluation> finalists = new ArrayList<>();
+		for (Candidate candidate : remaining) {
+			finalists.add(candidate.evaluation);
+		}
+		return new TuningResult(metric, evaluations, finalists);
+	}
+
+	private TuningResult evaluateAll(SparseMatrix matrix, List<CofiConfig> configs) throws MatrixCompleterException {
+		checkCandidates(configs);
+		HoldoutFold[] folds = HoldoutFold.split(matrix, numFolds, seed);
+		List<Candidate> candidates = new ArrayList<>();
+		for (CofiConfig config : configs) {
+			Candidate candidate = new Candidate(config, folds.length);
+			candidate.roundConfig = config;
+			candidates.add(candidate);
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		try {
+			evaluate(pool, candidates, folds);
+		} finally {
+			pool.shutdown();
+		}
+
+		List<TuningResult.Evaluation> evaluations = new ArrayList<>();
+		for (Candidate candidate : candidates) {
+			evaluations.add(candidate.evaluation);
+		}
+		return new TuningResult(metric, evaluations, evaluations);
+	}
+
+	/**
+	 * Completes each fold with the round configuration of each candidate, in
+	 * parallel, and scores the completions.
+	 */
+	private void evaluate(ExecutorService pool, List<Candidate> candidates, HoldoutFold[] folds)
+			throws MatrixCompleterException {
+		List<List<Future<FactorizedMatrix>>> completions = new ArrayList<>();
+		for (Candidate candidate : candidates) {
+			List<Future<FactorizedMatrix>> candidateCompletions = new ArrayList<>();
+			for (int fold = 0; fold < folds.length; fold++) {
+				SparseMatrix trainingMatrix = folds[fold].getTrainingMatrix();
+				FactorizedMatrix initialization = candidate.factors[fold];
+				candidateCompletions.add(pool.submit(() -> completerFactory.apply(candidate.roundConfig)
+						.factorize(trainingMatrix, initialization)));
+			}
+			completions.add(candidateCompletions);
+		}
+
+		try {
+			for (int c = 0; c < candidates.size(); c++) {
+				Candidate candidate = candidates.get(c);
+				double error = 0;
+				for (int fold = 0; fold < folds.length; fold++) {
+					try {
+						FactorizedMatrix completion = completions.get(c).get(fold).get();
+						candidate.factors[fold] = completion;
+						error += metric.score(completion, folds[fold], ndcgK) / folds.length;
+					} catch (ExecutionException e) {
+						logger.warn("Could not evaluate configuration {}", describe(candidate.roundConfig),
+								e.getCause());
+						candidate.factors[fold] = null;
+						error = Double.POSITIVE_INFINITY;
+					}
+				}
+				candidate.evaluation = new TuningResult.Evaluation(candidate.config,
+						candidate.roundConfig.getMaxIterations(), error);
+				logger.debug("{}: {} {}", describe(candidate.roundConfig), metric, error);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			pool.shutdownNow();
+			throw new MatrixCompleterException("Tuning interrupted", e);
+		}
+	}
+
+	private static void checkCandidates(List<CofiConfig> candidates) {
+		if (candidates.isEmpty()) {
+			throw new IllegalArgumentException("At least one configuration is needed to search.");
+		}
+	}
+
+	private static String describe(CofiConfig config) {
+		return String.format("dimW %d, lambdas %d/%d, %s, %d iterations", config.getDimW(),
+				config.getUserPhaseLambda(), config.getMoviePhaseLambda(), config.getOptimizedMeasure(),
+				config.getMaxIterations());
+	}
+
+	private static ModelBasedMatrixCompleter createJavaCofirank(CofiConfig config) {
+		CofirankJava cofirank = new CofirankJava(config);
+		cofirank.setNumThreads(1);
+		return cofirank;
+	}
+
+	/**
+	 * A configuration during the search, with the factors of its last round.
+	 */
+	private static class Candidate {
+
+		private final CofiConfig config;
+		private final FactorizedMatrix[] factors;
+		private CofiConfig roundConfig;
+		private TuningResult.Evaluation evaluation;
+
+		private Candidate(CofiConfig config, int numFolds) {
+			this.config = config;
+			this.factors = new FactorizedMatrix[numFolds];
+		}
+	}
+
+	public Function<CofiConfig, ModelBasedMatrixCompleter> getCompleterFactory() {
+		return completerFactory;
+	}
+
+	/**
+	 * Sets how the completer evaluating a configuration is created. A new
+	 * completer is created for each configuration and fold, and they are used
+	 * concurrently.
+	 *
+	 * @param completerFactory creates a completer for the given configuration
+	 */
+	public void setCompleterFactory(Function<CofiConfig, ModelBasedMatrixCompleter> completerFactory) {
+		this.completerFactory = completerFactory;
+	}
+
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	public TuningMetric getMetric() {
+		return metric;
+	}
+
+	public void setMetric(TuningMetric metric) {
+		this.metric = metric;
+	}
+
+	public int getNdcgK() {
+		return ndcgK;
+	}
+
+	public void setNdcgK(int ndcgK) {
+		this.ndcgK = ndcgK;
+	}
+
+	public int getNumFolds() {
+		return numFolds;
+	}
+
+	/**
+	 * Sets the number of folds the observed entries are split into; each
+	 * configuration is completed once per fold.
+	 *
+	 * @param numFolds the number of folds, at least 2
+	 */
+	public void setNumFolds(int numFolds) {
+		this.numFolds = numFolds;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Sets the seed of the split into folds and of the random search.
+	 *
+	 * @param seed the seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public int getHalvingMinIterations() {
+		return halvingMinIterations;
+	}
+
+	public void setHalvingMinIterations(int halvingMinIterations) {
+		this.halvingMinIterations = halvingMinIterations;
+	}
+
+	public int getHalvingFactor() {
+		return halvingFactor;
+	}
+
+	/**
+	 * Sets the factor by which successive halving reduces the configurations and
+	 * increases the iterations in each round.
+	 *
+	 * @param halvingFactor the factor, at least 2
+	 */
+	public void setHalvingFactor(int halvingFactor) {
+		this.halvingFactor = halvingFactor;
+	}
+}
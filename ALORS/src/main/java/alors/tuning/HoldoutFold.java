@@ -0,0 +1,119 @@
+package alors.tuning;
+
+import java.util.Random;
+
+import alors.matrix_completion.SparseMatrix;
+
+/**
+ * One fold of a cross-validation over the observed entries of a matrix: the
+ * matrix without the entries of the fold, to be completed, and the entries of
+ * the fold held out to score the completion. Both are stored by rows.
+ *
+ * @author helegraf
+ *
+ */
+class HoldoutFold {
+
+	private final SparseMatrix trainingMatrix;
+	private final int[] heldOutRowPointers;
+	private final int[] heldOutColumns;
+	private final double[] heldOutValues;
+
+	private HoldoutFold(SparseMatrix trainingMatrix, int[] heldOutRowPointers, int[] heldOutColumns,
+			double[] heldOutValues) {
+		this.trainingMatrix = trainingMatrix;
+		this.heldOutRowPointers = heldOutRowPointers;
+		this.heldOutColumns = heldOutColumns;
+		this.heldOutValues = heldOutValues;
+	}
+
+	/**
+	 * Splits the observed entries of the given matrix randomly into the given
+	 * number of folds of (almost) equal size.
+	 *
+	 * @param matrix   the matrix
+	 * @param numFolds the number of folds, at least 2
+	 * @param seed     the seed of the split
+	 * @return the folds
+	 */
+	static HoldoutFold[] split(SparseMatrix matrix, int numFolds, long seed) {
+		if (numFolds < 2) {
+			throw new IllegalArgumentException("At least two folds are needed, got " + numFolds);
+		}
+		int numEntries = matrix.getNumEntries();
+		int[] assignment = new int[numEntries];
+		for (int n = 0; n < numEntries; n++) {
+			assignment[n] = n % numFolds;
+		}
+		Random random = new Random(seed);
+		for (int n = numEntries - 1; n > 0; n--) {
+			int other = random.nextInt(n + 1);
+			int swap = assignment[n];
+			assignment[n] = assignment[other];
+			assignment[other] = swap;
+		}
+
+		HoldoutFold[] folds = new HoldoutFold[numFolds];
+		for (int fold = 0; fold < numFolds; fold++) {
+			folds[fold] = createFold(matrix, assignment, fold);
+		}
+		return folds;
+	}
+
+	private static HoldoutFold createFold(SparseMatrix matrix, int[] assignment, int fold) {
+		int numRows = matrix.getNumRows();
+		int[] rowPointers = matrix.getRowPointers();
+		int[] columnIndices = matrix.getColumnIndices();
+		double[] values = matrix.getValues();
+
+		int numHeldOut = 0;
+		for (int assigned : assignment) {
+			if (assigned == fold) {
+				numHeldOut++;
+			}
+		}
+		int numTraining = assignment.length - numHeldOut;
+
+		int[] trainingRowPointers = new int[numRows + 1];
+		int[] trainingColumns = new int[numTraining];
+		double[] trainingValues = new double[numTraining];
+		int[] heldOutRowPointers = new int[numRows + 1];
+		int[] heldOutColumns = new int[numHeldOut];
+		double[] heldOutValues = new double[numHeldOut];
+		int training = 0;
+		int heldOut = 0;
+		for (int i = 0; i < numRows; i++) {
+			for (int n = rowPointers[i]; n < rowPointers[i + 1]; n++) {
+				if (assignment[n] == fold) {
+					heldOutColumns[heldOut] = columnIndices[n];
+					heldOutValues[heldOut++] = values[n];
+				} else {
+					trainingColumns[training] = columnIndices[n];
+					trainingValues[training++] = values[n];
+				}
+			}
+			trainingRowPointers[i + 1] = training;
+			heldOutRowPointers[i + 1] = heldOut;
+		}
+
+		SparseMatrix trainingMatrix = new SparseMatrix(numRows, matrix.getNumColumns(), trainingRowPointers,
+				trainingColumns, trainingValues);
+		return new HoldoutFold(trainingMatrix, heldOutRowPointers, heldOutColumns, heldOutValues);
+	}
+
+	SparseMatrix getTrainingMatrix() {
+		return trainingMatrix;
+	}
+
+	int[] getHeldOutRowPointers() {
+		return heldOutRowPointers;
+	}
+
+	int[] getHeldOutColumns() {
+		return heldOutColumns;
+	}
+
+	double[] getHeldOutValues() {
+		return heldOutValues;
+	}
+}
@@ -0,0 +1,74 @@
+package alors.tuning;
+
+import java.util.Arrays;
+
+import alors.matrix_completion.FactorizedMatrix;
+import alors.util.RankingMetrics;
+
+/**
+ * An error of a completion on held-out entries; lower is better.
+ *
+ * @author helegraf
+ *
+ */
+public enum TuningMetric {
+
+	/**
+	 * The root mean squared error on the held-out entries (reconstruction
+	 * error).
+	 */
+	RMSE,
+
+	/**
+	 * One minus the NDCG@k of each row's held-out items ranked by their
+	 * predicted values (see {@link RankingMetrics#ndcg(double[], double[], int)}),
+	 * averaged over rows with at least two held-out items (ranking error).
+	 */
+	NDCG_ERROR;
+
+	/**
+	 * Computes the error of the given completion on the held-out entries of the
+	 * given fold.
+	 *
+	 * @param completion the completion of the training matrix of the fold
+	 * @param fold       the fold
+	 * @param k          the number of items considered by the NDCG
+	 * @return the error
+	 */
+	double score(FactorizedMatrix completion, HoldoutFold fold, int k) {
+		int[] rowPointers = fold.getHeldOutRowPointers();
+		int[] columns = fold.getHeldOutColumns();
+		double[] values = fold.getHeldOutValues();
+
+		double sum = 0;
+		int count = 0;
+		for (int i = 0; i < rowPointers.length - 1; i++) {
+			int start = rowPointers[i];
+			int end = rowPointers[i + 1];
+			if (this == RMSE) {
+				for (int n = start; n < end; n++) {
+					double error = values[n] - completion.get(i, columns[n]);
+					sum += error * error;
+					count++;
+				}
+			} else if (end - start >= 2) {
+				sum += 1 - ndcg(completion, i, columns, values, start, end, k);
+				count++;
+			}
+		}
+		if (count == 0) {
+			return Double.NaN;
+		}
+		return this == RMSE ? Math.sqrt(sum / count) : sum / count;
+	}
+
+	private static double ndcg(FactorizedMatrix completion, int row, int[] columns, double[] values, int start,
+			int end, int k) {
+		double[] truth = Arrays.copyOfRange(values, start, end);
+		double[] predictions = new double[end - start];
+		for (int n = start; n < end; n++) {
+			predictions[n - start] = completion.get(row, columns[n]);
+		}
+		return RankingMetrics.ndcg(truth, predictions, k);
+	}
+}
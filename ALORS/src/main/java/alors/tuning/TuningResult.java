@@ -0,0 +1,179 @@
+package alors.tuning;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+import alors.matrix_completion.cofirank.CofiConfig;
+
+/**
+ * The result of a hyperparameter search: the error of every evaluated
+ * configuration and the best one. The best configuration can be saved as a
+ * properties file and applied to a configuration later, see
+ * {@link #loadBestConfig(Path, CofiConfig)}.
+ *
+ * @author helegraf
+ *
+ */
+public class TuningResult {
+
+	private static final String DIM_W = "dimW";
+	private static final String USER_PHASE_LAMBDA = "userPhaseLambda";
+	private static final String MOVIE_PHASE_LAMBDA = "moviePhaseLambda";
+	private static final String OPTIMIZED_MEASURE = "optimizedMeasure";
+	private static final String MAX_ITERATIONS = "maxIterations";
+
+	private final TuningMetric metric;
+	private final List<Evaluation> evaluations;
+	private final Evaluation best;
+
+	/**
+	 * @param metric      the metric of the errors
+	 * @param evaluations all evaluations, in the order they were made
+	 * @param finalists   the evaluations the best one is chosen from, at least
+	 *                    one
+	 */
+	TuningResult(TuningMetric metric, List<Evaluation> evaluations, List<Evaluation> finalists) {
+		if (finalists.isEmpty()) {
+			throw new IllegalArgumentException("At least one evaluation is needed to choose the best one.");
+		}
+		this.metric = metric;
+		this.evaluations = Collections.unmodifiableList(evaluations);
+		this.best = finalists.stream().min(Comparator.comparingDouble(Evaluation::getError)).get();
+	}
+
+	/**
+	 * Saves the searched parameters of the best configuration and its error to
+	 * the given properties file.
+	 *
+	 * @param path the file, replaced if it exists
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(Path path) throws IOException {
+		CofiConfig config = best.getConfig();
+		Properties properties = new Properties();
+		properties.setProperty(DIM_W, Integer.toString(config.getDimW()));
+		properties.setProperty(USER_PHASE_LAMBDA, Integer.toString(config.getUserPhaseLambda()));
+		properties.setProperty(MOVIE_PHASE_LAMBDA, Integer.toString(config.getMoviePhaseLambda()));
+		properties.setProperty(OPTIMIZED_MEASURE, config.getOptimizedMeasure());
+		properties.setProperty(MAX_ITERATIONS, Integer.toString(config.getMaxIterations()));
+		try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			properties.store(writer, String.format("Best cofirank configuration, %s %s", metric, best.getError()));
+		}
+	}
+
+	/**
+	 * Loads the parameters saved by {@link #save(Path)} into a copy of the given
+	 * configuration.
+	 *
+	 * @param path       the properties file
+	 * @param baseConfig the configuration providing all other options
+	 * @return the configuration
+	 * @throws IOException if the file cannot be read or misses a parameter
+	 */
+	public static CofiConfig loadBestConfig(Path path, CofiConfig baseConfig) throws IOException {
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		}
+		CofiConfig config = baseConfig.copy();
+		try {
+			config.setDimW(Integer.parseInt(getProperty(properties, DIM_W)));
+			config.setUserPhaseLambda(Integer.parseInt(getProperty(properties, USER_PHASE_LAMBDA)));
+			config.setMoviePhaseLambda(Integer.parseInt(getProperty(properties, MOVIE_PHASE_LAMBDA)));
+			config.setOptimizedMeasure(getProperty(properties, OPTIMIZED_MEASURE));
+			config.setMaxIterations(Integer.parseInt(getProperty(properties, MAX_ITERATIONS)));
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid cofirank configuration in " + path, e);
+		}
+		return config;
+	}
+
+	private static String getProperty(Properties properties, String key) throws IOException {
+		String value = properties.getProperty(key);
+		if (value == null) {
+			throw new IOException("Missing cofirank parameter " + key);
+		}
+		return value;
+	}
+
+	public TuningMetric getMetric() {
+		return metric;
+	}
+
+	/**
+	 * @return all evaluations, in the order they were made
+	 */
+	public List<Evaluation> getEvaluations() {
+		return evaluations;
+	}
+
+	/**
+	 * @return the best configuration as it was given to the search, whatever the
+	 *         number of iterations it was evaluated with
+	 */
+	public CofiConfig getBestConfig() {
+		return best.getConfig();
+	}
+
+	/**
+	 * @return the maximum number of iterations of the evaluation of the best
+	 *         configuration, see {@link Evaluation#getIterations()}
+	 */
+	public int getBestIterations() {
+		return best.getIterations();
+	}
+
+	public double getBestError() {
+		return best.getError();
+	}
+
+	/**
+	 * The cross-validated error of a configuration, evaluated with at most a
+	 * given number of iterations.
+	 */
+	public static class Evaluation {
+
+		private final CofiConfig config;
+		private final int iterations;
+		private final double error;
+
+		Evaluation(CofiConfig config, int iterations, double error) {
+			this.config = config;
+			this.iterations = iterations;
+			this.error = error;
+		}
+
+		/**
+		 * @return the configuration as it was given to the search
+		 */
+		public CofiConfig getConfig() {
+			return config;
+		}
+
+		/**
+		 * @return the maximum number of iterations of the completions; in
+		 *         successive halving, the number of the round, which continued
+		 *         from the factors of the previous rounds if the completer
+		 *         supports warm starts
+		 */
+		public int getIterations() {
+			return iterations;
+		}
+
+		/**
+		 * @return the error averaged over the folds, infinite if the completion
+		 *         failed
+		 */
+		public double getError() {
+			return error;
+		}
+	}
+}
@@ -0,0 +1,287 @@
+package alors.util;
+
+import java.nio.DoubleBuffer;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A factor matrix (e.g. the latent features of the items, one row per item)
+ * stored for scoring many rows against a query vector: the rows are grouped
+ * into blocks of {@value #BLOCK_SIZE}, and each block is stored in one
+ * contiguous array, dimension by dimension, so that the values of a dimension
+ * for all rows of a block are adjacent. A kernel scores the rows of a block
+ * in parallel lanes, whatever the number of dimensions.
+ *
+ * <p>
+ * On JDK 16 and later, if the JVM runs with
+ * <code>--add-modules jdk.incubator.vector</code>, the kernel uses the vector
+ * API (SIMD instructions such as AVX2 and AVX-512); otherwise, or if the system
+ * property <code>alors.vectorScoring</code> is <code>false</code>, a portable
+ * scalar kernel is used. Both add the products of a row in order of the
+ * dimensions, so the scores equal those of
+ * {@link LinearAlgebra#dot(double[], double[])} exactly.
+ *
+ * @author helegraf
+ *
+ */
+public final class BlockedFactors {
+
+	/**
+	 * The number of rows per block.
+	 */
+	public static final int BLOCK_SIZE = 8;
+
+	// queries per task of a batch, and blocks of rows scored for all queries of a
+	// task before moving on, small enough to stay in cache
+	private static final int QUERY_BLOCK = 64;
+	private static final int BLOCKS_PER_TILE = 32;
+	private static final long PARALLEL_THRESHOLD = 1 << 18;
+
+	private static final String VECTOR_KERNEL = "alors.util.VectorScoringKernel";
+	private static final String VECTOR_SCORING_PROPERTY = "alors.vectorScoring";
+
+	private static final ScoringKernel DEFAULT_KERNEL = loadDefaultKernel();
+
+	private final double[] data;
+	private final int numRows;
+	private final int dim;
+	private final ScoringKernel kernel;
+
+	/**
+	 * Copies the given matrix into the blocked layout.
+	 *
+	 * @param factors the matrix (rows x dimensions)
+	 */
+	public BlockedFactors(double[][] factors) {
+		this(factors, DEFAULT_KERNEL);
+	}
+
+	private BlockedFactors(double[] data, int numRows, int dim, ScoringKernel kernel) {
+		this.data = data;
+		this.numRows = numRows;
+		this.dim = dim;
+		this.kernel = kernel;
+	}
+
+	/**
+	 * Creates a matrix from its values in the blocked layout, e.g. mapped from a
+	 * file the blocks were written to (see {@link #getBlock(int, double[])}).
+	 *
+	 * @param values     consecutive parts of the values of all blocks in order,
+	 *                   including the rows padding the last block
+	 * @param numRows    the number of rows
+	 * @param numColumns the number of dimensions
+	 * @return the matrix
+	 */
+	public static BlockedFactors fromBlocks(List<DoubleBuffer> values, int numRows, int numColumns) {
+		double[] data = new double[(numRows + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE * numColumns];
+		int offset = 0;
+		for (DoubleBuffer part : values) {
+			// a duplicate keeps the position of a shared buffer untouched
+			DoubleBuffer duplicate = part.duplicate();
+			if (duplicate.remaining() > data.length - offset) {
+				throw new IllegalArgumentException("More values than blocks of the given size.");
+			}
+			int length = duplicate.remaining();
+			duplicate.get(data, offset, length);
+			offset += length;
+		}
+		if (offset != data.length) {
+			throw new IllegalArgumentException(
+					String.format("Expected %d values for the blocks, got %d.", data.length, offset));
+		}
+		return new BlockedFactors(data, numRows, numColumns, DEFAULT_KERNEL);
+	}
+
+	BlockedFactors(double[][] factors, ScoringKernel kernel) {
+		this.numRows = factors.length;
+		this.dim = numRows > 0 ? factors[0].length : 0;
+		this.kernel = kernel;
+
+		// the rows padding the last block are 0
+		this.data = new double[getNumBlocks() * BLOCK_SIZE * dim];
+		for (int row = 0; row < numRows; row++) {
+			if (factors[row].length != dim) {
+				throw new IllegalArgumentException("All rows must have the same number of dimensions.");
+			}
+			int offset = (row / BLOCK_SIZE) * BLOCK_SIZE * dim + row % BLOCK_SIZE;
+			for (int k = 0; k < dim; k++) {
+				data[offset + k * BLOCK_SIZE] = factors[row][k];
+			}
+		}
+	}
+
+	/**
+	 * Computes the dot product of the given vector with every row.
+	 *
+	 * @param u the vector
+	 * @return the dot products, one per row
+	 */
+	public double[] multiply(double[] u) {
+		double[] result = new double[numRows];
+		multiply(u, result, 0, getNumBlocks());
+		return result;
+	}
+
+	/**
+	 * Computes the dot products of the given vector with the rows of a block.
+	 *
+	 * @param u      the vector
+	 * @param block  the block
+	 * @param scores receives the {@value #BLOCK_SIZE} dot products, 0 for rows
+	 *               beyond the last one
+	 */
+	public void multiplyBlock(double[] u, int block, double[] scores) {
+		checkDimensions(u);
+		kernel.score(data, dim, u, block, block + 1, scores, 0);
+	}
+
+	/**
+	 * Computes the product <code>u * f^T</code> of the given matrix and this
+	 * matrix f, e.g. the item values of instances with the given latent
+	 * features. The rows of f are traversed in tiles which stay in cache for a
+	 * block of rows of u; for large products, the blocks of rows of u are
+	 * computed in parallel (in the fork join pool of the calling thread, if
+	 * any).
+	 *
+	 * @param u the matrix (rows x dimensions)
+	 * @return the product (rows of u x rows of f)
+	 */
+	public double[][] multiplyTransposed(double[][] u) {
+		double[][] result = new double[u.length][numRows];
+		if (u.length == 0 || numRows == 0) {
+			return result;
+		}
+
+		int numQueryBlocks = (u.length + QUERY_BLOCK - 1) / QUERY_BLOCK;
+		IntStream queryBlocks = IntStream.range(0, numQueryBlocks);
+		if ((long) u.length * numRows * dim >= PARALLEL_THRESHOLD) {
+			queryBlocks = queryBlocks.parallel();
+		}
+		queryBlocks.forEach(b -> {
+			int endQuery = Math.min(u.length, (b + 1) * QUERY_BLOCK);
+			for (int fromBlock = 0; fromBlock < getNumBlocks(); fromBlock += BLOCKS_PER_TILE) {
+				int toBlock = Math.min(getNumBlocks(), fromBlock + BLOCKS_PER_TILE);
+				for (int query = b * QUERY_BLOCK; query < endQuery; query++) {
+					multiply(u[query], result[query], fromBlock, toBlock);
+				}
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Scores the given blocks into the result, whose length is the number of
+	 * rows; the last block may be partial.
+	 */
+	private void multiply(double[] u, double[] result, int fromBlock, int toBlock) {
+		checkDimensions(u);
+		int fullBlocks = Math.min(toBlock, numRows / BLOCK_SIZE);
+		if (fromBlock < fullBlocks) {
+			kernel.score(data, dim, u, fromBlock, fullBlocks, result, fromBlock * BLOCK_SIZE);
+		}
+		if (toBlock > fullBlocks && fullBlocks < getNumBlocks()) {
+			double[] scores = new double[BLOCK_SIZE];
+			kernel.score(data, dim, u, fullBlocks, fullBlocks + 1, scores, 0);
+			System.arraycopy(scores, 0, result, fullBlocks * BLOCK_SIZE, numRows - fullBlocks * BLOCK_SIZE);
+		}
+	}
+
+	/**
+	 * Copies a row out of the blocked layout.
+	 *
+	 * @param row         the row
+	 * @param destination receives the values of the row, one per dimension
+	 */
+	public void getRow(int row, double[] destination) {
+		int offset = (row / BLOCK_SIZE) * BLOCK_SIZE * dim + row % BLOCK_SIZE;
+		for (int k = 0; k < dim; k++) {
+			destination[k] = data[offset + k * BLOCK_SIZE];
+		}
+	}
+
+	/**
+	 * Copies the values of a block as they are stored, dimension by dimension,
+	 * e.g. to write them to a file read by
+	 * {@link #fromBlocks(List, int, int)}.
+	 *
+	 * @param block       the block
+	 * @param destination receives the {@value #BLOCK_SIZE} values of each
+	 *                    dimension in turn
+	 */
+	public void getBlock(int block, double[] destination) {
+		System.arraycopy(data, block * BLOCK_SIZE * dim, destination, 0, BLOCK_SIZE * dim);
+	}
+
+	/**
+	 * @return a new copy of the matrix (rows x dimensions)
+	 */
+	public double[][] toArray() {
+		double[][] factors = new double[numRows][dim];
+		for (int row = 0; row < numRows; row++) {
+			getRow(row, factors[row]);
+		}
+		return factors;
+	}
+
+	private void checkDimensions(double[] u) {
+		// without rows, the number of dimensions is unknown
+		if (numRows > 0 && u.length != dim) {
+			throw new IllegalArgumentException(
+					String.format("Expected a vector of %d dimensions, got %d.", dim, u.length));
+		}
+	}
+
+	public int getNumRows() {
+		return numRows;
+	}
+
+	public int getNumColumns() {
+		return dim;
+	}
+
+	public int getNumBlocks() {
+		return (numRows + BLOCK_SIZE - 1) / BLOCK_SIZE;
+	}
+
+	/**
+	 * @return the name of the kernel used by default, e.g. to be logged with
+	 *         benchmark results
+	 */
+	public static String getDefaultKernelName() {
+		return DEFAULT_KERNEL.getClass().getSimpleName();
+	}
+
+	private static ScoringKernel loadDefaultKernel() {
+		Logger logger = LoggerFactory.getLogger(BlockedFactors.class);
+		if (!Boolean.parseBoolean(System.getProperty(VECTOR_SCORING_PROPERTY, "true"))) {
+			logger.debug("Vector scoring disabled, using the scalar kernel");
+			return new ScalarScoringKernel();
+		}
+		ScoringKernel vectorKernel = loadVectorKernel();
+		if (vectorKernel == null) {
+			logger.debug("Vector API not available, using the scalar kernel");
+			return new ScalarScoringKernel();
+		}
+		logger.debug("Using the vector kernel");
+		return vectorKernel;
+	}
+
+	/**
+	 * Loads the kernel using the vector API, which is only compiled on JDK 16 and
+	 * later and needs the module <code>jdk.incubator.vector</code> at runtime.
+	 *
+	 * @return the kernel, or null if it is not available
+	 */
+	static ScoringKernel loadVectorKernel() {
+		try {
+			return (ScoringKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+			// not compiled, module missing or no suitable vector size
+			return null;
+		}
+	}
+}
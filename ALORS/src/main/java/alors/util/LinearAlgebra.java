@@ -0,0 +1,164 @@
+package alors.util;
+
+import java.util.stream.IntStream;
+
+/**
+ * Small dense linear algebra routines needed by the pure java model
+ * implementations, working directly on primitive arrays.
+ *
+ * @author helegraf
+ *
+ */
+public final class LinearAlgebra {
+
+	// block sizes of the matrix product
+	private static final int BLOCK_ROWS = 64;
+	private static final int BLOCK_COLUMNS = 256;
+
+	// products with fewer multiplications are not worth parallelizing
+	private static final long PARALLEL_THRESHOLD = 1 << 18;
+
+	private LinearAlgebra() {
+		// static utility class
+	}
+
+	/**
+	 * Solves the linear system <code>a * x = b</code> for a symmetric positive
+	 * definite matrix <code>a</code> using a Cholesky decomposition. Both
+	 * <code>a</code> and <code>b</code> are overwritten during the computation;
+	 * the solution is written to <code>b</code>.
+	 *
+	 * @param a the symmetric positive definite matrix (only the lower triangle is
+	 *          read), will be overwritten with its Cholesky factor
+	 * @param b the right hand side, will be overwritten with the solution
+	 * @return the solution, i.e. <code>b</code>
+	 * @throws IllegalArgumentException if the matrix is not positive definite
+	 */
+	public static double[] solveSymmetricPositiveDefinite(double[][] a, double[] b) {
+		int n = b.length;
+
+		// decomposition a = l * l^T, l stored in the lower triangle of a
+		for (int j = 0; j < n; j++) {
+			double[] aj = a[j];
+			double diagonal = aj[j];
+			for (int k = 0; k < j; k++) {
+				diagonal -= aj[k] * aj[k];
+			}
+			if (diagonal <= 0 || Double.isNaN(diagonal)) {
+				throw new IllegalArgumentException("Matrix is not positive definite.");
+			}
+			diagonal = Math.sqrt(diagonal);
+			aj[j] = diagonal;
+
+			for (int i = j + 1; i < n; i++) {
+				double[] ai = a[i];
+				double sum = ai[j];
+				for (int k = 0; k < j; k++) {
+					sum -= ai[k] * aj[k];
+				}
+				ai[j] = sum / diagonal;
+			}
+		}
+
+		// forward substitution l * y = b
+		for (int i = 0; i < n; i++) {
+			double[] ai = a[i];
+			double sum = b[i];
+			for (int k = 0; k < i; k++) {
+				sum -= ai[k] * b[k];
+			}
+			b[i] = sum / ai[i];
+		}
+
+		// backward substitution l^T * x = y
+		for (int i = n - 1; i >= 0; i--) {
+			double sum = b[i];
+			for (int k = i + 1; k < n; k++) {
+				sum -= a[k][i] * b[k];
+			}
+			b[i] = sum / a[i][i];
+		}
+
+		return b;
+	}
+
+	/**
+	 * Computes the dot product of two vectors of equal length.
+	 *
+	 * @param x the first vector
+	 * @param y the second vector
+	 * @return the dot product
+	 */
+	public static double dot(double[] x, double[] y) {
+		double result = 0;
+		for (int i = 0; i < x.length; i++) {
+			result += x[i] * y[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the product <code>u * v^T</code> of two factor matrices, i.e. the
+	 * matrix that is approximated by a factorization into u and v. The product is
+	 * computed in blocks of rows and columns so that the block of v stays in
+	 * cache; for large products the row blocks are computed in parallel (in the
+	 * fork join pool of the calling thread, if any).
+	 *
+	 * @param u the row factors (rows x latent dimensions)
+	 * @param v the column factors (columns x latent dimensions)
+	 * @return the product (rows x columns)
+	 */
+	public static double[][] multiplyTransposed(double[][] u, double[][] v) {
+		double[][] result = new double[u.length][v.length];
+		if (u.length == 0 || v.length == 0) {
+			return result;
+		}
+
+		int numRowBlocks = (u.length + BLOCK_ROWS - 1) / BLOCK_ROWS;
+		IntStream blocks = IntStream.range(0, numRowBlocks);
+		if ((long) u.length * v.length * u[0].length >= PARALLEL_THRESHOLD) {
+			blocks = blocks.parallel();
+		}
+		blocks.forEach(b -> multiplyTransposedBlock(u, v, result, b * BLOCK_ROWS,
+				Math.min(u.length, (b + 1) * BLOCK_ROWS)));
+		return result;
+	}
+
+	private static void multiplyTransposedBlock(double[][] u, double[][] v, double[][] result, int startRow,
+			int endRow) {
+		for (int startColumn = 0; startColumn < v.length; startColumn += BLOCK_COLUMNS) {
+			int endColumn = Math.min(v.length, startColumn + BLOCK_COLUMNS);
+			for (int i = startRow; i < endRow; i++) {
+				double[] row = u[i];
+				double[] resultRow = result[i];
+
+				// four columns at once, reusing each entry of the row
+				int j = startColumn;
+				for (; j + 3 < endColumn; j += 4) {
+					double[] v0 = v[j];
+					double[] v1 = v[j + 1];
+					double[] v2 = v[j + 2];
+					double[] v3 = v[j + 3];
+					double sum0 = 0;
+					double sum1 = 0;
+					double sum2 = 0;
+					double sum3 = 0;
+					for (int k = 0; k < row.length; k++) {
+						double value = row[k];
+						sum0 += value * v0[k];
+						sum1 += value * v1[k];
+						sum2 += value * v2[k];
+						sum3 += value * v3[k];
+					}
+					resultRow[j] = sum0;
+					resultRow[j + 1] = sum1;
+					resultRow[j + 2] = sum2;
+					resultRow[j + 3] = sum3;
+				}
+				for (; j < endColumn; j++) {
+					resultRow[j] = dot(row, v[j]);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package alors.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Measures of how well predicted values rank items, compared to their true
+ * values, where higher values are better. Items whose true value is NaN (not
+ * observed) are ignored.
+ *
+ * @author helegraf
+ *
+ */
+public final class RankingMetrics {
+
+	private static final double LN_2 = Math.log(2);
+
+	private RankingMetrics() {
+		// static utility class
+	}
+
+	/**
+	 * Computes the normalized discounted cumulative gain of the k items with the
+	 * highest predicted values. The gains are the true values, shifted such that
+	 * the smallest one is 0.
+	 *
+	 * @param truth     the true values
+	 * @param predicted the predicted values
+	 * @param k         the number of items considered
+	 * @return the NDCG@k in [0, 1]; 1 if all items are equally good, NaN if no
+	 *         item is observed
+	 */
+	public static double ndcg(double[] truth, double[] predicted, int k) {
+		int[] observed = observedItems(truth);
+		int length = observed.length;
+		if (length == 0) {
+			return Double.NaN;
+		}
+
+		double minValue = Double.POSITIVE_INFINITY;
+		for (int item : observed) {
+			minValue = Math.min(minValue, truth[item]);
+		}
+		Integer[] byPrediction = byDescendingValue(observed, predicted);
+		double[] idealGains = new double[length];
+		double dcg = 0;
+		for (int position = 0; position < length; position++) {
+			idealGains[position] = truth[observed[position]] - minValue;
+			if (position < k) {
+				dcg += (truth[byPrediction[position]] - minValue) / discount(position);
+			}
+		}
+		Arrays.sort(idealGains);
+		double idealDcg = 0;
+		for (int position = 0; position < Math.min(k, length); position++) {
+			idealDcg += idealGains[length - 1 - position] / discount(position);
+		}
+		return idealDcg == 0 ? 1 : dcg / idealDcg;
+	}
+
+	/**
+	 * Computes the loss of choosing the item with the highest predicted value
+	 * instead of the truly best item.
+	 *
+	 * @param truth     the true values
+	 * @param predicted the predicted values
+	 * @return the difference of the true values of both items, NaN if no item is
+	 *         observed
+	 */
+	public static double topOneRegret(double[] truth, double[] predicted) {
+		int[] observed = observedItems(truth);
+		if (observed.length == 0) {
+			return Double.NaN;
+		}
+		int predictedBest = observed[0];
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for (int item : observed) {
+			if (predicted[item] > predicted[predictedBest]) {
+				predictedBest = item;
+			}
+			bestValue = Math.max(bestValue, truth[item]);
+		}
+		return bestValue - truth[predictedBest];
+	}
+
+	/**
+	 * Computes Spearman's rank correlation coefficient of the true and predicted
+	 * values, with ties given their average rank.
+	 *
+	 * @param truth     the true values
+	 * @param predicted the predicted values
+	 * @return the coefficient in [-1, 1], NaN if fewer than two items are
+	 *         observed or either values are all equal
+	 */
+	public static double spearman(double[] truth, double[] predicted) {
+		int[] observed = observedItems(truth);
+		int length = observed.length;
+		if (length < 2) {
+			return Double.NaN;
+		}
+		double[] truthRanks = ranks(observed, truth);
+		double[] predictedRanks = ranks(observed, predicted);
+
+		// Pearson correlation of the ranks, whose mean is (length + 1) / 2
+		double mean = (length + 1) / 2.0;
+		double covariance = 0;
+		double truthVariance = 0;
+		double predictedVariance = 0;
+		for (int n = 0; n < length; n++) {
+			double t = truthRanks[n] - mean;
+			double p = predictedRanks[n] - mean;
+			covariance += t * p;
+			truthVariance += t * t;
+			predictedVariance += p * p;
+		}
+		if (truthVariance == 0 || predictedVariance == 0) {
+			return Double.NaN;
+		}
+		return covariance / Math.sqrt(truthVariance * predictedVariance);
+	}
+
+	private static int[] observedItems(double[] truth) {
+		int count = 0;
+		for (double value : truth) {
+			if (!Double.isNaN(value)) {
+				count++;
+			}
+		}
+		int[] observed = new int[count];
+		count = 0;
+		for (int item = 0; item < truth.length; item++) {
+			if (!Double.isNaN(truth[item])) {
+				observed[count++] = item;
+			}
+		}
+		return observed;
+	}
+
+	private static Integer[] byDescendingValue(int[] items, double[] values) {
+		Integer[] sorted = new Integer[items.length];
+		for (int n = 0; n < items.length; n++) {
+			sorted[n] = items[n];
+		}
+		Arrays.sort(sorted, Comparator.comparingDouble((Integer item) -> values[item]).reversed());
+		return sorted;
+	}
+
+	/**
+	 * The 1-based ranks of the values of the given items, in the order of the
+	 * items, ties getting the average of their ranks.
+	 */
+	private static double[] ranks(int[] items, double[] values) {
+		int length = items.length;
+		Integer[] order = new Integer[length];
+		for (int n = 0; n < length; n++) {
+			order[n] = n;
+		}
+		Arrays.sort(order, Comparator.comparingDouble((Integer n) -> values[items[n]]));
+
+		double[] ranks = new double[length];
+		int start = 0;
+		while (start < length) {
+			int end = start + 1;
+			while (end < length && values[items[order[end]]] == values[items[order[start]]]) {
+				end++;
+			}
+			double averageRank = (start + 1 + end) / 2.0;
+			for (int n = start; n < end; n++) {
+				ranks[order[n]] = averageRank;
+			}
+			start = end;
+		}
+		return ranks;
+	}
+
+	private static double discount(int position) {
+		return Math.log(position + 2) / LN_2;
+	}
+}
@@ -0,0 +1,51 @@
+package alors.util;
+
+import static alors.util.BlockedFactors.BLOCK_SIZE;
+
+/**
+ * The portable {@link ScoringKernel}: keeps the scores of a block in eight
+ * independent accumulators, which the JIT compiler keeps in registers.
+ *
+ * @author helegraf
+ *
+ */
+final class ScalarScoringKernel implements ScoringKernel {
+
+	@Override
+	public void score(double[] data, int dim, double[] u, int fromBlock, int toBlock, double[] result,
+			int resultOffset) {
+		int blockLength = BLOCK_SIZE * dim;
+		int position = resultOffset;
+		for (int block = fromBlock; block < toBlock; block++) {
+			int offset = block * blockLength;
+			double sum0 = 0;
+			double sum1 = 0;
+			double sum2 = 0;
+			double sum3 = 0;
+			double sum4 = 0;
+			double sum5 = 0;
+			double sum6 = 0;
+			double sum7 = 0;
+			for (int k = 0; k < dim; k++, offset += BLOCK_SIZE) {
+				double value = u[k];
+				sum0 += value * data[offset];
+				sum1 += value * data[offset + 1];
+				sum2 += value * data[offset + 2];
+				sum3 += value * data[offset + 3];
+				sum4 += value * data[offset + 4];
+				sum5 += value * data[offset + 5];
+				sum6 += value * data[offset + 6];
+				sum7 += value * data[offset + 7];
+			}
+			result[position] = sum0;
+			result[position + 1] = sum1;
+			result[position + 2] = sum2;
+			result[position + 3] = sum3;
+			result[position + 4] = sum4;
+			result[position + 5] = sum5;
+			result[position + 6] = sum6;
+			result[position + 7] = sum7;
+			position += BLOCK_SIZE;
+		}
+	}
+}
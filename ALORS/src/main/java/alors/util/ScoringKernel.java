@@ -0,0 +1,28 @@
+package alors.util;
+
+/**
+ * Computes the dot products of a query vector with the rows of an
+ * item-blocked factor matrix (see {@link BlockedFactors}). Implementations
+ * must add the products of each row in order of the latent dimensions, like
+ * {@link LinearAlgebra#dot(double[], double[])}, so that all kernels compute
+ * identical scores.
+ *
+ * @author helegraf
+ *
+ */
+interface ScoringKernel {
+
+	/**
+	 * Scores the rows of the given blocks.
+	 *
+	 * @param data         the blocked factors
+	 * @param dim          the number of latent dimensions
+	 * @param u            the query vector
+	 * @param fromBlock    the first block (inclusive)
+	 * @param toBlock      the last block (exclusive)
+	 * @param result       receives the {@link BlockedFactors#BLOCK_SIZE} scores
+	 *                     of each block
+	 * @param resultOffset the position of the first score in the result
+	 */
+	void score(double[] data, int dim, double[] u, int fromBlock, int toBlock, double[] result, int resultOffset);
+}
@@ -0,0 +1,91 @@
+package alors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import alors.latent_features.FeaturePredictor;
+
+/**
+ * Tests folding new instances into an {@link AlorsModel}.
+ *
+ * @author helegraf
+ *
+ */
+public class AlorsModelTest {
+
+	/**
+	 * Tests that the latent features of an instance are recovered from a few
+	 * exact observations, so that all other items are predicted correctly.
+	 */
+	@Test
+	public void testFoldIn() {
+		Random random = new Random(0);
+		double[][] v = new double[20][3];
+		for (double[] row : v) {
+			for (int k = 0; k < 3; k++) {
+				row[k] = random.nextGaussian();
+			}
+		}
+		double[] latentFeatures = { 0.5, -1, 2 };
+		AlorsModel model = new AlorsModel(new double[0][3], v, new FixedFeaturePredictor(new double[3]));
+
+		double[] expected = model.predictForLatentFeatures(latentFeatures);
+		double[] observedRow = new double[20];
+		Arrays.fill(observedRow, Double.NaN);
+		for (int j = 0; j < 5; j++) {
+			observedRow[j] = expected[j];
+		}
+
+		assertArrayEquals(latentFeatures, model.foldIn(observedRow, 1e-9), 1e-6);
+		assertArrayEquals(expected, model.predictForLatentFeatures(model.foldIn(observedRow, 1e-9)), 1e-6);
+	}
+
+	/**
+	 * Tests that the latent features predicted from the instance features are
+	 * used without observations and are weighted by the regularization
+	 * otherwise.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFoldInWithPrior() throws Exception {
+		double[][] v = { { 1, 0 }, { 0, 1 }, { 1, 1 } };
+		double[] prior = { 2, 3 };
+		AlorsModel model = new AlorsModel(new double[0][2], v, new FixedFeaturePredictor(prior));
+		double[] featureVectorX = { 42 };
+
+		double[] nothingObserved = { Double.NaN, Double.NaN, Double.NaN };
+		assertArrayEquals(prior, model.foldIn(featureVectorX, nothingObserved, 0.1), 1e-12);
+
+		// the first item contradicts the prior; the weaker the prior, the closer the fit
+		double[] observedRow = { -2, Double.NaN, Double.NaN };
+		double[] weakPrior = model.foldIn(featureVectorX, observedRow, 0.01);
+		double[] strongPrior = model.foldIn(featureVectorX, observedRow, 100);
+		assertTrue(Math.abs(weakPrior[0] + 2) < 0.1);
+		assertTrue(Math.abs(strongPrior[0] - 2) < 0.1);
+		assertArrayEquals(new double[] { 3, 3 }, new double[] { weakPrior[1], strongPrior[1] }, 1e-12);
+	}
+
+	private static class FixedFeaturePredictor implements FeaturePredictor {
+
+		private final double[] latentFeatures;
+
+		private FixedFeaturePredictor(double[] latentFeatures) {
+			this.latentFeatures = latentFeatures;
+		}
+
+		@Override
+		public void train(double[][] featureMatrixX, double[][] featureMatrixU) {
+		}
+
+		@Override
+		public double[] predict(double[] featureVectorX) {
+			return latentFeatures.clone();
+		}
+	}
+}
@@ -1,11 +1,17 @@
 package alors;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterEach;
@@ -16,9 +22,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import alors.latent_features.FeaturePredictorException;
+import alors.latent_features.WEKAFeaturePredictor;
+import alors.latent_features.forest.MultiTargetRandomForestPredictor;
 import alors.matrix_completion.MatrixCompleterException;
+import alors.matrix_completion.SparseMatrix;
+import alors.matrix_completion.als.AlternatingLeastSquaresCompleter;
 import alors.matrix_completion.cofirank.CofiConfig;
 import alors.matrix_completion.cofirank.CofirankCPlusPlus;
+import alors.metrics.InMemoryMetricsRegistry;
+import alors.metrics.Metrics;
 import weka.core.Instances;
 import weka.core.converters.ArffLoader.ArffReader;
 
@@ -62,10 +74,10 @@ public class AlorsTest {
 		Instances test = new Instances(data, data.numInstances() - 10, 10);
 
 		// split into X (instance features) and M (instance w\ algorithm performances)
-		double[][] x_train = getPortion(train, 22, false);
-		double[][] m_train = getPortion(train, 22, true);
-		double[][] x_test = getPortion(test, 22, false);
-		double[][] m_test = getPortion(test, 22, true);
+		double[][] x_train = TestData.getPortion(train, 22, false);
+		double[][] m_train = TestData.getPortion(train, 22, true);
+		double[][] x_test = TestData.getPortion(test, 22, false);
+		double[][] m_test = TestData.getPortion(test, 22, true);
 
 		// train
 		String executablePath = Paths.get("cofirank", "dist", "cofirank-deploy").toString();
@@ -109,21 +121,144 @@ public class AlorsTest {
 		assertEquals(0.0, avgRmse, 20.0);
 	}
 
-	private double[][] getPortion(Instances data, int numClassifiers, boolean getClassifiers) {
-		int numAttributes = getClassifiers ? numClassifiers : data.numAttributes() - numClassifiers;
-		double[][] newData = new double[data.numInstances()][numAttributes];
-
-		for (int i = 0; i < data.numInstances(); i++) {
-			int index = 0;
-			double[] instance = data.get(i).toDoubleArray();
-			for (int j = 0; j < data.numAttributes(); j++) {
-				if (data.attribute(j).name().startsWith("weka") == getClassifiers) {
-					newData[i][index] = instance[j];
-					index++;
-				}
+	/**
+	 * Tests the basic functionality of {@link Alors} by solving a small dataset
+	 * with the pure java {@link AlternatingLeastSquaresCompleter}, so available on
+	 * any OS.
+	 * 
+	 * @throws IOException
+	 * @throws MatrixCompleterException
+	 * @throws FeaturePredictorException
+	 * @throws AlorsException
+	 */
+	@Test
+	public void testALORSExecutionWithALS()
+			throws IOException, MatrixCompleterException, FeaturePredictorException, AlorsException {
+		// read some instances
+		BufferedReader reader = new BufferedReader(
+				new FileReader(Paths.get("src", "test", "resources", "noProbing_nonan_noid.arff").toString()));
+		ArffReader arff = new ArffReader(reader);
+		Instances data = arff.getData();
+		Instances train = new Instances(data, 0, data.numInstances() - 10);
+		Instances test = new Instances(data, data.numInstances() - 10, 10);
+
+		double[][] x_train = TestData.getPortion(train, 22, false);
+		double[][] m_train = TestData.getPortion(train, 22, true);
+		double[][] x_test = TestData.getPortion(test, 22, false);
+		double[][] m_test = TestData.getPortion(test, 22, true);
+
+		// train
+		Alors alors = new Alors(new AlternatingLeastSquaresCompleter());
+		alors.completeMatrixAndPrepareColdStart(m_train, x_train);
+
+		assertEquals(true, alors.isPrepared());
+
+		// test
+		double[][] predictions = alors.predictForFeatures(x_test);
+		double avgRmse = 0;
+		for (int i = 0; i < x_test.length; i++) {
+			double[] prediction = alors.predictForFeatures(x_test[i]);
+			assertArrayEquals(prediction, predictions[i], 1e-9);
+
+			// the top 3 items are the best predicted ones
+			Recommendation recommendation = alors.recommendTopK(x_test[i], 3);
+			double[] sorted = prediction.clone();
+			Arrays.sort(sorted);
+			for (int rank = 0; rank < 3; rank++) {
+				assertEquals(sorted[sorted.length - 1 - rank], recommendation.getScore(rank), 1e-9);
+				assertEquals(prediction[recommendation.getItem(rank)], recommendation.getScore(rank), 1e-9);
+			}
+
+			double rmse = 0;
+			for (int j = 0; j < prediction.length; j++) {
+				rmse += Math.pow(prediction[j] - m_test[i][j], 2);
 			}
+			avgRmse += Math.sqrt(rmse / prediction.length);
 		}
 
-		return newData;
+		avgRmse /= x_test.length;
+		logger.info("Total rmse {}", avgRmse);
+
+		// basic performance assumption
+		assertEquals(0.0, avgRmse, 20.0);
+	}
+
+	/**
+	 * Tests that predictions keep using the previous model while Alors is
+	 * retrained in the background, and that a model is not changed by later
+	 * trainings.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRetrainAsync() throws Exception {
+		BufferedReader reader = new BufferedReader(
+				new FileReader(Paths.get("src", "test", "resources", "noProbing_nonan_noid.arff").toString()));
+		Instances data = new ArffReader(reader).getData();
+		double[][] x = TestData.getPortion(data, 22, false);
+		double[][] m = TestData.getPortion(data, 22, true);
+
+		Alors alors = new Alors(new AlternatingLeastSquaresCompleter());
+		alors.setFeaturePredictorFactory(() -> {
+			MultiTargetRandomForestPredictor predictor = new MultiTargetRandomForestPredictor();
+			predictor.setNumTrees(20);
+			return predictor;
+		});
+		alors.prepareColdStart(Arrays.copyOf(m, m.length / 2), Arrays.copyOf(x, x.length / 2));
+		AlorsModel firstModel = alors.getModel();
+		double[] firstPrediction = alors.predictForFeatures(x[0]);
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			CompletableFuture<AlorsModel> retraining = alors.retrainAsync(SparseMatrix.fromDense(m), x, executor);
+			while (!retraining.isDone()) {
+				assertEquals(22, alors.predictForFeatures(x[0]).length);
+			}
+			AlorsModel secondModel = retraining.get();
+
+			assertNotSame(firstModel, secondModel);
+			assertEquals(secondModel, alors.getModel());
+			assertEquals(m.length, secondModel.getU().length);
+			assertArrayEquals(firstPrediction, firstModel.predictForFeatures(x[0]));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Tests that training and predictions are recorded to the metrics registry.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testMetrics() throws Exception {
+		BufferedReader reader = new BufferedReader(
+				new FileReader(Paths.get("src", "test", "resources", "noProbing_nonan_noid.arff").toString()));
+		Instances data = new ArffReader(reader).getData();
+		double[][] x = TestData.getPortion(data, 22, false);
+		double[][] m = TestData.getPortion(data, 22, true);
+
+		InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+		Metrics.setRegistry(registry);
+		try {
+			Alors alors = new Alors(new AlternatingLeastSquaresCompleter());
+			WEKAFeaturePredictor predictor = new WEKAFeaturePredictor();
+			predictor.setClassifierOptions(new String[] { "-I", "10" });
+			alors.setFeaturePredictorFactory(() -> predictor);
+			alors.completeMatrixAndPrepareColdStart(m, x);
+			alors.predictForFeatures(x[0]);
+			alors.predictForFeatures(x);
+
+			assertEquals(1, registry.getHistogram(Metrics.ALORS_FACTORIZATION).getCount());
+			assertEquals(1, registry.getHistogram(Metrics.ALORS_FEATURE_PREDICTOR_TRAINING).getCount());
+			assertEquals(alors.getModel().getU()[0].length,
+					registry.getHistogram(Metrics.REGRESSOR_TRAINING).getCount());
+			assertEquals(m.length * m[0].length, registry.getCounter(Metrics.ALORS_OBSERVED_ENTRIES));
+			assertEquals(1, registry.getHistogram(Metrics.ALORS_PREDICTION).getCount());
+			assertEquals(1, registry.getHistogram(Metrics.ALORS_BATCH_PREDICTION).getCount());
+			assertEquals(1 + x.length, registry.getCounter(Metrics.ALORS_PREDICTED_INSTANCES));
+		} finally {
+			Metrics.setRegistry(null);
+		}
 	}
 }
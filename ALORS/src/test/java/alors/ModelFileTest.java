@@ -0,0 +1,170 @@
+package alors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import alors.latent_features.FeaturePredictor;
+import alors.latent_features.WEKAFeaturePredictor;
+import alors.latent_features.forest.MultiTargetRandomForestPredictor;
+
+/**
+ * Tests saving and loading {@link AlorsModel}s.
+ *
+ * @author helegraf
+ *
+ */
+public class ModelFileTest {
+
+	/**
+	 * Tests that a loaded model has the same factors and makes the same
+	 * predictions, for both feature predictors.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSaveAndLoad() throws Exception {
+		Random random = new Random(0);
+		double[][] x = TestData.randomMatrix(random, 30, 4);
+		double[][] u = TestData.randomMatrix(random, 30, 3);
+		double[][] v = TestData.randomMatrix(random, 7, 3);
+
+		MultiTargetRandomForestPredictor forest = new MultiTargetRandomForestPredictor();
+		forest.setNumTrees(10);
+		WEKAFeaturePredictor weka = new WEKAFeaturePredictor();
+		for (FeaturePredictor predictor : Arrays.asList(forest, weka)) {
+			predictor.train(x, u);
+			AlorsModel model = new AlorsModel(u, v, predictor);
+
+			Path path = Files.createTempFile("alors", ".model");
+			try {
+				model.save(path);
+				AlorsModel loaded = AlorsModel.load(path);
+
+				assertEquals(v.length, loaded.getNumItems());
+				for (int j = 0; j < v.length; j++) {
+					assertArrayEquals(v[j], loaded.getV()[j]);
+				}
+				for (int i = 0; i < u.length; i++) {
+					assertArrayEquals(u[i], loaded.getU()[i]);
+				}
+				double[][] predictions = model.predictForFeatures(x);
+				double[][] loadedPredictions = loaded.predictForFeatures(x);
+				for (int i = 0; i < x.length; i++) {
+					assertArrayEquals(predictions[i], loadedPredictions[i]);
+				}
+			} finally {
+				Files.delete(path);
+			}
+		}
+	}
+
+	/**
+	 * Tests that saving a model over the file of a loaded model, whose U has not
+	 * been read yet, leaves the loaded model intact.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testOverwriteLoadedModel() throws Exception {
+		MultiTargetRandomForestPredictor predictor = new MultiTargetRandomForestPredictor();
+		predictor.setNumTrees(1);
+		predictor.train(new double[][] { { 1 }, { 2 } }, new double[][] { { 1, 2 }, { 3, 4 } });
+		double[][] u = { { 1, 2 }, { 3, 4 } };
+		AlorsModel model = new AlorsModel(u, new double[][] { { 0.5, -1 } }, predictor);
+		AlorsModel otherModel = new AlorsModel(new double[][] { { 5, 6 } }, new double[][] { { 7, 8 }, { 9, 10 } },
+				predictor);
+
+		Path path = Files.createTempFile("alors", ".model");
+		try {
+			model.save(path);
+			AlorsModel loaded = AlorsModel.load(path);
+			otherModel.save(path);
+
+			assertEquals(u.length, loaded.getU().length);
+			for (int i = 0; i < u.length; i++) {
+				assertArrayEquals(u[i], loaded.getU()[i]);
+			}
+			assertEquals(2, AlorsModel.load(path).getNumItems());
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(path.getParent(),
+					path.getFileName() + "*.tmp")) {
+				assertFalse(files.iterator().hasNext());
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	/**
+	 * Tests the little-endian header of a saved model.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testHeader() throws Exception {
+		MultiTargetRandomForestPredictor predictor = new MultiTargetRandomForestPredictor();
+		predictor.setNumTrees(1);
+		predictor.train(new double[][] { { 1 }, { 2 } }, new double[][] { { 1, 2 }, { 3, 4 } });
+		AlorsModel model = new AlorsModel(new double[][] { { 1, 2 }, { 3, 4 } }, new double[][] { { 0.5, -1 } },
+				predictor);
+
+		Path path = Files.createTempFile("alors", ".model");
+		try {
+			model.save(path);
+			ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+			assertEquals(ModelFile.MAGIC, bytes.getInt());
+			assertEquals(ModelFile.VERSION, bytes.getInt());
+			assertEquals(2, bytes.getInt());
+			assertEquals(1, bytes.getInt());
+			assertEquals(2, bytes.getInt());
+			assertEquals(0, bytes.getInt());
+			double[] factors = new double[20];
+			bytes.asDoubleBuffer().get(factors);
+			// U row-major, then the only block of V dimension by dimension
+			assertArrayEquals(
+					new double[] { 1, 2, 3, 4, 0.5, 0, 0, 0, 0, 0, 0, 0, -1, 0, 0, 0, 0, 0, 0, 0 },
+					factors);
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	/**
+	 * Tests that files which are not complete model files are rejected.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testInvalidFile() throws Exception {
+		MultiTargetRandomForestPredictor predictor = new MultiTargetRandomForestPredictor();
+		predictor.setNumTrees(1);
+		predictor.train(new double[][] { { 1 }, { 2 } }, new double[][] { { 1 }, { 3 } });
+		AlorsModel model = new AlorsModel(new double[][] { { 1 }, { 3 } }, new double[][] { { 1 } }, predictor);
+
+		Path path = Files.createTempFile("alors", ".model");
+		try {
+			model.save(path);
+			byte[] bytes = Files.readAllBytes(path);
+			Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+			assertThrows(IOException.class, () -> AlorsModel.load(path));
+
+			bytes[0] = 0;
+			Files.write(path, bytes);
+			assertThrows(IOException.class, () -> AlorsModel.load(path));
+		} finally {
+			Files.delete(path);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package alors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import alors.util.BlockedFactors;
+import alors.util.LinearAlgebra;
+
+/**
+ * Tests {@link NormSortedItems}.
+ * 
+ * @author helegraf
+ *
+ */
+public class NormSortedItemsTest {
+
+	/**
+	 * Tests that the top k items with and without pruning equal those of a full
+	 * sort.
+	 */
+	@Test
+	public void testTopK() {
+		Random random = new Random(0);
+		double[][] v = new double[5000][8];
+		for (int j = 0; j < v.length; j++) {
+			double scale = random.nextDouble() * 3;
+			for (int d = 0; d < v[j].length; d++) {
+				v[j][d] = scale * random.nextGaussian();
+			}
+		}
+		NormSortedItems items = new NormSortedItems(new BlockedFactors(v));
+
+		for (int query = 0; query < 20; query++) {
+			double[] u = new double[8];
+			for (int d = 0; d < u.length; d++) {
+				u[d] = random.nextGaussian();
+			}
+			int[] expected = IntStream.range(0, v.length).boxed()
+					.sorted(Comparator.comparingDouble((Integer j) -> LinearAlgebra.dot(u, v[j])).reversed())
+					.mapToInt(Integer::intValue).toArray();
+
+			for (int k : new int[] { 1, 10, 100 }) {
+				for (boolean prune : new boolean[] { true, false }) {
+					Recommendation recommendation = items.topK(u, k, prune);
+					assertArrayEquals(Arrays.copyOf(expected, k), recommendation.getItems());
+					for (int rank = 0; rank < k; rank++) {
+						assertEquals(LinearAlgebra.dot(u, v[expected[rank]]), recommendation.getScore(rank));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests asking for more items than there are.
+	 */
+	@Test
+	public void testKLargerThanItems() {
+		double[][] v = { { 1, 0 }, { 0, 2 }, { -1, -1 } };
+		Recommendation recommendation = new NormSortedItems(new BlockedFactors(v)).topK(new double[] { 1, 1 }, 5, true);
+		assertArrayEquals(new int[] { 1, 0, 2 }, recommendation.getItems());
+		assertArrayEquals(new double[] { 2, 1, -2 }, recommendation.getScores());
+	}
+}
@@ -0,0 +1,92 @@
+package alors;
+
+import java.util.Random;
+
+import alors.matrix_completion.FactorizedMatrix;
+import weka.core.Instances;
+
+/**
+ * Prepares the data of the tests. Random data is drawn from the given
+ * generator, which the tests seed so that every run sees the same data.
+ *
+ * @author helegraf
+ *
+ */
+public final class TestData {
+
+	private TestData() {
+	}
+
+	/**
+	 * Creates a matrix of normally distributed values.
+	 *
+	 * @param random     the random number generator
+	 * @param numRows    the number of rows
+	 * @param numColumns the number of columns
+	 * @return the matrix
+	 */
+	public static double[][] randomMatrix(Random random, int numRows, int numColumns) {
+		double[][] matrix = new double[numRows][numColumns];
+		for (double[] row : matrix) {
+			for (int j = 0; j < numColumns; j++) {
+				row[j] = random.nextGaussian();
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * Creates an incomplete matrix of the given rank, the product of two
+	 * normally distributed factors, of which each entry is missing (NaN) with
+	 * the given probability.
+	 *
+	 * @param random      the random number generator
+	 * @param numRows     the number of rows
+	 * @param numColumns  the number of columns
+	 * @param rank        the rank
+	 * @param missingRate the probability of an entry being missing
+	 * @return the matrix
+	 */
+	public static double[][] lowRankMatrix(Random random, int numRows, int numColumns, int rank,
+			double missingRate) {
+		double[][] u = randomMatrix(random, numRows, rank);
+		double[][] v = randomMatrix(random, numColumns, rank);
+		double[][] matrix = new FactorizedMatrix(u, v).toDense();
+		for (double[] row : matrix) {
+			for (int j = 0; j < numColumns; j++) {
+				if (random.nextDouble() < missingRate) {
+					row[j] = Double.NaN;
+				}
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * Extracts either the instance features or the algorithm performances of a
+	 * dataset whose performance attributes are named after WEKA classifiers.
+	 *
+	 * @param data           the dataset
+	 * @param numClassifiers the number of performance attributes
+	 * @param getClassifiers whether to extract the performances instead of the
+	 *                       features
+	 * @return the extracted values (rows = instances)
+	 */
+	public static double[][] getPortion(Instances data, int numClassifiers, boolean getClassifiers) {
+		int numAttributes = getClassifiers ? numClassifiers : data.numAttributes() - numClassifiers;
+		double[][] newData = new double[data.numInstances()][numAttributes];
+
+		for (int i = 0; i < data.numInstances(); i++) {
+			int index = 0;
+			double[] instance = data.get(i).toDoubleArray();
+			for (int j = 0; j < data.numAttributes(); j++) {
+				if (data.attribute(j).name().startsWith("weka") == getClassifiers) {
+					newData[i][index] = instance[j];
+					index++;
+				}
+			}
+		}
+
+		return newData;
+	}
+}
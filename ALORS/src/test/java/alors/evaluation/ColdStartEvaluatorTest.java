@@ -0,0 +1,102 @@
+package alors.evaluation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import alors.Alors;
+import alors.AlorsException;
+import alors.TestData;
+import alors.evaluation.ColdStartEvaluation.Phase;
+import alors.evaluation.ColdStartEvaluation.PhaseStatistics;
+import alors.latent_features.FeaturePredictorException;
+import alors.latent_features.forest.MultiTargetRandomForestPredictor;
+import alors.matrix_completion.MatrixCompleterException;
+import alors.matrix_completion.als.AlternatingLeastSquaresCompleter;
+import weka.core.Instances;
+import weka.core.converters.ArffLoader.ArffReader;
+
+/**
+ * Testing {@link ColdStartEvaluator}.
+ * 
+ * @author helegraf
+ *
+ */
+public class ColdStartEvaluatorTest {
+
+	private static double[][] x;
+	private static double[][] m;
+
+	@BeforeAll
+	public static void readData() throws IOException {
+		BufferedReader reader = new BufferedReader(
+				new FileReader(Paths.get("src", "test", "resources", "noProbing_nonan_noid.arff").toString()));
+		Instances data = new ArffReader(reader).getData();
+		x = TestData.getPortion(data, 22, false);
+		m = TestData.getPortion(data, 22, true);
+	}
+
+	/**
+	 * Tests a k-fold cross-validation: every instance is predicted once and each
+	 * phase reports its statistics.
+	 */
+	@Test
+	public void testCrossValidation() throws MatrixCompleterException, FeaturePredictorException, AlorsException {
+		ColdStartEvaluator evaluator = new ColdStartEvaluator(ColdStartEvaluatorTest::createAlors);
+		evaluator.setNumFolds(5);
+		evaluator.setNumThreads(2);
+		ColdStartEvaluation evaluation = evaluator.evaluate(m, x);
+
+		assertEquals(m.length, evaluation.getNdcg().length);
+		for (int i = 0; i < m.length; i++) {
+			double ndcg = evaluation.getNdcg()[i];
+			assertTrue(ndcg >= 0 && ndcg <= 1 + 1e-9, "NDCG out of range: " + ndcg);
+			assertTrue(evaluation.getRegret()[i] >= 0);
+			assertFalse(Double.isNaN(evaluation.getSpearman()[i]));
+		}
+		// the predictions should rank the algorithms better than chance
+		assertTrue(evaluation.getMeanSpearman() > 0, evaluation.toString());
+
+		for (Phase phase : Phase.values()) {
+			PhaseStatistics statistics = evaluation.getPhaseStatistics(phase);
+			assertEquals(5, statistics.getFoldMillis().length);
+			assertTrue(statistics.getMaxFoldMillis() <= statistics.getWallClockMillis());
+			assertTrue(statistics.getPeakHeapBytes() > 0);
+		}
+	}
+
+	/**
+	 * Tests that leave-one-out trains once per instance and that lower values can
+	 * be declared better.
+	 */
+	@Test
+	public void testLeaveOneOut() throws MatrixCompleterException, FeaturePredictorException, AlorsException {
+		ColdStartEvaluator evaluator = new ColdStartEvaluator(ColdStartEvaluatorTest::createAlors);
+		evaluator.setNumFolds(ColdStartEvaluator.LEAVE_ONE_OUT);
+		evaluator.setHigherBetter(false);
+		ColdStartEvaluation evaluation = evaluator.evaluate(m, x);
+
+		assertEquals(m.length, evaluation.getPhaseStatistics(Phase.TRAINING).getFoldMillis().length);
+		for (int i = 0; i < m.length; i++) {
+			assertTrue(evaluation.getRegret()[i] >= 0);
+		}
+	}
+
+	private static Alors createAlors() {
+		Alors alors = new Alors(new AlternatingLeastSquaresCompleter());
+		alors.setFeaturePredictorFactory(() -> {
+			MultiTargetRandomForestPredictor predictor = new MultiTargetRandomForestPredictor();
+			predictor.setNumTrees(10);
+			return predictor;
+		});
+		return alors;
+	}
+}
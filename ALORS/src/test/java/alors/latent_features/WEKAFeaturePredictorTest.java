@@ -2,13 +2,25 @@ package alors.latent_features;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import weka.classifiers.functions.Logistic;
+import weka.classifiers.rules.ZeroR;
+
 /**
  * Tests {@link WEKAFeaturePredictor}.
  * 
@@ -55,4 +67,201 @@ public class WEKAFeaturePredictorTest {
 		// basic output assertions
 		assertArrayEquals(new double[] {4, 5}, prediction, 2.0);
 	}
+
+	/**
+	 * Tests that without options, the regressors use the defaults of the
+	 * classifier.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testDefaultOptions() throws Exception {
+		WEKAFeaturePredictor predictor = new WEKAFeaturePredictor();
+		predictor.setClassifierOptions(null);
+		predictor.train(new double[][] { { 1, 2, 3 }, { 4, 5, 6 }, { 7, 8, 9 } },
+				new double[][] { { 1, 2 }, { 4, 5 }, { 7, 8 } });
+
+		assertEquals(2, predictor.predict(new double[] { 4, 5, 6 }).length);
+	}
+
+	/**
+	 * Tests that a failure to train is reported for the first latent feature, no
+	 * matter which regressor fails first.
+	 */
+	@Test
+	public void testTrainFailure() {
+		WEKAFeaturePredictor predictor = new WEKAFeaturePredictor();
+		predictor.setNumThreads(4);
+		// logistic regression cannot handle a numeric target
+		predictor.setClassifierName(Logistic.class.getName());
+		predictor.setClassifierOptions(new String[0]);
+		double[][] featureMatrixX = { { 1, 2, 3 }, { 4, 5, 6 }, { 7, 8, 9 } };
+		double[][] featureMatrixU = { { 1, 2, 3 }, { 4, 5, 6 }, { 7, 8, 9 } };
+
+		FeaturePredictorException exception = assertThrows(FeaturePredictorException.class,
+				() -> predictor.train(featureMatrixX, featureMatrixU));
+		assertEquals("Could not train regressor for latent feature 0", exception.getMessage());
+		assertEquals(false, predictor.isPrepared());
+	}
+
+	/**
+	 * Tests that training again replaces the previous regressors.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRetrain() throws Exception {
+		WEKAFeaturePredictor predictor = new WEKAFeaturePredictor();
+		predictor.setNumThreads(3);
+		double[][] featureMatrixX = { { 1, 2, 3 }, { 4, 5, 6 }, { 7, 8, 9 } };
+
+		predictor.train(featureMatrixX, new double[][] { { 1, 2 }, { 4, 5 }, { 7, 8 } });
+		predictor.train(featureMatrixX, new double[][] { { 1, 2, 3 }, { 4, 5, 6 }, { 7, 8, 9 } });
+
+		assertEquals(3, predictor.predict(new double[] { 4, 5, 6 }).length);
+	}
+
+	/**
+	 * Tests that sharing the features between the datasets of the latent features
+	 * does not change the predictions.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testSharedFeaturesGiveSamePredictions() throws Exception {
+		Random random = new Random(0);
+		double[][] featureMatrixX = new double[50][6];
+		double[][] featureMatrixU = new double[50][3];
+		for (int i = 0; i < featureMatrixX.length; i++) {
+			for (int j = 0; j < featureMatrixX[i].length; j++) {
+				featureMatrixX[i][j] = random.nextDouble();
+			}
+			for (int j = 0; j < featureMatrixU[i].length; j++) {
+				featureMatrixU[i][j] = featureMatrixX[i][j] + featureMatrixX[i][j + 3] + 0.1 * random.nextGaussian();
+			}
+		}
+
+		WEKAFeaturePredictor shared = new WEKAFeaturePredictor();
+		shared.setShareFeatures(true);
+		shared.train(featureMatrixX, featureMatrixU);
+		WEKAFeaturePredictor copied = new WEKAFeaturePredictor();
+		copied.setShareFeatures(false);
+		copied.train(featureMatrixX, featureMatrixU);
+
+		double[][] sharedPredictions = shared.predict(featureMatrixX);
+		double[][] copiedPredictions = copied.predict(featureMatrixX);
+		for (int i = 0; i < featureMatrixX.length; i++) {
+			assertArrayEquals(copiedPredictions[i], sharedPredictions[i]);
+		}
+	}
+
+	/**
+	 * Tests that a batch spanning several blocks of instances is predicted like
+	 * its instances one by one.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testBatchPredictionMatchesSinglePredictions() throws Exception {
+		Random random = new Random(0);
+		double[][] featureMatrixX = new double[600][4];
+		double[][] featureMatrixU = new double[600][2];
+		for (int i = 0; i < featureMatrixX.length; i++) {
+			for (int j = 0; j < featureMatrixX[i].length; j++) {
+				featureMatrixX[i][j] = random.nextDouble();
+			}
+			for (int j = 0; j < featureMatrixU[i].length; j++) {
+				featureMatrixU[i][j] = featureMatrixX[i][j] - featureMatrixX[i][j + 2];
+			}
+		}
+		WEKAFeaturePredictor predictor = new WEKAFeaturePredictor();
+		predictor.train(featureMatrixX, featureMatrixU);
+
+		double[][] predictions = predictor.predict(featureMatrixX);
+		assertEquals(featureMatrixX.length, predictions.length);
+		for (int i = 0; i < featureMatrixX.length; i++) {
+			assertArrayEquals(predictor.predict(featureMatrixX[i]), predictions[i]);
+		}
+	}
+
+	/**
+	 * Tests that single predictions from several threads at once give the same
+	 * results as sequential ones.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testConcurrentPredictions() throws Exception {
+		Random random = new Random(0);
+		double[][] featureMatrixX = new double[50][4];
+		double[][] featureMatrixU = new double[50][2];
+		for (int i = 0; i < featureMatrixX.length; i++) {
+			for (int j = 0; j < featureMatrixX[i].length; j++) {
+				featureMatrixX[i][j] = random.nextDouble();
+			}
+			for (int j = 0; j < featureMatrixU[i].length; j++) {
+				featureMatrixU[i][j] = featureMatrixX[i][j] - featureMatrixX[i][j + 2];
+			}
+		}
+		WEKAFeaturePredictor predictor = new WEKAFeaturePredictor();
+		predictor.train(featureMatrixX, featureMatrixU);
+		double[][] expected = new double[featureMatrixX.length][];
+		for (int i = 0; i < featureMatrixX.length; i++) {
+			expected[i] = predictor.predict(featureMatrixX[i]);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<double[][]>> futures = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				futures.add(executor.submit(() -> {
+					double[][] predictions = new double[featureMatrixX.length][];
+					for (int i = 0; i < featureMatrixX.length; i++) {
+						predictions[i] = predictor.predict(featureMatrixX[i]);
+					}
+					return predictions;
+				}));
+			}
+			for (Future<double[][]> future : futures) {
+				double[][] predictions = future.get();
+				for (int i = 0; i < featureMatrixX.length; i++) {
+					assertArrayEquals(expected[i], predictions[i]);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Tests that a single prediction only allocates the result array, using a
+	 * regressor that does not allocate itself.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testPredictionDoesNotAllocate() throws Exception {
+		WEKAFeaturePredictor predictor = new WEKAFeaturePredictor();
+		predictor.setClassifierName(ZeroR.class.getName());
+		predictor.setClassifierOptions(new String[0]);
+		double[][] featureMatrixX = { { 1, 2, 3 }, { 4, 5, 6 }, { 7, 8, 9 } };
+		predictor.train(featureMatrixX, new double[][] { { 1, 2, 3 }, { 4, 5, 6 }, { 7, 8, 9 } });
+		double[] featureVectorX = { 4, 5, 6 };
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		for (int n = 0; n < 10000; n++) {
+			predictor.predict(featureVectorX);
+		}
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for (int n = 0; n < 10000; n++) {
+			predictor.predict(featureVectorX);
+		}
+		long perPrediction = (threads.getThreadAllocatedBytes(threadId) - before) / 10000;
+
+		// the result array of three doubles takes 40 bytes
+		assertTrue(perPrediction <= 48, "Allocated " + perPrediction + " bytes per prediction");
+		assertArrayEquals(new double[] { 4, 5, 6 }, predictor.predict(featureVectorX));
+	}
 }
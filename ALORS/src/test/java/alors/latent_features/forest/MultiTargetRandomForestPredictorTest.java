@@ -0,0 +1,112 @@
+package alors.latent_features.forest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import alors.latent_features.FeaturePredictorException;
+
+/**
+ * Tests for the multi-target random forest.
+ *
+ * @author helegraf
+ *
+ */
+public class MultiTargetRandomForestPredictorTest {
+
+	/**
+	 * Tests that the forest learns several targets depending on different
+	 * features, and that batch and single predictions agree.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testTrainAndPredict() throws Exception {
+		Random random = new Random(0);
+		double[][] featureMatrixX = new double[400][5];
+		double[][] featureMatrixU = new double[400][3];
+		fill(random, featureMatrixX, featureMatrixU);
+
+		MultiTargetRandomForestPredictor predictor = new MultiTargetRandomForestPredictor();
+		predictor.setNumTrees(50);
+		predictor.train(featureMatrixX, featureMatrixU);
+
+		double[][] testX = new double[100][5];
+		double[][] testU = new double[100][3];
+		fill(random, testX, testU);
+		double[][] predictions = predictor.predict(testX);
+
+		for (int j = 0; j < 3; j++) {
+			double error = 0;
+			double variance = 0;
+			for (int i = 0; i < testX.length; i++) {
+				error += Math.pow(predictions[i][j] - testU[i][j], 2);
+				variance += Math.pow(testU[i][j], 2);
+			}
+			assertTrue(error < 0.2 * variance, "Poor fit for latent feature " + j);
+		}
+
+		for (int i = 0; i < testX.length; i++) {
+			assertArrayEquals(predictions[i], predictor.predict(testX[i]));
+		}
+	}
+
+	/**
+	 * Tests that the forest only depends on the seed, not on the number of
+	 * threads.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testDeterministic() throws Exception {
+		Random random = new Random(1);
+		double[][] featureMatrixX = new double[100][4];
+		double[][] featureMatrixU = new double[100][3];
+		fill(random, featureMatrixX, featureMatrixU);
+
+		MultiTargetRandomForestPredictor sequential = new MultiTargetRandomForestPredictor();
+		sequential.setNumThreads(1);
+		sequential.train(featureMatrixX, featureMatrixU);
+		MultiTargetRandomForestPredictor parallel = new MultiTargetRandomForestPredictor();
+		parallel.setNumThreads(4);
+		parallel.train(featureMatrixX, featureMatrixU);
+
+		for (double[] featureVectorX : featureMatrixX) {
+			assertArrayEquals(sequential.predict(featureVectorX), parallel.predict(featureVectorX));
+		}
+	}
+
+	/**
+	 * Tests that predicting without training or with the wrong number of features
+	 * fails.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testInvalidPrediction() throws Exception {
+		MultiTargetRandomForestPredictor predictor = new MultiTargetRandomForestPredictor();
+		FeaturePredictorException exception = assertThrows(FeaturePredictorException.class,
+				() -> predictor.predict(new double[] { 1, 2 }));
+		assertEquals("Predictor has not been prepared!", exception.getMessage());
+
+		predictor.train(new double[][] { { 1, 2 }, { 3, 4 } }, new double[][] { { 1 }, { 2 } });
+		assertThrows(FeaturePredictorException.class, () -> predictor.predict(new double[] { 1, 2, 3 }));
+	}
+
+	// the targets are step and linear functions of different features
+	private void fill(Random random, double[][] featureMatrixX, double[][] featureMatrixU) {
+		for (int i = 0; i < featureMatrixX.length; i++) {
+			for (int f = 0; f < featureMatrixX[i].length; f++) {
+				featureMatrixX[i][f] = random.nextDouble();
+			}
+			featureMatrixU[i][0] = featureMatrixX[i][0] > 0.5 ? 1 : -1;
+			featureMatrixU[i][1] = 2 * featureMatrixX[i][1] - 1;
+			featureMatrixU[i][2] = featureMatrixX[i][0] > 0.5 ? featureMatrixX[i][2] : -featureMatrixX[i][2];
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package alors.matrix_completion;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import alors.matrix_completion.als.AlternatingLeastSquaresCompleter;
+
+/**
+ * Tests {@link FactorizedMatrix}.
+ *
+ * @author helegraf
+ *
+ */
+public class FactorizedMatrixTest {
+
+	/**
+	 * Tests that entries and rows computed on access match the dense product.
+	 */
+	@Test
+	public void testView() {
+		double[][] u = { { 1, 2 }, { 0, -1 }, { 3, 0.5 } };
+		double[][] v = { { 2, 1 }, { -1, 4 } };
+		FactorizedMatrix matrix = new FactorizedMatrix(u, v);
+
+		double[][] expected = { { 4, 7 }, { -1, -4 }, { 6.5, -1 } };
+		assertEquals(3, matrix.getNumRows());
+		assertEquals(2, matrix.getNumColumns());
+		for (int i = 0; i < expected.length; i++) {
+			assertArrayEquals(expected[i], matrix.getRow(i));
+			assertArrayEquals(expected[i], matrix.toDense()[i]);
+			for (int j = 0; j < expected[i].length; j++) {
+				assertEquals(expected[i][j], matrix.get(i, j));
+			}
+		}
+	}
+
+	/**
+	 * Tests that factorizing gives the same factors and completion as completing.
+	 *
+	 * @throws MatrixCompleterException
+	 */
+	@Test
+	public void testFactorizeMatchesComplete() throws MatrixCompleterException {
+		double nan = Double.NaN;
+		double[][] matrix = { { 4, nan, 5 }, { 5, 5, nan }, { nan, 4, 5 }, { 1, 2, nan } };
+		AlternatingLeastSquaresCompleter als = new AlternatingLeastSquaresCompleter();
+		als.setDimW(2);
+
+		double[][] completed = als.complete(matrix);
+		FactorizedMatrix factorization = als.factorize(matrix);
+
+		assertArrayEquals(als.getU(), factorization.getU());
+		assertArrayEquals(als.getV(), factorization.getV());
+		for (int i = 0; i < matrix.length; i++) {
+			assertArrayEquals(completed[i], factorization.getRow(i), 1e-12);
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package alors.matrix_completion;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link SparseMatrix}.
+ *
+ * @author helegraf
+ *
+ */
+public class SparseMatrixTest {
+
+	private static final double NAN = Double.NaN;
+	private static final double[][] MATRIX = { { 4, NAN, 5 }, { NAN, NAN, NAN }, { NAN, 4, 1 }, { 2, NAN, NAN } };
+
+	/**
+	 * Tests that converting a dense matrix to a sparse one and back gives the
+	 * original matrix.
+	 */
+	@Test
+	public void testDenseRoundTrip() {
+		SparseMatrix sparse = SparseMatrix.fromDense(MATRIX);
+
+		assertEquals(4, sparse.getNumRows());
+		assertEquals(3, sparse.getNumColumns());
+		assertEquals(5, sparse.getNumEntries());
+		assertArrayEquals(new int[] { 0, 2, 2, 4, 5 }, sparse.getRowPointers());
+		assertMatrixEquals(MATRIX, sparse.toDense());
+	}
+
+	/**
+	 * Tests that a dense matrix with rows of different lengths is rejected.
+	 */
+	@Test
+	public void testFromDenseRejectsRaggedRows() {
+		double[][] ragged = { { 1, 2, 3 }, { 4, 5, 6 }, { 7, 8 } };
+
+		IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+				() -> SparseMatrix.fromDense(ragged));
+		assertEquals("Row 2 has 2 columns, expected 3.", exception.getMessage());
+	}
+
+	/**
+	 * Tests the column view.
+	 */
+	@Test
+	public void testTranspose() {
+		SparseMatrix sparse = SparseMatrix.fromDense(MATRIX);
+		SparseMatrix transpose = sparse.transpose();
+
+		assertArrayEquals(new int[] { 0, 2, 3, 5 }, transpose.getRowPointers());
+		assertArrayEquals(new int[] { 0, 3, 2, 0, 2 }, transpose.getColumnIndices());
+		assertArrayEquals(new double[] { 4, 2, 4, 5, 1 }, transpose.getValues());
+		assertSame(transpose, sparse.transpose());
+		assertSame(sparse, transpose.transpose());
+	}
+
+	/**
+	 * Tests that unordered observed entries are sorted by row and column.
+	 */
+	@Test
+	public void testFromObservedEntries() {
+		ObservedEntries entries = new ObservedEntries(4, 3, new int[] { 3, 2, 0, 2, 0 }, new int[] { 0, 2, 2, 1, 0 },
+				new double[] { 2, 1, 5, 4, 4 });
+		SparseMatrix sparse = SparseMatrix.fromObservedEntries(entries);
+
+		assertArrayEquals(SparseMatrix.fromDense(MATRIX).getColumnIndices(), sparse.getColumnIndices());
+		assertMatrixEquals(MATRIX, sparse.toDense());
+		assertMatrixEquals(MATRIX, SparseMatrix.fromObservedEntries(sparse.toObservedEntries()).toDense());
+	}
+
+	private void assertMatrixEquals(double[][] expected, double[][] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertArrayEquals(expected[i], actual[i]);
+		}
+	}
+}
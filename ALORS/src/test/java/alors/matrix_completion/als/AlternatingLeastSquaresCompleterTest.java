@@ -0,0 +1,149 @@
+package alors.matrix_completion.als;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import alors.TestData;
+import alors.matrix_completion.FactorizedMatrix;
+import alors.matrix_completion.MatrixCompleterException;
+import alors.matrix_completion.SparseMatrix;
+
+/**
+ * Tests {@link AlternatingLeastSquaresCompleter}.
+ *
+ * @author helegraf
+ *
+ */
+public class AlternatingLeastSquaresCompleterTest {
+
+	/**
+	 * Tests the completion of a very small problem, checking dimensions of the
+	 * results and that the observed entries are reconstructed reasonably well.
+	 *
+	 * @throws MatrixCompleterException
+	 */
+	@Test
+	public void testComplete() throws MatrixCompleterException {
+		int dimW = 3;
+		AlternatingLeastSquaresCompleter als = new AlternatingLeastSquaresCompleter();
+		als.setDimW(dimW);
+
+		double nan = Double.NaN;
+		double[][] matrix = { { 4, nan, 5, nan, 1, 2 }, { 5, 5, nan, nan, 2, 1 }, { nan, 4, 5, 1, nan, 1 },
+				{ 1, 2, nan, nan, 4, 5 }, { 2, nan, 1, 5, 5, nan }, { nan, 1, 2, 4, nan, 5 } };
+		double[][] completedMatrix = als.complete(matrix);
+
+		double[][] u = als.getU();
+		double[][] v = als.getV();
+
+		// check dimensions of results
+		assertEquals(matrix.length, completedMatrix.length);
+		assertEquals(matrix[0].length, completedMatrix[0].length);
+		assertEquals(matrix.length, u.length);
+		assertEquals(matrix[0].length, v.length);
+		assertEquals(dimW, u[0].length);
+		assertEquals(dimW, v[0].length);
+
+		// observed entries are roughly reconstructed, missing ones are filled
+		for (int i = 0; i < matrix.length; i++) {
+			for (int j = 0; j < matrix[i].length; j++) {
+				assertFalse(Double.isNaN(completedMatrix[i][j]));
+				if (!Double.isNaN(matrix[i][j])) {
+					assertEquals(matrix[i][j], completedMatrix[i][j], 1.0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests that matrices with mean zero are completed, which a mean-based
+	 * initialization alone would start (and keep) at zero, and that a perfect
+	 * fit ends the iterations.
+	 *
+	 * @throws MatrixCompleterException
+	 */
+	@Test
+	public void testZeroMean() throws MatrixCompleterException {
+		double nan = Double.NaN;
+		double[][] matrix = { { 1, nan, 2, nan, -2, -1 }, { 2, 2, nan, nan, -1, -2 }, { nan, 1, 2, -2, nan, -2 },
+				{ -2, -1, nan, nan, 1, 2 }, { -1, nan, -2, 2, 2, nan }, { nan, -2, -1, 1, nan, 1 } };
+		AlternatingLeastSquaresCompleter als = new AlternatingLeastSquaresCompleter();
+		als.setDimW(3);
+		double[][] completedMatrix = als.complete(matrix);
+		for (int i = 0; i < matrix.length; i++) {
+			for (int j = 0; j < matrix[i].length; j++) {
+				if (!Double.isNaN(matrix[i][j])) {
+					assertEquals(matrix[i][j], completedMatrix[i][j], 1.0);
+				}
+			}
+		}
+
+		double[][] zeros = als.complete(new double[][] { { 0, nan }, { 0, 0 } });
+		for (double[] row : zeros) {
+			for (double value : row) {
+				assertEquals(0, value, 1e-12);
+			}
+		}
+	}
+
+	/**
+	 * Tests that latent features are only available after a completion.
+	 */
+	@Test
+	public void testFactorsBeforeCompletion() {
+		AlternatingLeastSquaresCompleter als = new AlternatingLeastSquaresCompleter();
+		assertThrows(MatrixCompleterException.class, als::getU);
+		assertThrows(MatrixCompleterException.class, als::getV);
+	}
+
+	/**
+	 * Tests that a factorization warm-started from the factors of a previous run
+	 * reaches the quality of a converged cold start within a single iteration
+	 * after new rows were added, while a cold start does not.
+	 *
+	 * @throws MatrixCompleterException
+	 */
+	@Test
+	public void testWarmStart() throws MatrixCompleterException {
+		Random random = new Random(0);
+		double[][] matrix = TestData.lowRankMatrix(random, 110, 20, 3, 0.5);
+		double[][] previousMatrix = new double[100][];
+		System.arraycopy(matrix, 0, previousMatrix, 0, 100);
+
+		AlternatingLeastSquaresCompleter als = new AlternatingLeastSquaresCompleter();
+		als.setDimW(3);
+		FactorizedMatrix previous = als.factorize(SparseMatrix.fromDense(previousMatrix));
+		double convergedRmse = rmse(matrix, als.factorize(SparseMatrix.fromDense(matrix)));
+
+		als.setMaxIterations(1);
+		double warmRmse = rmse(matrix, als.factorize(SparseMatrix.fromDense(matrix), previous));
+		double coldRmse = rmse(matrix, als.factorize(SparseMatrix.fromDense(matrix)));
+		assertTrue(warmRmse < 1.1 * convergedRmse, warmRmse + " vs. " + convergedRmse);
+		assertTrue(coldRmse > 2 * warmRmse, coldRmse + " vs. " + warmRmse);
+
+		als.setDimW(4);
+		assertThrows(MatrixCompleterException.class, () -> als.factorize(SparseMatrix.fromDense(matrix), previous));
+	}
+
+
+	private double rmse(double[][] matrix, FactorizedMatrix factorization) {
+		double sum = 0;
+		int count = 0;
+		for (int i = 0; i < matrix.length; i++) {
+			for (int j = 0; j < matrix[i].length; j++) {
+				if (!Double.isNaN(matrix[i][j])) {
+					double error = matrix[i][j] - factorization.get(i, j);
+					sum += error * error;
+					count++;
+				}
+			}
+		}
+		return Math.sqrt(sum / count);
+	}
+}
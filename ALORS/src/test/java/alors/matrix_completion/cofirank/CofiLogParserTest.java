@@ -0,0 +1,119 @@
+package alors.matrix_completion.cofirank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link CofiLogParser} and the early stopping rules of
+ * {@link CofiIterationListener}.
+ *
+ * @author helegraf
+ *
+ */
+public class CofiLogParserTest {
+
+	/**
+	 * Tests that metrics in the recognized notations are assigned to their
+	 * iterations, and that the last iteration is completed at the end of the log.
+	 */
+	@Test
+	public void testParse() {
+		List<CofiIteration> iterations = new ArrayList<>();
+		CofiLogParser parser = new CofiLogParser(iterations::add);
+
+		assertTrue(parser.accept("Reading data, RMSE 42 before the first iteration is ignored"));
+		assertTrue(parser.accept("Iteration 1"));
+		assertTrue(parser.accept("  Objective: 12.5"));
+		assertTrue(parser.accept("  Train RMSE = 0.75 NDCG@1: 0.5"));
+		assertTrue(parser.accept("iter 2 obj 1e1 rmse nan"));
+		assertTrue(parser.accept("loss.ndcg.trainK 10"));
+		assertEquals(1, iterations.size());
+		assertTrue(parser.finish());
+
+		assertEquals(2, iterations.size());
+		CofiIteration first = iterations.get(0);
+		assertEquals(1, first.getIteration());
+		assertEquals(12.5, first.getObjective());
+		assertEquals(0.75, first.getMetric(CofiIteration.RMSE));
+		assertEquals(0.5, first.getMetric(CofiIteration.NDCG));
+		CofiIteration second = iterations.get(1);
+		assertEquals(2, second.getIteration());
+		assertEquals(10, second.getObjective());
+		assertTrue(Double.isNaN(second.getMetric(CofiIteration.RMSE)));
+		assertTrue(Double.isNaN(second.getMetric(CofiIteration.NDCG)));
+	}
+
+	/**
+	 * Tests that a run is aborted once the listener declines to continue, and
+	 * not notified anymore afterwards.
+	 */
+	@Test
+	public void testAbort() {
+		List<CofiIteration> iterations = new ArrayList<>();
+		CofiLogParser parser = new CofiLogParser(iteration -> iterations.add(iteration) && iterations.size() < 2);
+
+		assertTrue(parser.accept("Iteration 1 objective 3"));
+		assertTrue(parser.accept("Iteration 2 objective 2"));
+		assertFalse(parser.accept("Iteration 3 objective 1"));
+		assertFalse(parser.accept("Iteration 4 objective 0"));
+		assertFalse(parser.finish());
+
+		assertEquals(2, iterations.size());
+		assertEquals(2, parser.getAbortedAfter().getIteration());
+	}
+
+	/**
+	 * Tests stopping once a metric has not improved enough for a number of
+	 * iterations, for metrics where lower and higher values are better.
+	 */
+	@Test
+	public void testStopOnPlateau() {
+		CofiIterationListener objective = CofiIterationListener.stopOnPlateau(CofiIteration.OBJECTIVE, 0.1, 2);
+		assertTrue(objective.onIteration(iteration(1, CofiIteration.OBJECTIVE, 100)));
+		assertTrue(objective.onIteration(iteration(2, CofiIteration.OBJECTIVE, 50)));
+		assertTrue(objective.onIteration(iteration(3, CofiIteration.OBJECTIVE, 48)));
+		assertTrue(objective.onIteration(iteration(4, CofiIteration.RMSE, 1)));
+		assertFalse(objective.onIteration(iteration(5, CofiIteration.OBJECTIVE, 47)));
+
+		CofiIterationListener ndcg = CofiIterationListener.stopOnPlateau(CofiIteration.NDCG, 0.1, 1);
+		assertTrue(ndcg.onIteration(iteration(1, CofiIteration.NDCG, 0.5)));
+		assertTrue(ndcg.onIteration(iteration(2, CofiIteration.NDCG, 0.6)));
+		assertFalse(ndcg.onIteration(iteration(3, CofiIteration.NDCG, 0.61)));
+	}
+
+	/**
+	 * Tests stopping once a metric is worse than a bound, but not before the
+	 * given iteration.
+	 */
+	@Test
+	public void testStopIfWorseThan() {
+		CofiIterationListener rmse = CofiIterationListener.stopIfWorseThan(CofiIteration.RMSE, 0.5, 3);
+		assertTrue(rmse.onIteration(iteration(1, CofiIteration.RMSE, 2)));
+		assertTrue(rmse.onIteration(iteration(3, CofiIteration.RMSE, 0.4)));
+		assertFalse(rmse.onIteration(iteration(4, CofiIteration.RMSE, 0.6)));
+
+		CofiIterationListener ndcg = CofiIterationListener.stopIfWorseThan(CofiIteration.NDCG, 0.5, 1);
+		assertTrue(ndcg.onIteration(iteration(1, CofiIteration.NDCG, 0.7)));
+		assertFalse(ndcg.onIteration(iteration(2, CofiIteration.NDCG, 0.3)));
+
+		Map<String, Double> metrics = new HashMap<>();
+		metrics.put(CofiIteration.RMSE, 0.1);
+		metrics.put(CofiIteration.NDCG, 0.7);
+		assertTrue(rmse.and(ndcg).onIteration(new CofiIteration(5, 0, metrics)));
+		metrics.put(CofiIteration.NDCG, 0.3);
+		assertFalse(rmse.and(ndcg).onIteration(new CofiIteration(6, 0, metrics)));
+	}
+
+	private CofiIteration iteration(int number, String metric, double value) {
+		return new CofiIteration(number, 0, Collections.singletonMap(metric, value));
+	}
+}
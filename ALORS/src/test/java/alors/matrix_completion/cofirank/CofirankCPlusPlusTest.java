@@ -1,10 +1,21 @@
 package alors.matrix_completion.cofirank;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterEach;
@@ -15,6 +26,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import alors.matrix_completion.MatrixCompleterException;
+import alors.matrix_completion.SparseMatrix;
+import alors.metrics.InMemoryMetricsRegistry;
+import alors.metrics.Metrics;
 
 /**
  * Tests {@link CofirankCPlusPlus}.
@@ -80,6 +94,162 @@ public class CofirankCPlusPlusTest {
 		assertEquals(matrix.length, v.length);
 	}
 	
+	/**
+	 * Tests that a run writing more output than fits into the pipe buffers
+	 * completes, using a stand-in for the cofirank executable (see
+	 * {@link FakeCofirank}).
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	@EnabledOnOs(OS.LINUX)
+	public void testLargeOutput() throws Exception {
+		Path directory = Files.createTempDirectory("cofirank");
+		try {
+			CofirankCPlusPlus cofirank = createFakeCofirank(directory, "yes cofirank | head -n 200000");
+			double[][] completedMatrix = cofirank.complete(new double[][] { { 1, 2 }, { 3, 4 } });
+			assertEquals(2, completedMatrix.length);
+		} finally {
+			FileUtils.deleteDirectory(directory.toFile());
+		}
+	}
+
+	/**
+	 * Tests that a run exceeding its timeout is killed and fails.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	@EnabledOnOs(OS.LINUX)
+	public void testTimeout() throws Exception {
+		Path directory = Files.createTempDirectory("cofirank");
+		try {
+			CofirankCPlusPlus cofirank = createFakeCofirank(directory, "sleep 30");
+			cofirank.setTimeoutMillis(500);
+			long start = System.nanoTime();
+			assertThrows(CofiException.class, () -> cofirank.complete(new double[][] { { 1, 2 }, { 3, 4 } }));
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+		} finally {
+			FileUtils.deleteDirectory(directory.toFile());
+		}
+	}
+
+	/**
+	 * Tests that cancelling an asynchronous run kills the process, releasing
+	 * the thread waiting for it.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	@EnabledOnOs(OS.LINUX)
+	public void testCancel() throws Exception {
+		Path directory = Files.createTempDirectory("cofirank");
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			CofirankCPlusPlus cofirank = createFakeCofirank(directory, "sleep 30");
+			CompletableFuture<double[][]> result = cofirank
+					.completeAsync(SparseMatrix.fromDense(new double[][] { { 1, 2 }, { 3, 4 } }), executor);
+			Thread.sleep(500);
+			result.cancel(true);
+
+			executor.shutdown();
+			assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+			assertTrue(result.isCancelled());
+		} finally {
+			executor.shutdownNow();
+			FileUtils.deleteDirectory(directory.toFile());
+		}
+	}
+
+	/**
+	 * Tests that the iterations logged by cofirank are reported while it runs,
+	 * from the log file or else from standard output, and that a run can be
+	 * aborted by its listener.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	@EnabledOnOs(OS.LINUX)
+	public void testIterationListener() throws Exception {
+		Path directory = Files.createTempDirectory("cofirank");
+		try {
+			// standard output repeats the iteration, which must not be reported twice
+			String iterations = "for i in 1 2 3 4 5 6 7 8 9 10; do echo \"Iteration $i objective $((100 / i))\"; "
+					+ "echo \"Iteration $i objective $((100 / i))\" >> \"${out}log.txt\"; "
+					+ "echo \"  rmse $((10 - i)) ndcg@1 0.$i\" >> \"${out}log.txt\"; sleep 0.1; done";
+			CofirankCPlusPlus cofirank = createFakeCofirank(directory, iterations);
+			List<CofiIteration> reported = new ArrayList<>();
+			cofirank.setIterationListener(reported::add);
+			cofirank.complete(new double[][] { { 1, 2 }, { 3, 4 } });
+
+			assertEquals(10, reported.size());
+			for (int i = 1; i <= 10; i++) {
+				assertEquals(i, reported.get(i - 1).getIteration());
+				assertEquals(100 / i, reported.get(i - 1).getObjective());
+				assertEquals(10 - i, reported.get(i - 1).getMetric(CofiIteration.RMSE));
+			}
+
+			reported.clear();
+			cofirank.setLogFileName(null);
+			cofirank.complete(new double[][] { { 1, 2 }, { 3, 4 } });
+			assertEquals(10, reported.size());
+			for (int i = 1; i <= 10; i++) {
+				assertEquals(i, reported.get(i - 1).getIteration());
+				assertEquals(100 / i, reported.get(i - 1).getObjective());
+			}
+			cofirank.setLogFileName("log.txt");
+
+			// rmse improves by 1 per iteration, i.e. by less than 20% from 5 on
+			reported.clear();
+			cofirank.setIterationListener(((CofiIterationListener) reported::add)
+					.and(CofiIterationListener.stopOnPlateau(CofiIteration.RMSE, 0.2, 2)));
+			CofiAbortedException e = assertThrows(CofiAbortedException.class,
+					() -> cofirank.complete(new double[][] { { 1, 2 }, { 3, 4 } }));
+			assertTrue(reported.size() < 10);
+			assertEquals(reported.get(reported.size() - 1).getIteration(), e.getLastIteration().getIteration());
+		} finally {
+			FileUtils.deleteDirectory(directory.toFile());
+		}
+	}
+
+	/**
+	 * Tests that the phases of a run and the exchanged data are recorded.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	@EnabledOnOs(OS.LINUX)
+	public void testMetrics() throws Exception {
+		Path directory = Files.createTempDirectory("cofirank");
+		InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+		Metrics.setRegistry(registry);
+		try {
+			CofirankCPlusPlus cofirank = createFakeCofirank(directory, "");
+			cofirank.complete(new double[][] { { 1, Double.NaN }, { 3, 4 } });
+
+			assertEquals(1, registry.getHistogram(Metrics.COFIRANK_SERIALIZATION).getCount());
+			assertEquals(1, registry.getHistogram(Metrics.COFIRANK_PROCESS).getCount());
+			assertEquals(1, registry.getHistogram(Metrics.COFIRANK_PARSING).getCount());
+			assertEquals(3, registry.getCounter(Metrics.COFIRANK_OBSERVED_ENTRIES));
+			assertTrue(registry.getCounter(Metrics.COFIRANK_BYTES_WRITTEN) > 0);
+			// U and M with two rows of "1:i 2:i" each
+			assertEquals(4 * ("1:1 2:1".length() + 1), registry.getCounter(Metrics.COFIRANK_BYTES_READ));
+		} finally {
+			Metrics.setRegistry(null);
+			FileUtils.deleteDirectory(directory.toFile());
+		}
+	}
+
+	private CofirankCPlusPlus createFakeCofirank(Path directory, String commands) throws IOException {
+		Path executable = FakeCofirank.create(directory, commands);
+		String unused = new File("unused").getPath();
+		CofiConfig config = new CofiConfig(executable.toString(), unused, unused, unused, unused);
+		config.setDimW(2);
+		CofirankCPlusPlus cofirank = new CofirankCPlusPlus(config);
+		cofirank.setWorkspaceDirectory(directory.toString());
+		return cofirank;
+	}
+
 	private String matrixToString(double[][] m) {
 		StringBuffer buffer = new StringBuffer();
 		for (int i = 0; i < m.length; i++) {
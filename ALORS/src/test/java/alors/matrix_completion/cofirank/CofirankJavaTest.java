@@ -0,0 +1,172 @@
+package alors.matrix_completion.cofirank;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import alors.matrix_completion.MatrixCompleterException;
+
+/**
+ * Tests {@link CofirankJava}.
+ *
+ * @author helegraf
+ *
+ */
+public class CofirankJavaTest {
+
+	private Logger logger = LoggerFactory.getLogger(CofirankJavaTest.class);
+
+	private static final double NAN = Double.NaN;
+	private static final double[][] MATRIX = { { 4, NAN, 5, NAN, 1, 2 }, { 5, 5, NAN, NAN, 2, 1 },
+			{ NAN, 4, 5, 1, NAN, 1 }, { 1, 2, NAN, NAN, 4, 5 }, { 2, NAN, 1, 5, 5, NAN }, { NAN, 1, 2, 4, NAN, 5 } };
+
+	/**
+	 * Tests the regression loss on a very small problem, checking dimensions and
+	 * that observed entries are reconstructed.
+	 *
+	 * @throws MatrixCompleterException
+	 */
+	@Test
+	public void testCompleteRegression() throws MatrixCompleterException {
+		int dimW = 3;
+		CofiConfig config = createConfig();
+		config.setDimW(dimW);
+		config.setUserPhaseLambda(1);
+		config.setMoviePhaseLambda(1);
+		CofirankJava cofirank = new CofirankJava(config);
+
+		double[][] completedMatrix = cofirank.complete(MATRIX);
+		double[][] u = cofirank.getU();
+		double[][] v = cofirank.getV();
+
+		assertEquals(MATRIX.length, completedMatrix.length);
+		assertEquals(MATRIX[0].length, completedMatrix[0].length);
+		assertEquals(MATRIX.length, u.length);
+		assertEquals(MATRIX[0].length, v.length);
+		assertEquals(dimW, u[0].length);
+		assertEquals(dimW, v[0].length);
+
+		for (int i = 0; i < MATRIX.length; i++) {
+			for (int j = 0; j < MATRIX[i].length; j++) {
+				if (!Double.isNaN(MATRIX[i][j])) {
+					assertEquals(MATRIX[i][j], completedMatrix[i][j], 1.0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests the NDCG loss on a very small problem: for each row the best observed
+	 * entry has to be ranked above the worst observed entry.
+	 *
+	 * @throws MatrixCompleterException
+	 */
+	@Test
+	public void testCompleteNDCG() throws MatrixCompleterException {
+		CofiConfig config = createConfig();
+		config.setOptimizedMeasure("NDCG");
+		config.setUserPhaseLambda(1);
+		config.setMoviePhaseLambda(1);
+		CofirankJava cofirank = new CofirankJava(config);
+
+		double[][] completedMatrix = cofirank.complete(MATRIX);
+
+		for (int i = 0; i < MATRIX.length; i++) {
+			int best = -1;
+			int worst = -1;
+			for (int j = 0; j < MATRIX[i].length; j++) {
+				if (!Double.isNaN(MATRIX[i][j])) {
+					best = best < 0 || MATRIX[i][j] > MATRIX[i][best] ? j : best;
+					worst = worst < 0 || MATRIX[i][j] < MATRIX[i][worst] ? j : worst;
+				}
+			}
+			assertTrue(completedMatrix[i][best] > completedMatrix[i][worst]);
+		}
+	}
+
+	/**
+	 * Tests that the java port completes the matrix like the c++ implementation
+	 * with the same configuration, using the regression loss. The two draw
+	 * different random initial movie factors, so they converge to nearby but not
+	 * identical minima of the regularized risk; every entry, observed or not, has
+	 * to agree within one step of the rating scale. Only available under the OS
+	 * for which cofirank has been compiled, default linux.
+	 *
+	 * @throws MatrixCompleterException
+	 */
+	@Test
+	@EnabledOnOs(OS.LINUX)
+	public void testMatchesCPlusPlusRegression() throws MatrixCompleterException {
+		CofiConfig config = createConfig();
+		config.setOptimizedMeasure("REGRESSION");
+		double[][] javaMatrix = new CofirankJava(config).complete(MATRIX);
+		double[][] cPlusPlusMatrix = new CofirankCPlusPlus(config).complete(MATRIX);
+
+		logger.info("Observed rmse java {}, c++ {}", observedRmse(javaMatrix), observedRmse(cPlusPlusMatrix));
+		for (int i = 0; i < MATRIX.length; i++) {
+			assertArrayEquals(cPlusPlusMatrix[i], javaMatrix[i], 1.0, "Row " + i);
+		}
+	}
+
+	/**
+	 * Tests that the java port ranks the items of each row like the c++
+	 * implementation with the same configuration, using the NDCG loss. The loss
+	 * only depends on the order of the entries of a row, so their values are not
+	 * comparable; and as the two start from different random movie factors,
+	 * nearly tied items may swap. Thus for each row the items the c++
+	 * implementation ranks first and last have to keep their order. Only
+	 * available under the OS for which cofirank has been compiled, default linux.
+	 *
+	 * @throws MatrixCompleterException
+	 */
+	@Test
+	@EnabledOnOs(OS.LINUX)
+	public void testMatchesCPlusPlusNDCG() throws MatrixCompleterException {
+		CofiConfig config = createConfig();
+		config.setOptimizedMeasure("NDCG");
+		double[][] javaMatrix = new CofirankJava(config).complete(MATRIX);
+		double[][] cPlusPlusMatrix = new CofirankCPlusPlus(config).complete(MATRIX);
+
+		for (int i = 0; i < MATRIX.length; i++) {
+			int first = 0;
+			int last = 0;
+			for (int j = 1; j < MATRIX[i].length; j++) {
+				first = cPlusPlusMatrix[i][j] > cPlusPlusMatrix[i][first] ? j : first;
+				last = cPlusPlusMatrix[i][j] < cPlusPlusMatrix[i][last] ? j : last;
+			}
+			assertTrue(javaMatrix[i][first] > javaMatrix[i][last], "Row " + i);
+		}
+	}
+
+	private CofiConfig createConfig() {
+		String executablePath = Paths.get("cofirank", "dist", "cofirank-deploy").toString();
+		String configurationPath = Paths.get("cofirank", "config", "default.cfg").toString();
+		String outFolderPath = Paths.get("cofirank", "default_out").toString();
+		String trainFilePath = Paths.get("cofirank", "data", "dummytrain.lsvm").toString();
+		String testFilePath = Paths.get("cofirank", "data", "dummytest.lsvm").toString();
+
+		return new CofiConfig(executablePath, configurationPath, outFolderPath, trainFilePath, testFilePath);
+	}
+
+	private double observedRmse(double[][] completedMatrix) {
+		double sum = 0;
+		int count = 0;
+		for (int i = 0; i < MATRIX.length; i++) {
+			for (int j = 0; j < MATRIX[i].length; j++) {
+				if (!Double.isNaN(MATRIX[i][j])) {
+					sum += Math.pow(MATRIX[i][j] - completedMatrix[i][j], 2);
+					count++;
+				}
+			}
+		}
+		return Math.sqrt(sum / count);
+	}
+}
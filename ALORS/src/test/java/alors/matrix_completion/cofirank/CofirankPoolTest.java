@@ -0,0 +1,78 @@
+package alors.matrix_completion.cofirank;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import alors.matrix_completion.FactorizedMatrix;
+import alors.matrix_completion.SparseMatrix;
+
+/**
+ * Tests {@link CofirankPool} with a stand-in for the cofirank executable (see
+ * {@link FakeCofirank}).
+ *
+ * @author helegraf
+ *
+ */
+public class CofirankPoolTest {
+
+	/**
+	 * Tests that concurrent runs on matrices of different sizes each get their
+	 * own results and leave no files behind.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	@EnabledOnOs(OS.LINUX)
+	public void testConcurrentRuns() throws Exception {
+		Path directory = Files.createTempDirectory("cofirank-pool");
+		Path executable = FakeCofirank.create(directory, "sleep 0.2");
+		Path workspaces = Files.createDirectory(directory.resolve("workspaces"));
+		try {
+			String unused = new File("unused").getPath();
+			CofiConfig config = new CofiConfig(executable.toString(), unused, unused, unused, unused);
+			config.setDimW(2);
+
+			List<CompletableFuture<FactorizedMatrix>> results = new ArrayList<>();
+			try (CofirankPool pool = new CofirankPool(4)) {
+				pool.setWorkspaceDirectory(workspaces.toString());
+				for (int run = 0; run < 8; run++) {
+					results.add(pool.submit(config, denseMatrix(run + 2, 3)));
+				}
+				for (int run = 0; run < 8; run++) {
+					FactorizedMatrix factorization = results.get(run).get();
+					assertEquals(run + 2, factorization.getNumRows());
+					assertEquals(3, factorization.getNumColumns());
+					for (int i = 0; i < run + 2; i++) {
+						assertArrayEquals(new double[] { i + 1, i + 1 }, factorization.getU()[i]);
+					}
+				}
+			}
+
+			assertEquals(0, workspaces.toFile().list().length);
+		} finally {
+			FileUtils.deleteDirectory(directory.toFile());
+		}
+	}
+
+	private SparseMatrix denseMatrix(int numRows, int numColumns) {
+		double[][] matrix = new double[numRows][numColumns];
+		for (double[] row : matrix) {
+			for (int j = 0; j < numColumns; j++) {
+				row[j] = j + 1;
+			}
+		}
+		return SparseMatrix.fromDense(matrix);
+	}
+}
@@ -0,0 +1,46 @@
+package alors.matrix_completion.cofirank;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A stand-in for the cofirank executable for tests: a shell script that reads
+ * the configuration like cofirank and writes U and M with the row number as
+ * every entry.
+ *
+ * @author helegraf
+ *
+ */
+class FakeCofirank {
+
+	private FakeCofirank() {
+	}
+
+	/**
+	 * Writes the script to the given directory.
+	 *
+	 * @param directory the directory
+	 * @param commands  shell commands run before the results are written, e.g.
+	 *                  to delay them
+	 * @return the path of the executable script
+	 * @throws IOException if the script cannot be written
+	 */
+	static Path create(Path directory, String commands) throws IOException {
+		String script = String.join("\n", "#!/bin/sh",
+				"out=$(awk '$2==\"cofi.outfolder\"{print $3}' \"$1\")",
+				"train=$(awk '$2==\"cofibmrm.DtrainFile\"{print $3}' \"$1\")",
+				"dimw=$(awk '$2==\"cofi.dimW\"{print $3}' \"$1\")",
+				"echo \"All output including logs will go to $out\" >&2", commands,
+				"awk -v d=\"$dimw\" '{s=\"1:\" NR; for(k=2;k<=d;k++) s=s \" \" k \":\" NR; print s}' \"$train\" > \"${out}U.lsvm\"",
+				"awk -v d=\"$dimw\" '{for(f=1;f<=NF;f++){split($f,a,\":\"); if(a[1]+0>m)m=a[1]+0}}"
+						+ " END{for(j=1;j<=m;j++){s=\"1:\" j; for(k=2;k<=d;k++) s=s \" \" k \":\" j; print s}}'"
+						+ " \"$train\" > \"${out}M.lsvm\"",
+				"");
+		Path executable = directory.resolve("cofirank.sh");
+		Files.write(executable, script.getBytes(StandardCharsets.UTF_8));
+		executable.toFile().setExecutable(true);
+		return executable;
+	}
+}
@@ -0,0 +1,78 @@
+package alors.matrix_completion.cofirank;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link LSVMReader}.
+ *
+ * @author helegraf
+ *
+ */
+public class LSVMReaderTest {
+
+	private static final String CONTENT = "1:4 2:-0.1234567 3:1e-05 \n1:123456789.98765432 2:-2.5E3 3:0.3333333333333333\r\n\n1:nan 2:-inf 3:+7.\n";
+	private static final double[][] EXPECTED = { { 4, -0.1234567, 1e-5 },
+			{ 123456789.98765432, -2500, 0.3333333333333333 },
+			{ Double.NaN, Double.NEGATIVE_INFINITY, 7 } };
+
+	/**
+	 * Tests parsing a file, with mapping windows so small that entries span them.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testRead() throws IOException {
+		for (long windowSize : new long[] { 3, 1024 }) {
+			double[][] matrix = new double[3][3];
+			read(CONTENT, new LSVMReader(windowSize), matrix);
+			for (int i = 0; i < EXPECTED.length; i++) {
+				assertArrayEquals(EXPECTED[i], matrix[i]);
+			}
+		}
+	}
+
+	/**
+	 * Tests that files whose dimensions differ from the expected ones are
+	 * rejected.
+	 */
+	@Test
+	public void testDimensionMismatch() {
+		assertThrows(IOException.class, () -> read(CONTENT, new LSVMReader(), new double[2][3]));
+		assertThrows(IOException.class, () -> read(CONTENT, new LSVMReader(), new double[4][3]));
+		assertThrows(IOException.class, () -> read(CONTENT, new LSVMReader(), new double[3][2]));
+		assertThrows(IOException.class, () -> read(CONTENT, new LSVMReader(), new double[3][4]));
+	}
+
+	/**
+	 * Tests the fast path against {@link Double#parseDouble(String)}.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testParseDouble() throws IOException {
+		for (String text : new String[] { "0", "-0", "0.1", "1.5e300", "9007199254740993", "2.2250738585072014E-308",
+				"-1234.5678e-3", "0.000001", "3.141592653589793" }) {
+			byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+			assertEquals(Double.parseDouble(text), LSVMReader.parseDouble(bytes, bytes.length), text);
+		}
+	}
+
+	private void read(String content, LSVMReader reader, double[][] matrix) throws IOException {
+		Path file = Files.createTempFile("lsvm", ".lsvm");
+		try {
+			Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+			reader.read(file, matrix);
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
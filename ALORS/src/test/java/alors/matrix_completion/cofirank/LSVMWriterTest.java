@@ -0,0 +1,86 @@
+package alors.matrix_completion.cofirank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+import alors.matrix_completion.SparseMatrix;
+
+/**
+ * Tests {@link LSVMWriter}.
+ *
+ * @author helegraf
+ *
+ */
+public class LSVMWriterTest {
+
+	private static final double NAN = Double.NaN;
+	private static final double[][] MATRIX = { { 4, NAN, -0.1234567 }, { NAN, NAN, NAN },
+			{ 1e-9, 123456789.987654321, 0.5 }, { -1e300, NAN, 1.0 / 3 } };
+
+	/**
+	 * Tests that the fixed precision mode writes the same text as formatting the
+	 * entries with {@link String#format(String, Object...)}, for values whose
+	 * scaled value is not close to a half.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testFixedPrecision() throws IOException {
+		List<String> lines = write(6);
+
+		assertEquals(MATRIX.length, lines.size());
+		for (int i = 0; i < MATRIX.length; i++) {
+			StringBuilder expected = new StringBuilder();
+			for (int j = 0; j < MATRIX[i].length; j++) {
+				if (!Double.isNaN(MATRIX[i][j])) {
+					expected.append(String.format(Locale.ROOT, "%d:%f ", j + 1, MATRIX[i][j]));
+				}
+			}
+			assertEquals(expected.toString(), lines.get(i));
+		}
+	}
+
+	/**
+	 * Tests that the lossless mode gives back exactly the written values.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testLosslessPrecision() throws IOException {
+		List<String> lines = write(CofiConfig.LOSSLESS_PRECISION);
+
+		for (int i = 0; i < MATRIX.length; i++) {
+			String line = lines.get(i).trim();
+			double[] row = new double[MATRIX[i].length];
+			Arrays.fill(row, NAN);
+			if (!line.isEmpty()) {
+				for (String entry : line.split(" ")) {
+					String[] parts = entry.split(":");
+					row[Integer.parseInt(parts[0]) - 1] = Double.parseDouble(parts[1]);
+				}
+			}
+			for (int j = 0; j < row.length; j++) {
+				assertEquals(MATRIX[i][j], row[j]);
+			}
+		}
+	}
+
+	private List<String> write(int precision) throws IOException {
+		Path file = Files.createTempFile("lsvm", ".lsvm");
+		try {
+			LSVMWriter.write(file, SparseMatrix.fromDense(MATRIX), precision);
+			return Files.readAllLines(file, StandardCharsets.US_ASCII);
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package alors.matrix_completion.cofirank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link LinearAssignment}.
+ *
+ * @author helegraf
+ *
+ */
+public class LinearAssignmentTest {
+
+	/**
+	 * Tests that the assignment found for small random cost matrices is a
+	 * permutation with the minimal total cost, found by trying all permutations.
+	 */
+	@Test
+	public void testMinimizeMatchesBruteForce() {
+		Random random = new Random(0);
+		for (int n = 1; n <= 6; n++) {
+			for (int repetition = 0; repetition < 20; repetition++) {
+				double[][] cost = new double[n][n];
+				for (int i = 0; i < n; i++) {
+					for (int j = 0; j < n; j++) {
+						// include negative and equal costs
+						cost[i][j] = repetition % 2 == 0 ? random.nextGaussian() : random.nextInt(3);
+					}
+				}
+
+				int[] assignment = LinearAssignment.minimize(cost);
+
+				assertEquals(n, assignment.length);
+				boolean[] assigned = new boolean[n];
+				double total = 0;
+				for (int i = 0; i < n; i++) {
+					assertFalse(assigned[assignment[i]], "Column " + assignment[i] + " assigned twice");
+					assigned[assignment[i]] = true;
+					total += cost[i][assignment[i]];
+				}
+				assertEquals(bruteForceMinimum(cost, 0, new boolean[n]), total, 1e-9);
+			}
+		}
+	}
+
+	private double bruteForceMinimum(double[][] cost, int row, boolean[] used) {
+		if (row == cost.length) {
+			return 0;
+		}
+		double minimum = Double.POSITIVE_INFINITY;
+		for (int j = 0; j < cost.length; j++) {
+			if (!used[j]) {
+				used[j] = true;
+				minimum = Math.min(minimum, cost[row][j] + bruteForceMinimum(cost, row + 1, used));
+				used[j] = false;
+			}
+		}
+		return minimum;
+	}
+}
@@ -0,0 +1,100 @@
+package alors.matrix_completion.sgd;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import org.junit.jupiter.api.Test;
+
+import alors.matrix_completion.MatrixCompleterException;
+import alors.matrix_completion.sgd.StochasticGradientDescentCompleter.ParallelMode;
+
+/**
+ * Tests {@link StochasticGradientDescentCompleter}.
+ *
+ * @author helegraf
+ *
+ */
+public class StochasticGradientDescentCompleterTest {
+
+	private static final double NAN = Double.NaN;
+	private static final double[][] MATRIX = { { 4, NAN, 5, NAN, 1, 2 }, { 5, 5, NAN, NAN, 2, 1 },
+			{ NAN, 4, 5, 1, NAN, 1 }, { 1, 2, NAN, NAN, 4, 5 }, { 2, NAN, 1, 5, 5, NAN }, { NAN, 1, 2, 4, NAN, 5 } };
+
+	/**
+	 * Tests the completion of a very small problem in both parallel modes,
+	 * checking dimensions of the results and that the observed entries are
+	 * reconstructed reasonably well.
+	 *
+	 * @throws MatrixCompleterException
+	 */
+	@Test
+	public void testComplete() throws MatrixCompleterException {
+		for (ParallelMode mode : ParallelMode.values()) {
+			int dimW = 3;
+			StochasticGradientDescentCompleter sgd = createCompleter(mode, dimW);
+			double[][] completedMatrix = sgd.complete(MATRIX);
+
+			assertEquals(MATRIX.length, completedMatrix.length);
+			assertEquals(MATRIX[0].length, completedMatrix[0].length);
+			assertEquals(MATRIX.length, sgd.getU().length);
+			assertEquals(MATRIX[0].length, sgd.getV().length);
+			assertEquals(dimW, sgd.getU()[0].length);
+
+			for (int i = 0; i < MATRIX.length; i++) {
+				for (int j = 0; j < MATRIX[i].length; j++) {
+					assertFalse(Double.isNaN(completedMatrix[i][j]));
+					if (!Double.isNaN(MATRIX[i][j])) {
+						assertEquals(MATRIX[i][j], completedMatrix[i][j], 1.0, mode.toString());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests that a matrix with mean zero is completed, which a mean-based
+	 * initialization alone would start (and keep) at zero.
+	 *
+	 * @throws MatrixCompleterException
+	 */
+	@Test
+	public void testZeroMean() throws MatrixCompleterException {
+		double[][] centered = { { 1, NAN, 2, NAN, -2, -1 }, { 2, 2, NAN, NAN, -1, -2 }, { NAN, 1, 2, -2, NAN, -2 },
+				{ -2, -1, NAN, NAN, 1, 2 }, { -1, NAN, -2, 2, 2, NAN }, { NAN, -2, -1, 1, NAN, 1 } };
+		double[][] completedMatrix = createCompleter(ParallelMode.STRATIFIED, 3).complete(centered);
+		for (int i = 0; i < centered.length; i++) {
+			for (int j = 0; j < centered[i].length; j++) {
+				if (!Double.isNaN(centered[i][j])) {
+					assertEquals(centered[i][j], completedMatrix[i][j], 1.0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests that stratified runs with the same seed and number of threads give the
+	 * same result.
+	 *
+	 * @throws MatrixCompleterException
+	 */
+	@Test
+	public void testStratifiedIsDeterministic() throws MatrixCompleterException {
+		double[][] first = createCompleter(ParallelMode.STRATIFIED, 3).complete(MATRIX);
+		double[][] second = createCompleter(ParallelMode.STRATIFIED, 3).complete(MATRIX);
+		for (int i = 0; i < first.length; i++) {
+			assertArrayEquals(first[i], second[i]);
+		}
+	}
+
+	private StochasticGradientDescentCompleter createCompleter(ParallelMode mode, int dimW) {
+		StochasticGradientDescentCompleter sgd = new StochasticGradientDescentCompleter();
+		sgd.setParallelMode(mode);
+		sgd.setDimW(dimW);
+		sgd.setNumThreads(2);
+		sgd.setLearningRate(0.02);
+		sgd.setMaxEpochs(2000);
+		sgd.setMinProgress(1e-6);
+		return sgd;
+	}
+}
@@ -0,0 +1,55 @@
+package alors.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing {@link LatencyHistogram}.
+ * 
+ * @author helegraf
+ *
+ */
+public class LatencyHistogramTest {
+
+	/**
+	 * Tests that every value falls into a bucket whose upper bound exceeds it by
+	 * at most 1/16, and that buckets are ordered.
+	 */
+	@Test
+	public void testBuckets() {
+		Random random = new Random(0);
+		for (int n = 0; n < 100000; n++) {
+			long value = random.nextLong() >>> (1 + random.nextInt(63));
+			long upperBound = LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(value));
+			assertTrue(upperBound >= value && upperBound - value <= value / 16, "value " + value);
+		}
+		for (long value = 0; value < 100000; value++) {
+			assertTrue(LatencyHistogram.bucketOf(value) <= LatencyHistogram.bucketOf(value + 1));
+		}
+		assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(Long.MAX_VALUE)));
+	}
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentile(99));
+		assertTrue(Double.isNaN(histogram.getMean()));
+
+		for (long micros = 1; micros <= 1000; micros++) {
+			histogram.record(micros * 1000);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500500, histogram.getMean(), 1e-9);
+		assertEquals(1000000, histogram.getMax());
+		assertEquals(1000000, histogram.getPercentile(100));
+
+		long p50 = histogram.getPercentile(50);
+		assertTrue(p50 >= 500000 && p50 <= 500000 * 17 / 16, "p50 " + p50);
+		long p99 = histogram.getPercentile(99);
+		assertTrue(p99 >= 990000 && p99 <= 1000000, "p99 " + p99);
+	}
+}
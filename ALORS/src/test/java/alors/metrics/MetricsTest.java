@@ -0,0 +1,73 @@
+package alors.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing {@link Metrics}.
+ * 
+ * @author helegraf
+ *
+ */
+public class MetricsTest {
+
+	/**
+	 * Tests that timed actions are recorded whether they succeed or fail, and
+	 * that their result and exception are passed on.
+	 */
+	@Test
+	public void testTime() {
+		InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+		Metrics.setRegistry(registry);
+		try {
+			assertEquals("result", Metrics.time("action", () -> "result"));
+			Metrics.time("action", () -> {
+			});
+			assertThrows(IOException.class, () -> Metrics.time("action", () -> {
+				throw new IOException();
+			}));
+			assertEquals(3, registry.getHistogram("action").getCount());
+
+			Metrics.setRegistry(null);
+			assertEquals("result", Metrics.time("action", () -> "result"));
+			assertEquals(3, registry.getHistogram("action").getCount());
+		} finally {
+			Metrics.setRegistry(null);
+		}
+	}
+
+	/**
+	 * Tests that a costly amount is only determined if it is recorded, and that
+	 * its exception is passed on.
+	 */
+	@Test
+	public void testIncrementByCountedAmount() {
+		InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+		int[] calls = new int[1];
+		Metrics.increment("counter", () -> {
+			calls[0]++;
+			return 5;
+		});
+		assertEquals(0, calls[0]);
+
+		Metrics.setRegistry(registry);
+		try {
+			Metrics.increment("counter", () -> {
+				calls[0]++;
+				return 5;
+			});
+			assertEquals(1, calls[0]);
+			assertEquals(5, registry.getCounter("counter"));
+			assertThrows(IOException.class, () -> Metrics.increment("counter", () -> {
+				throw new IOException();
+			}));
+			assertEquals(5, registry.getCounter("counter"));
+		} finally {
+			Metrics.setRegistry(null);
+		}
+	}
+}
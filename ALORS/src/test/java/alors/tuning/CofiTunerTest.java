@@ -0,0 +1,100 @@
+package alors.tuning;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import alors.TestData;
+import alors.matrix_completion.SparseMatrix;
+import alors.matrix_completion.cofirank.CofiConfig;
+
+/**
+ * Tests {@link CofiTuner}.
+ *
+ * @author helegraf
+ *
+ */
+public class CofiTunerTest {
+
+	/**
+	 * Tests that the folds partition the observed entries.
+	 */
+	@Test
+	public void testFolds() {
+		SparseMatrix matrix = SparseMatrix.fromDense(TestData.lowRankMatrix(new Random(0), 30, 10, 2, 0.3));
+		HoldoutFold[] folds = HoldoutFold.split(matrix, 3, 0);
+
+		int numHeldOut = 0;
+		for (HoldoutFold fold : folds) {
+			int heldOut = fold.getHeldOutValues().length;
+			assertEquals(matrix.getNumEntries(), heldOut + fold.getTrainingMatrix().getNumEntries());
+			assertTrue(Math.abs(heldOut - matrix.getNumEntries() / 3.0) <= 1);
+			numHeldOut += heldOut;
+		}
+		assertEquals(matrix.getNumEntries(), numHeldOut);
+	}
+
+	/**
+	 * Tests that grid search and successive halving find the number of latent
+	 * features of a low rank matrix, successive halving with less iterations,
+	 * and that the best configuration is persisted.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSearch() throws Exception {
+		SparseMatrix matrix = SparseMatrix.fromDense(TestData.lowRankMatrix(new Random(0), 60, 20, 3, 0.3));
+		CofiConfig baseConfig = new CofiConfig("unused", "unused", "unused", "unused", "unused");
+		baseConfig.setMinProgress(0.001);
+		baseConfig.setMaxIterations(9);
+		baseConfig.setUserPhaseLambda(1);
+		baseConfig.setMoviePhaseLambda(1);
+		CofiSearchSpace space = new CofiSearchSpace(baseConfig);
+		space.setDimW(1, 3);
+		space.setUserPhaseLambda(1, 50);
+		assertEquals(4, space.size());
+
+		CofiTuner tuner = new CofiTuner();
+		TuningResult grid = tuner.gridSearch(matrix, space);
+		assertEquals(4, grid.getEvaluations().size());
+		assertEquals(3, grid.getBestConfig().getDimW());
+		assertEquals(1, grid.getBestConfig().getUserPhaseLambda());
+
+		TuningResult halving = tuner.successiveHalving(matrix, space);
+		assertEquals(4 + 2, halving.getEvaluations().size());
+		assertEquals(3, halving.getBestConfig().getDimW());
+		assertEquals(1, halving.getBestConfig().getUserPhaseLambda());
+		assertEquals(9, halving.getBestConfig().getMaxIterations());
+		assertEquals(9, halving.getBestIterations());
+
+		// a single configuration is decided after the first round of 2 iterations
+		tuner.setHalvingMinIterations(2);
+		TuningResult early = tuner.successiveHalving(matrix, space.grid().subList(0, 1));
+		assertEquals(1, early.getEvaluations().size());
+		assertEquals(2, early.getBestIterations());
+		assertEquals(9, early.getBestConfig().getMaxIterations());
+		assertEquals(baseConfig.getMinIterations(), early.getBestConfig().getMinIterations());
+
+		assertThrows(IllegalArgumentException.class,
+				() -> tuner.successiveHalving(matrix, new ArrayList<CofiConfig>()));
+		assertThrows(IllegalArgumentException.class, () -> tuner.randomSearch(matrix, space, 0));
+
+		Path path = Files.createTempFile("cofi", ".properties");
+		try {
+			grid.save(path);
+			CofiConfig loaded = TuningResult.loadBestConfig(path, baseConfig);
+			assertEquals(3, loaded.getDimW());
+			assertEquals(1, loaded.getUserPhaseLambda());
+			assertEquals(baseConfig.getMinProgress(), loaded.getMinProgress());
+		} finally {
+			Files.delete(path);
+		}
+	}
+}
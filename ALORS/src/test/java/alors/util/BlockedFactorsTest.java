@@ -0,0 +1,109 @@
+package alors.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import alors.TestData;
+
+/**
+ * Tests {@link BlockedFactors}.
+ *
+ * @author helegraf
+ *
+ */
+public class BlockedFactorsTest {
+
+	/**
+	 * Tests that all kernels compute exactly the dot products, for sizes that do
+	 * not fit the blocks evenly, including one large enough to run in parallel.
+	 * The vector kernel is only tested if the JVM provides the vector API.
+	 */
+	@Test
+	public void testMultiply() {
+		List<ScoringKernel> kernels = new ArrayList<>();
+		kernels.add(new ScalarScoringKernel());
+		ScoringKernel vectorKernel = BlockedFactors.loadVectorKernel();
+		if (vectorKernel != null) {
+			kernels.add(vectorKernel);
+		}
+
+		Random random = new Random(0);
+		for (int[] size : new int[][] { { 1, 1, 1 }, { 3, 8, 2 }, { 70, 259, 7 }, { 300, 1030, 10 } }) {
+			double[][] u = TestData.randomMatrix(random, size[0], size[2]);
+			double[][] v = TestData.randomMatrix(random, size[1], size[2]);
+			double[][] expected = new double[size[0]][size[1]];
+			for (int i = 0; i < size[0]; i++) {
+				for (int j = 0; j < size[1]; j++) {
+					expected[i][j] = LinearAlgebra.dot(u[i], v[j]);
+				}
+			}
+
+			for (ScoringKernel kernel : kernels) {
+				BlockedFactors factors = new BlockedFactors(v, kernel);
+				assertEquals((size[1] + 7) / 8, factors.getNumBlocks());
+
+				double[][] product = factors.multiplyTransposed(u);
+				for (int i = 0; i < size[0]; i++) {
+					assertArrayEquals(expected[i], product[i]);
+					assertArrayEquals(expected[i], factors.multiply(u[i]));
+				}
+
+				double[] scores = new double[BlockedFactors.BLOCK_SIZE];
+				int lastBlock = factors.getNumBlocks() - 1;
+				factors.multiplyBlock(u[0], lastBlock, scores);
+				for (int offset = 0; offset < scores.length; offset++) {
+					int row = lastBlock * BlockedFactors.BLOCK_SIZE + offset;
+					assertEquals(row < size[1] ? expected[0][row] : 0, scores[offset]);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDimensions() {
+		BlockedFactors factors = new BlockedFactors(new double[][] { { 1, 2 }, { 3, 4 } });
+		assertEquals(2, factors.getNumRows());
+		assertEquals(2, factors.getNumColumns());
+		assertThrows(IllegalArgumentException.class, () -> factors.multiply(new double[3]));
+		assertThrows(IllegalArgumentException.class, () -> new BlockedFactors(new double[][] { { 1 }, { 1, 2 } }));
+		assertEquals(0, new BlockedFactors(new double[0][]).multiply(new double[2]).length);
+	}
+
+	/**
+	 * Tests that rows are copied out of the blocked layout, and that the blocks
+	 * rebuild the same matrix, also when split across several buffers.
+	 */
+	@Test
+	public void testRowsAndBlocks() {
+		double[][] v = TestData.randomMatrix(new Random(0), 19, 3);
+		BlockedFactors factors = new BlockedFactors(v);
+
+		double[][] copy = factors.toArray();
+		for (int row = 0; row < v.length; row++) {
+			assertArrayEquals(v[row], copy[row]);
+		}
+
+		double[] values = new double[factors.getNumBlocks() * BlockedFactors.BLOCK_SIZE * 3];
+		double[] block = new double[BlockedFactors.BLOCK_SIZE * 3];
+		for (int b = 0; b < factors.getNumBlocks(); b++) {
+			factors.getBlock(b, block);
+			System.arraycopy(block, 0, values, b * block.length, block.length);
+		}
+		BlockedFactors read = BlockedFactors.fromBlocks(
+				Arrays.asList(DoubleBuffer.wrap(values, 0, 10), DoubleBuffer.wrap(values, 10, values.length - 10)),
+				v.length, 3);
+		double[] u = { 1, -2, 0.5 };
+		assertArrayEquals(factors.multiply(u), read.multiply(u));
+		assertThrows(IllegalArgumentException.class,
+				() -> BlockedFactors.fromBlocks(Arrays.asList(DoubleBuffer.wrap(values, 0, 10)), v.length, 3));
+	}
+}
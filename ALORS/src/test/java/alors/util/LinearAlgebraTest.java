@@ -0,0 +1,53 @@
+package alors.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import alors.TestData;
+
+/**
+ * Tests {@link LinearAlgebra}.
+ *
+ * @author helegraf
+ *
+ */
+public class LinearAlgebraTest {
+
+	/**
+	 * Tests the blocked product against dot products for sizes that do not fit
+	 * the blocks evenly, including one large enough to run in parallel.
+	 */
+	@Test
+	public void testMultiplyTransposed() {
+		Random random = new Random(0);
+		for (int[] size : new int[][] { { 1, 1, 1 }, { 3, 5, 2 }, { 70, 259, 7 }, { 300, 1030, 10 } }) {
+			double[][] u = TestData.randomMatrix(random, size[0], size[2]);
+			double[][] v = TestData.randomMatrix(random, size[1], size[2]);
+
+			double[][] product = LinearAlgebra.multiplyTransposed(u, v);
+
+			assertEquals(size[0], product.length);
+			for (int i = 0; i < size[0]; i++) {
+				double[] expected = new double[size[1]];
+				for (int j = 0; j < size[1]; j++) {
+					expected[j] = LinearAlgebra.dot(u[i], v[j]);
+				}
+				assertArrayEquals(expected, product[i], 1e-12);
+			}
+		}
+	}
+
+	/**
+	 * Tests solving a small positive definite system.
+	 */
+	@Test
+	public void testSolveSymmetricPositiveDefinite() {
+		double[][] a = { { 4, 2 }, { 2, 3 } };
+		double[] b = { 2, 5 };
+		assertArrayEquals(new double[] { -0.5, 2 }, LinearAlgebra.solveSymmetricPositiveDefinite(a, b), 1e-12);
+	}
+}
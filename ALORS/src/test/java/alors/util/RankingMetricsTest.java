@@ -0,0 +1,48 @@
+package alors.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing {@link RankingMetrics}.
+ * 
+ * @author helegraf
+ *
+ */
+public class RankingMetricsTest {
+
+	private static final double NAN = Double.NaN;
+
+	@Test
+	public void testPerfectRanking() {
+		double[] truth = { 0.9, 0.5, NAN, 0.7 };
+		double[] predicted = { 3, 1, 100, 2 };
+		assertEquals(1, RankingMetrics.ndcg(truth, predicted, 2), 1e-12);
+		assertEquals(0, RankingMetrics.topOneRegret(truth, predicted), 1e-12);
+		assertEquals(1, RankingMetrics.spearman(truth, predicted), 1e-12);
+	}
+
+	@Test
+	public void testReversedRanking() {
+		double[] truth = { 0.9, 0.5, 0.7 };
+		double[] predicted = { 1, 3, 2 };
+		// gains shifted by the minimum: 0.4, 0, 0.2
+		double ideal = 0.4 + 0.2 / (Math.log(3) / Math.log(2));
+		double actual = 0 + 0.2 / (Math.log(3) / Math.log(2));
+		assertEquals(actual / ideal, RankingMetrics.ndcg(truth, predicted, 2), 1e-12);
+		assertEquals(0.4, RankingMetrics.topOneRegret(truth, predicted), 1e-12);
+		assertEquals(-1, RankingMetrics.spearman(truth, predicted), 1e-12);
+	}
+
+	@Test
+	public void testTies() {
+		double[] truth = { 1, 2, 3, 4 };
+		double[] predicted = { 1, 1, 2, 2 };
+		assertEquals(2 * Math.sqrt(5) / 5, RankingMetrics.spearman(truth, predicted), 1e-12);
+		assertEquals(1, RankingMetrics.ndcg(new double[] { 2, 2 }, new double[] { 0, 1 }, 1), 1e-12);
+		assertTrue(Double.isNaN(RankingMetrics.spearman(truth, new double[] { 5, 5, 5, 5 })));
+		assertTrue(Double.isNaN(RankingMetrics.ndcg(new double[] { NAN }, new double[] { 1 }, 1)));
+	}
+}